@@ -0,0 +1,341 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.DoubleConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Codemaker that never commits to a secret. After each guess it partitions every secret still consistent
+ * with the feedback given so far by the feedback that guess would receive, and answers with the feedback of
+ * the largest part, so that as many secrets as possible survive. A guess only wins once a single secret is
+ * left and the guess is that secret.
+ *
+ * The surviving secrets (the pool) start as the whole {@link CodeSpace}, which is scanned by index without
+ * being materialized. Once a part is small enough it is kept as a list of code indices, and every later
+ * guess only scans that list, so the work shrinks along with the pool. Both the partition and the shrink
+ * are split into chunks handled in parallel. On the largest boards an answer still takes seconds, so
+ * interactive callers should answer off the UI thread (see
+ * {@link GameState#answerInBackground(java.util.concurrent.Executor, java.util.concurrent.Executor, DoubleConsumer, Runnable)}).
+ *
+ * An adversary is not thread-safe: it must not be read while it is answering.
+ */
+public class Adversary {
+    /**
+     * Number of consecutive codes (or pooled codes) handled by one parallel unit of work.
+     */
+    private static final int CHUNK      = 1 << 16;
+
+    /**
+     * Most secrets kept in the pool as a list (64 MiB of code indices). Larger pools are rescanned from
+     * the whole {@link CodeSpace}.
+     */
+    private static final int MAX_KEPT   = 1 << 24;
+
+    /**
+     * Most secrets whose buckets are recorded during a partition (64 MiB, a byte each). Larger pools, or
+     * boards with more buckets than fit in a byte, are scored again to shrink them.
+     */
+    private static final int MAX_MARKED = 1 << 26;
+
+    public final CodeSpace space;
+
+    private final List<byte[]>  guesses   = new ArrayList<>();
+    private final List<Integer> responses = new ArrayList<>();
+
+    private FeedbackConstraints constraints;
+    private int[]               pool;
+    private long                remaining;
+    private int                 representative;
+
+    /**
+     * Constructs an adversary that has not received any guess, so every code of the space is a possible
+     * secret.
+     *
+     * @param space the {@link CodeSpace} of the game
+     */
+    public Adversary(final CodeSpace space) {
+        this.space          = space;
+        this.constraints    = new FeedbackConstraints(space, new byte[0][], new int[0]);
+        this.pool           = null;
+        this.remaining      = space.size;
+        this.representative = 0;
+    }
+
+    /**
+     * Answers a guess with the feedback that keeps the most secrets consistent, and drops every other
+     * secret from the pool. Among parts of equal size the lowest bucket is chosen, so the winning bucket
+     * (the highest) is only given once it is the only part left.
+     *
+     * @param guess the {@link Peg} bytes of the guess (all slots filled)
+     * @return the feedback bucket (see {@link CodeSpace#bucket(int, int)})
+     */
+    public int respond(final byte[] guess) {
+        return this.respond(guess, fraction -> {});
+    }
+
+    /**
+     * Answers a guess as {@link Adversary#respond(byte[])} does, reporting progress as chunks finish.
+     *
+     * @param guess the {@link Peg} bytes of the guess (all slots filled)
+     * @param progress receives the fraction of the work done so far, from the worker threads
+     * @return the feedback bucket (see {@link CodeSpace#bucket(int, int)})
+     */
+    public int respond(final byte[] guess, final DoubleConsumer progress) {
+        // The partition and the shrink each walk every chunk once
+        final AtomicInteger done  = new AtomicInteger();
+        final double        steps = 2.0 * this.chunks();
+        final Runnable      step  = () -> progress.accept(done.incrementAndGet() / steps);
+
+        // Remember every pooled secret's bucket while partitioning, so that the shrink does not score again
+        final byte[] marks  = this.total() <= MAX_MARKED && space.buckets() < 0xFF ? new byte[(int) this.total()] : null;
+        final long[] counts = this.partition(guess, marks, step);
+
+        int best = -1;
+
+        for (int b = 0; b < counts.length; ++b) {
+            if (counts[b] == 0) continue;
+
+            if (best < 0 || counts[b] > counts[best]) {
+                best = b;
+            }
+        }
+
+        this.restrict(guess, best, counts[best], marks, step);
+
+        return best;
+    }
+
+    /**
+     * @return the number of guesses answered so far
+     */
+    public int played() {
+        return this.responses.size();
+    }
+
+    /**
+     * @param i the index of an answered guess
+     * @return the feedback bucket given to the ith guess
+     */
+    public int response(final int i) {
+        return this.responses.get(i);
+    }
+
+    /**
+     * @return the number of secrets still consistent with every answer
+     */
+    public long remaining() {
+        return this.remaining;
+    }
+
+    /**
+     * Picks one secret consistent with every answer given so far. Scoring any of the answered guesses
+     * against it reproduces the answers, so it can stand in for the solution wherever one is needed (such
+     * as a snapshot or a save file).
+     *
+     * @return the {@link Peg} bytes of the lowest surviving code
+     */
+    public byte[] representative() {
+        return space.pegsOf(this.representative);
+    }
+
+    /**
+     * Counts the pooled secrets by the feedback the guess would receive against each of them.
+     *
+     * @param guess the {@link Peg} bytes of the guess
+     * @param marks if not null, receives one more than the bucket of each pooled secret, at its position in
+     *        the pool (or its code index while the pool is the whole space)
+     * @param step run once per finished chunk
+     * @return the number of secrets in each feedback bucket
+     */
+    private long[] partition(final byte[] guess, final byte[] marks, final Runnable step) {
+        final long histogram = space.histogram(guess);
+
+        return IntStream.range(0, this.chunks()).parallel()
+            .mapToObj(chunk -> {
+                final long[] counts = new long[space.buckets()];
+                final Scan   scan   = new Scan(chunk);
+
+                while (scan.next()) {
+                    final int bucket = space.score(scan.pegs, space.histogram(scan.pegs), guess, histogram);
+
+                    if (marks != null) {
+                        marks[scan.index] = (byte) (bucket + 1);
+                    }
+
+                    ++counts[bucket];
+                }
+
+                step.run();
+                return counts;
+            })
+            .reduce((a, b) -> {
+                for (int i = 0; i < a.length; ++i) {
+                    a[i] += b[i];
+                }
+
+                return a;
+            })
+            .orElseGet(() -> new long[space.buckets()]);
+    }
+
+    /**
+     * Drops every pooled secret for which the guess would not receive the given feedback, and records the
+     * answer.
+     *
+     * @param guess the {@link Peg} bytes of the guess
+     * @param bucket the feedback bucket given
+     * @param count the number of pooled secrets in the bucket (from
+     *        {@link Adversary#partition(byte[], byte[], Runnable)})
+     * @param marks the buckets recorded by the partition, or null to score the pool again
+     * @param step run once per finished chunk
+     */
+    private void restrict(final byte[] guess, final int bucket, final long count, final byte[] marks, final Runnable step) {
+        final long histogram = space.histogram(guess);
+
+        // Too many survivors to list: keep scanning the whole space against the grown constraints, and only
+        // look for the lowest survivor
+        if (count > MAX_KEPT) {
+            this.representative = IntStream.range(0, this.chunks()).parallel()
+                .map(chunk -> {
+                    final Scan scan   = new Scan(chunk);
+                    int        lowest = Integer.MAX_VALUE;
+
+                    while (scan.next()) {
+                        if (space.score(scan.pegs, space.histogram(scan.pegs), guess, histogram) == bucket) {
+                            lowest = scan.code;
+                            break;
+                        }
+                    }
+
+                    step.run();
+                    return lowest;
+                })
+                .min()
+                .orElse(0);
+        } else {
+            // Each chunk lists its survivors in order, so concatenating the chunks keeps the pool sorted
+            final int[][] parts = IntStream.range(0, this.chunks()).parallel()
+                .mapToObj(chunk -> {
+                    final int[] kept = new int[CHUNK];
+                    int         used = 0;
+
+                    if (marks != null) {
+                        final int from = chunk * CHUNK;
+                        final int to   = (int) Math.min(this.total(), from + (long) CHUNK);
+
+                        for (int i = from; i < to; ++i) {
+                            if ((marks[i] & 0xFF) == bucket + 1) {
+                                kept[used++] = pool != null ? pool[i] : i;
+                            }
+                        }
+                    } else {
+                        final Scan scan = new Scan(chunk);
+
+                        while (scan.next()) {
+                            if (space.score(scan.pegs, space.histogram(scan.pegs), guess, histogram) == bucket) {
+                                kept[used++] = scan.code;
+                            }
+                        }
+                    }
+
+                    step.run();
+                    return Arrays.copyOf(kept, used);
+                })
+                .toArray(int[][]::new);
+
+            final int[] pool = new int[(int) count];
+            int         used = 0;
+
+            for (final int[] part : parts) {
+                System.arraycopy(part, 0, pool, used, part.length);
+                used += part.length;
+            }
+
+            this.pool           = pool;
+            this.representative = pool[0];
+        }
+
+        this.guesses.add(guess.clone());
+        this.responses.add(bucket);
+
+        this.constraints = new FeedbackConstraints(space, this.guesses.toArray(new byte[0][]),
+            this.responses.stream().mapToInt(Integer::intValue).toArray());
+        this.remaining   = count;
+    }
+
+    /**
+     * @return the number of entries walked: the pool's length, or the size of the space while the pool is not
+     *         listed
+     */
+    private long total() {
+        return this.pool != null ? this.pool.length : space.size;
+    }
+
+    /**
+     * @return the number of chunks the pool is split into
+     */
+    private int chunks() {
+        return (int) ((this.total() + CHUNK - 1) / CHUNK);
+    }
+
+    /**
+     * Private class walking the pooled secrets of one chunk, in ascending order. When the pool is not kept as
+     * a list, the chunk is a range of the whole space and codes inconsistent with earlier answers are
+     * skipped.
+     */
+    private class Scan {
+        private final byte[] pegs = new byte[space.slots];
+
+        private int     code;
+        private int     index;
+        private int     position;
+        private boolean started = false;
+
+        private final int end;
+
+        /**
+         * @param chunk the index of the chunk to walk
+         */
+        public Scan(final int chunk) {
+            this.position = chunk * CHUNK;
+            this.end      = (int) Math.min(total(), this.position + (long) CHUNK);
+
+            if (pool == null && this.position < this.end) {
+                space.pegsOf(this.position, this.pegs);
+            }
+        }
+
+        /**
+         * Moves to the next pooled secret of the chunk, updating {@link Scan#code}, {@link Scan#index} and
+         * {@link Scan#pegs}.
+         *
+         * @return false once the chunk is exhausted
+         */
+        public boolean next() {
+            if (pool != null) {
+                if (this.position >= this.end) return false;
+
+                this.index = this.position++;
+                this.code  = pool[this.index];
+                space.pegsOf(this.code, this.pegs);
+                return true;
+            }
+
+            while (this.position < this.end) {
+                // The pegs start out holding the first code of the chunk
+                if (this.started) {
+                    space.increment(this.pegs);
+                }
+
+                this.started = true;
+                this.code    = this.position++;
+                this.index   = this.code;
+
+                if (constraints.isConsistent(this.pegs)) return true;
+            }
+
+            return false;
+        }
+    }
+}
@@ -0,0 +1,268 @@
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+/**
+ * Immutable summary of the secrets still consistent with a set of {@link FeedbackConstraints}: how many
+ * there are and how often each {@link Peg.PegColor} appears in each slot among them. When the consistent
+ * secrets are few enough they are kept as well, so that the analysis after the next played row only has to
+ * filter them instead of scanning the whole {@link CodeSpace} again.
+ */
+public class CandidateAnalysis {
+    /**
+     * Number of consecutive codes (or kept candidates) handled by one parallel unit of work.
+     */
+    private static final int CHUNK    = 1 << 16;
+
+    /**
+     * Most candidates kept for the next analysis (64 MiB of code indices).
+     */
+    private static final int MAX_KEPT = 1 << 24;
+
+    // Per-worker buffer receiving the consistent codes of a chunk, of which only the kept ones are copied
+    private static final ThreadLocal<int[]> CHUNK_CODES = ThreadLocal.withInitial(() -> new int[CHUNK]);
+
+    public final FeedbackConstraints constraints;
+    public final long count;
+
+    private final long[]          marginals;
+    private final Optional<int[]> candidates;
+
+    /**
+     * Private constructor for a finished analysis.
+     *
+     * @param constraints the constraints analyzed
+     * @param count the number of consistent codes
+     * @param marginals the (slot, color) counts, flattened as slot * colors + color
+     * @param candidates the consistent codes, if they were kept
+     */
+    private CandidateAnalysis(final FeedbackConstraints constraints, final long count, final long[] marginals,
+            final Optional<int[]> candidates) {
+        this.constraints = constraints;
+        this.count       = count;
+        this.marginals   = marginals;
+        this.candidates  = candidates;
+    }
+
+    /**
+     * @param slot the slot
+     * @param color the {@link Peg.PegColor} to look up
+     * @return the fraction of consistent codes with the given color in the given slot
+     */
+    public double probability(final int slot, final Peg.PegColor color) {
+        final CodeSpace space = constraints.getSpace();
+
+        if (count == 0 || slot < 0 || slot >= space.slots || color.ordinal() >= space.colors) {
+            return 0;
+        }
+
+        return (double) marginals[slot * space.colors + color.ordinal()] / count;
+    }
+
+    /**
+     * @return the consistent code indices in ascending order, if they were few enough to keep
+     */
+    public Optional<int[]> getCandidates() {
+        return this.candidates;
+    }
+
+    /**
+     * Analyzes the codes consistent with the given constraints in a single parallel pass. If a previous
+     * analysis of a prefix of the same rows kept its candidates, only those are examined.
+     *
+     * @param constraints the constraints to analyze
+     * @param previous an earlier analysis of the same game, if any
+     * @param cancelled polled between chunks of work; the analysis is abandoned once it returns true
+     * @return the {@link CandidateAnalysis}, or an empty {@link Optional} if cancelled
+     */
+    public static Optional<CandidateAnalysis> compute(final FeedbackConstraints constraints,
+            final Optional<CandidateAnalysis> previous, final BooleanSupplier cancelled) {
+        final CodeSpace space = constraints.getSpace();
+
+        // Before any row is played every code is consistent, and each color is equally likely everywhere.
+        // The codes themselves are not kept, since scanning the whole space avoids decoding each index.
+        if (constraints.size() == 0) {
+            final long[] uniform = new long[space.slots * space.colors];
+            Arrays.fill(uniform, space.size / space.colors);
+
+            return Optional.of(new CandidateAnalysis(constraints, space.size, uniform, Optional.empty()));
+        }
+
+        final Optional<int[]> source = previous
+            .filter(p -> constraints.extendsConstraints(p.constraints))
+            .flatMap(CandidateAnalysis::getCandidates);
+
+        final long total  = source.map(codes -> (long) codes.length).orElse((long) space.size);
+        final int  chunks = (int) ((total + CHUNK - 1) / CHUNK);
+
+        final AtomicLong kept = new AtomicLong();
+
+        final Partial[] parts = IntStream.range(0, chunks).parallel()
+            .mapToObj(chunk -> {
+                final int from = chunk * CHUNK;
+                final int to   = (int) Math.min(total, from + (long) CHUNK);
+
+                if (cancelled.getAsBoolean()) {
+                    return new Partial(space);
+                } else if (source.isPresent()) {
+                    return scanList(constraints, source.get(), from, to, kept);
+                } else {
+                    return scanRange(constraints, from, to, kept);
+                }
+            })
+            .toArray(Partial[]::new);
+
+        if (cancelled.getAsBoolean()) {
+            return Optional.empty();
+        }
+
+        // Combine the chunks in order, copying each chunk's codes once into an array of the final size
+        final long[] marginals = new long[space.slots * space.colors];
+        long         count     = 0;
+        int          used      = 0;
+
+        for (final Partial part : parts) {
+            for (int i = 0; i < marginals.length; ++i) {
+                marginals[i] += part.marginals[i];
+            }
+
+            count += part.count;
+            used  += part.used;
+        }
+
+        Optional<int[]> candidates = Optional.empty();
+
+        if (kept.get() <= MAX_KEPT) {
+            final int[] codes  = new int[used];
+            int         offset = 0;
+
+            for (final Partial part : parts) {
+                System.arraycopy(part.codes, 0, codes, offset, part.used);
+                offset += part.used;
+            }
+
+            candidates = Optional.of(codes);
+        }
+
+        return Optional.of(new CandidateAnalysis(constraints, count, marginals, candidates));
+    }
+
+    /**
+     * Scans a range of the code space. Codes that may repeat colors are walked with a
+     * {@link FeedbackConstraints.Cursor}, so each code costs a few counter updates instead of a score
+     * against every played row.
+     *
+     * @param constraints the constraints to check
+     * @param from the first code index (inclusive)
+     * @param to the last code index (exclusive)
+     * @param kept the running total of kept codes across all chunks
+     * @return the {@link Partial} result for the range of the code space
+     */
+    private static Partial scanRange(final FeedbackConstraints constraints, final int from, final int to,
+            final AtomicLong kept) {
+        final CodeSpace space   = constraints.getSpace();
+        final Partial   partial = new Partial(space);
+        final int[]     codes   = CHUNK_CODES.get();
+
+        if (space.distinct) {
+            final byte[] pegs = space.pegsOf(from);
+
+            for (int code = from; code < to; ++code) {
+                if (constraints.isConsistent(pegs)) {
+                    partial.add(code, pegs, codes);
+                }
+                space.increment(pegs);
+            }
+        } else {
+            final FeedbackConstraints.Cursor cursor = constraints.cursor(from);
+
+            for (int code = from; code < to; ++code) {
+                if (cursor.isConsistent()) {
+                    partial.add(code, cursor.pegs(), codes);
+                }
+                cursor.next();
+            }
+        }
+
+        partial.keepIfRoom(codes, kept);
+        return partial;
+    }
+
+    /**
+     * @param constraints the constraints to check
+     * @param codes the previously kept candidates
+     * @param from the first position in the list (inclusive)
+     * @param to the last position in the list (exclusive)
+     * @param kept the running total of kept codes across all chunks
+     * @return the {@link Partial} result for the slice of the list
+     */
+    private static Partial scanList(final FeedbackConstraints constraints, final int[] codes, final int from,
+            final int to, final AtomicLong kept) {
+        final CodeSpace space   = constraints.getSpace();
+        final Partial   partial = new Partial(space);
+        final byte[]    pegs    = new byte[space.slots];
+        final int[]     found   = CHUNK_CODES.get();
+
+        for (int i = from; i < to; ++i) {
+            space.pegsOf(codes[i], pegs);
+
+            if (constraints.isConsistent(pegs)) {
+                partial.add(codes[i], pegs, found);
+            }
+        }
+
+        partial.keepIfRoom(found, kept);
+        return partial;
+    }
+
+    /**
+     * Private class accumulating the result of one chunk.
+     */
+    private static class Partial {
+        private final int    colors;
+        private final long[] marginals;
+
+        private long    count = 0;
+        private int[]   codes = new int[0];
+        private int     used  = 0;
+
+        /**
+         * @param space the {@link CodeSpace} being analyzed
+         */
+        public Partial(final CodeSpace space) {
+            this.colors    = space.colors;
+            this.marginals = new long[space.slots * space.colors];
+        }
+
+        /**
+         * @param code a consistent code index
+         * @param pegs the {@link Peg} bytes of the code
+         * @param found the worker's buffer of this chunk's consistent codes
+         */
+        public void add(final int code, final byte[] pegs, final int[] found) {
+            for (int j = 0; j < pegs.length; ++j) {
+                ++marginals[j * colors + pegs[j] - 1];
+            }
+
+            found[used++] = code;
+            ++count;
+        }
+
+        /**
+         * Copies this chunk's codes out of the worker's buffer, unless keeping them would exceed
+         * {@link CandidateAnalysis#MAX_KEPT}.
+         *
+         * @param found the worker's buffer of this chunk's consistent codes
+         * @param kept the running total of kept codes across all chunks
+         */
+        public void keepIfRoom(final int[] found, final AtomicLong kept) {
+            if (kept.addAndGet(used) > MAX_KEPT) {
+                used = 0;
+            }
+
+            codes = Arrays.copyOf(found, used);
+        }
+    }
+}
@@ -0,0 +1,564 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Class to represent the set of all possible codes for a (slots, colors) configuration of {@link Mastermind}.
+ * Every code is identified by an index in the range [0, size), where slot j holds the jth base-(colors) digit
+ * of the index. Digits are stored as {@link Peg} bytes (1 through colors), matching {@link GameState}.
+ *
+ * In the no-repeat variant ({@link GameState#distinct}) the codes are the partial permutations of the
+ * colors, and the index is their rank in lexicographic order (a Lehmer code): slot j holds the digit
+ * d(j) in the mixed radix (colors - j), and its color is the d(j)th smallest color not used in an earlier
+ * slot. The space then has colors! / (colors - slots)! codes rather than colors^slots, and every table
+ * and scan is sized accordingly.
+ *
+ * Feedback is encoded as a single "bucket" number:
+ *
+ *      bucket = red * (slots + 1) + white
+ *
+ * where red and white have the same meaning as in {@link GameState#testRow(int)}.
+ */
+public final class CodeSpace {
+    /**
+     * Largest space for which the digits and color histograms of every code are precomputed.
+     */
+    private static final int MAX_DIGIT_TABLE    = 1 << 22;
+
+    /**
+     * Largest space for which the feedback of every (secret, guess) pair is precomputed.
+     */
+    private static final int MAX_FEEDBACK_TABLE = 1 << 12;
+
+    /**
+     * Largest number of feedback buckets whose entries fit in the unsigned bytes of the feedback table (15
+     * slots).
+     */
+    private static final int MAX_TABLE_BUCKETS  = 1 << 8;
+
+    /**
+     * Largest {@link Peg} byte (and so number of colors) that {@link CodeSpace#commonPegs(byte[], byte[])}
+     * handles.
+     */
+    private static final int MAX_PEG_BYTE       = 63;
+
+    private static final Map<Integer, CodeSpace> CACHE = new ConcurrentHashMap<>();
+
+    // Per-color balances of commonPegs, all zero between calls
+    private static final ThreadLocal<int[]> BALANCE = ThreadLocal.withInitial(() -> new int[MAX_PEG_BYTE + 1]);
+
+    public final int     slots;
+    public final int     colors;
+    public final boolean distinct;
+    public final int     size;
+
+    private final byte[] digits;
+    private final long[] histograms;
+    private final byte[] feedback;
+
+    // Whether every color count of a code fits in a nibble of a single long
+    private final boolean packedHistograms;
+
+    // The weight of each slot's digit in the index (only used by the no-repeat variant)
+    private final int[] radix;
+
+    /**
+     * Constructs the code space for the given configuration. The bounds are the same as those of
+     * {@link GameState}.
+     *
+     * @param slots the number of slots
+     * @param colors the number of colors
+     */
+    public CodeSpace(final int slots, final int colors) {
+        this(slots, colors, false);
+    }
+
+    /**
+     * Constructs the code space for the given configuration, optionally of the no-repeat variant.
+     *
+     * @param slots the number of slots
+     * @param colors the number of colors
+     * @param distinct whether codes may not repeat a color
+     */
+    public CodeSpace(final int slots, final int colors, final boolean distinct) {
+        this.slots    = slots;
+        this.colors   = colors;
+        this.distinct = distinct;
+        this.radix    = new int[slots];
+
+        if (distinct && slots > colors) {
+            throw new IllegalArgumentException("Cannot fill " + slots + " slots with distinct colors out of " + colors);
+        }
+
+        long total = 1;
+        for (int i = slots - 1; i >= 0; --i) {
+            this.radix[i] = (int) Math.min(total, Integer.MAX_VALUE);
+            total *= distinct ? colors - i : colors;
+
+            if (total > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Code space too large: " + slots + " slots of " + colors + " colors");
+            }
+        }
+
+        this.size             = (int) total;
+        this.packedHistograms = colors <= 16 && slots <= 15;
+
+        if (this.size <= MAX_DIGIT_TABLE) {
+            this.digits     = new byte[this.size * slots];
+            this.histograms = new long[this.size];
+
+            for (int i = 0; i < this.size; ++i) {
+                this.decode(i, this.digits, i * slots);
+                this.histograms[i] = this.packedHistograms ? this.histogram(this.digits, i * slots) : 0;
+            }
+        } else {
+            this.digits     = null;
+            this.histograms = null;
+        }
+
+        if (this.size <= MAX_FEEDBACK_TABLE && this.buckets() <= MAX_TABLE_BUCKETS) {
+            this.feedback = new byte[this.size * this.size];
+
+            for (int i = 0; i < this.size; ++i) {
+                for (int j = 0; j < this.size; ++j) {
+                    this.feedback[i * this.size + j] = (byte) this.computeScore(i, j);
+                }
+            }
+        } else {
+            this.feedback = null;
+        }
+    }
+
+    /**
+     * Returns the shared {@link CodeSpace} for the given configuration, building it on first use.
+     *
+     * @param slots the number of slots
+     * @param colors the number of colors
+     * @return the shared {@link CodeSpace}
+     */
+    public static CodeSpace of(final int slots, final int colors) {
+        return of(slots, colors, false);
+    }
+
+    /**
+     * Returns the shared {@link CodeSpace} for the given configuration, building it on first use.
+     *
+     * @param slots the number of slots
+     * @param colors the number of colors
+     * @param distinct whether codes may not repeat a color
+     * @return the shared {@link CodeSpace}
+     */
+    public static CodeSpace of(final int slots, final int colors, final boolean distinct) {
+        return CACHE.computeIfAbsent((distinct ? 1 << 16 : 0) + slots * 256 + colors, key -> new CodeSpace(slots, colors, distinct));
+    }
+
+    /**
+     * Whether a configuration has few enough codes to be indexed by an int, as
+     * {@link CodeSpace#of(int, int, boolean)} requires. Callers offering analyses on arbitrary boards should
+     * check this first.
+     *
+     * @param slots the number of slots
+     * @param colors the number of colors
+     * @param distinct whether codes may not repeat a color
+     * @return whether the {@link CodeSpace} of the configuration can be built
+     */
+    public static boolean isEnumerable(final int slots, final int colors, final boolean distinct) {
+        if (distinct && slots > colors) {
+            return false;
+        }
+
+        long total = 1;
+        for (int i = 0; i < slots; ++i) {
+            total *= distinct ? colors - i : colors;
+
+            if (total > Integer.MAX_VALUE) return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * @return the number of distinct feedback buckets (including impossible ones)
+     */
+    public int buckets() {
+        return (slots + 1) * (slots + 1);
+    }
+
+    /**
+     * @return the bucket reached when every peg of the guess is correct
+     */
+    public int winningBucket() {
+        return bucket(slots, 0);
+    }
+
+    /**
+     * @param red the number of correct pegs in the correct position
+     * @param white the number of correct pegs in the wrong position
+     * @return the feedback bucket
+     */
+    public int bucket(final int red, final int white) {
+        return red * (slots + 1) + white;
+    }
+
+    /**
+     * @param bucket the feedback bucket
+     * @return the "red" part of the feedback
+     */
+    public int red(final int bucket) {
+        return bucket / (slots + 1);
+    }
+
+    /**
+     * @param bucket the feedback bucket
+     * @return the "white" part of the feedback
+     */
+    public int white(final int bucket) {
+        return bucket % (slots + 1);
+    }
+
+    /**
+     * Computes the feedback bucket for the given guess against the given secret.
+     *
+     * @param secret the index of the secret code
+     * @param guess the index of the guessed code
+     * @return the feedback bucket
+     */
+    public int score(final int secret, final int guess) {
+        if (feedback != null) {
+            return feedback[secret * size + guess] & 0xFF;
+        } else {
+            return computeScore(secret, guess);
+        }
+    }
+
+    /**
+     * Computes the feedback bucket for codes given as {@link Peg} bytes. Useful for spaces too large for
+     * the precomputed tables, where decoding each index would dominate.
+     *
+     * @param secret the {@link Peg} bytes of the secret code
+     * @param guess the {@link Peg} bytes of the guessed code
+     * @return the feedback bucket
+     */
+    public int score(final byte[] secret, final byte[] guess) {
+        return score(secret, histogram(secret), guess, histogram(guess));
+    }
+
+    /**
+     * Computes the feedback bucket for codes given as {@link Peg} bytes along with their precomputed
+     * color histograms (see {@link CodeSpace#histogram(byte[])}).
+     *
+     * @param secret the {@link Peg} bytes of the secret code
+     * @param secretHistogram the histogram of the secret code
+     * @param guess the {@link Peg} bytes of the guessed code
+     * @param guessHistogram the histogram of the guessed code
+     * @return the feedback bucket
+     */
+    public int score(final byte[] secret, final long secretHistogram, final byte[] guess, final long guessHistogram) {
+        int reds = 0;
+
+        for (int j = 0; j < slots; ++j) {
+            if (secret[j] == guess[j]) ++reds;
+        }
+
+        if (!packedHistograms) {
+            return bucket(reds, commonPegs(secret, 0, guess, 0, slots) - reds);
+        }
+
+        return bucket(reds, matches(secretHistogram, guessHistogram) - reds);
+    }
+
+    /**
+     * @param pegs the {@link Peg} bytes of a code
+     * @return the number of pegs of each color, packed four bits per color, or 0 when the configuration
+     *         has too many colors or slots for the counts to fit (scoring then counts per slot instead)
+     */
+    public long histogram(final byte[] pegs) {
+        return packedHistograms ? histogram(pegs, 0) : 0;
+    }
+
+    /**
+     * Counts how many pegs two codes have in common regardless of position, in a single pass over the
+     * slots: a running balance per color is positive while the first code has unmatched pegs of that color
+     * and negative while the second does, so every peg that finds the balance on the other side is a
+     * match. The cost grows with the number of slots only, whatever the number of colors. Empty slots
+     * (0 bytes) are ignored, so partially filled rows may be compared.
+     *
+     * @param a the {@link Peg} bytes of the first code
+     * @param b the {@link Peg} bytes of the second code
+     * @return the number of pegs in common (including those in the same position)
+     */
+    public static int commonPegs(final byte[] a, final byte[] b) {
+        return commonPegs(a, 0, b, 0, Math.min(a.length, b.length));
+    }
+
+    /**
+     * @param a the {@link Peg} bytes of the first code
+     * @param b the {@link Peg} bytes of the second code
+     * @return the number of pegs in the same position with the same color, ignoring empty slots
+     */
+    public static int samePegs(final byte[] a, final byte[] b) {
+        int same = 0;
+
+        for (int j = 0; j < Math.min(a.length, b.length); ++j) {
+            if (a[j] != 0 && a[j] == b[j]) ++same;
+        }
+
+        return same;
+    }
+
+    /**
+     * See {@link CodeSpace#commonPegs(byte[], byte[])}.
+     *
+     * @param a the array holding the first code
+     * @param aOffset the position of its first slot
+     * @param b the array holding the second code
+     * @param bOffset the position of its first slot
+     * @param length the number of slots
+     * @return the number of pegs in common
+     */
+    private static int commonPegs(final byte[] a, final int aOffset, final byte[] b, final int bOffset, final int length) {
+        // A reused array rather than a new one per call, as scoring runs this in the innermost loops
+        final int[] balance = BALANCE.get();
+
+        int common = 0;
+
+        for (int j = 0; j < length; ++j) {
+            final int x = a[aOffset + j] & MAX_PEG_BYTE;
+            final int y = b[bOffset + j] & MAX_PEG_BYTE;
+
+            if (x != 0 && balance[x]++ < 0) ++common;
+            if (y != 0 && balance[y]-- > 0) ++common;
+        }
+
+        // Only the colors of the two codes were touched, so clearing them is cheaper than clearing the array
+        for (int j = 0; j < length; ++j) {
+            balance[a[aOffset + j] & MAX_PEG_BYTE] = 0;
+            balance[b[bOffset + j] & MAX_PEG_BYTE] = 0;
+        }
+
+        return common;
+    }
+
+    /**
+     * Advances the given code to the code with the next index, in place (wrapping around after the last).
+     *
+     * @param pegs the {@link Peg} bytes of a code
+     */
+    public void increment(final byte[] pegs) {
+        if (distinct) {
+            decode((indexOf(pegs) + 1) % size, pegs, 0);
+            return;
+        }
+
+        for (int j = 0; j < slots; ++j) {
+            if (pegs[j] < colors) {
+                ++pegs[j];
+                return;
+            }
+
+            pegs[j] = 1;
+        }
+    }
+
+    /**
+     * @param index the index of a code
+     * @return the {@link Peg} bytes of the code
+     */
+    public byte[] pegsOf(final int index) {
+        final byte[] pegs = new byte[slots];
+        decode(index, pegs, 0);
+        return pegs;
+    }
+
+    /**
+     * Decodes a code into an existing array, to avoid allocating in tight loops.
+     *
+     * @param index the index of a code
+     * @param pegs the array (of length slots) which receives the {@link Peg} bytes of the code
+     */
+    public void pegsOf(final int index, final byte[] pegs) {
+        decode(index, pegs, 0);
+    }
+
+    /**
+     * @param pegs the {@link Peg} bytes of a code (all slots must be filled)
+     * @return the index of the code
+     */
+    public int indexOf(final byte[] pegs) {
+        if (distinct) {
+            int  index = 0;
+            long used  = 0;
+
+            for (int j = 0; j < slots; ++j) {
+                final int color = pegs[j] - 1;
+
+                // The digit is the number of unused colors below this one
+                index += (color - Long.bitCount(used & ((1L << color) - 1))) * radix[j];
+                used  |= 1L << color;
+            }
+
+            return index;
+        }
+
+        int index = 0;
+
+        for (int j = slots - 1; j >= 0; --j) {
+            index = index * colors + (pegs[j] - 1);
+        }
+
+        return index;
+    }
+
+    /**
+     * @return a new array holding every code index in ascending order
+     */
+    public int[] allCodes() {
+        final int[] codes = new int[size];
+
+        for (int i = 0; i < size; ++i) {
+            codes[i] = i;
+        }
+
+        return codes;
+    }
+
+    /**
+     * Lists one representative of every class of codes equivalent under permuting colors and slots: the
+     * codes using colors 1, 2, ... in order, each in a run no longer than the previous one. Generated
+     * directly, so it stays cheap for spaces far too large to scan. In the no-repeat variant every run has
+     * length one, so there is a single class.
+     *
+     * @return the canonical code indices in ascending order
+     */
+    public int[] canonicalGuesses() {
+        final List<Integer> found = new ArrayList<>();
+        this.canonicalGuesses(new byte[slots], 0, 1, distinct ? 1 : slots, found);
+
+        return found.stream().mapToInt(Integer::intValue).sorted().toArray();
+    }
+
+    /**
+     * Recursively fills the remaining slots with runs of non-increasing length.
+     *
+     * @param pegs the code being built
+     * @param j the first unfilled slot
+     * @param color the color of the next run
+     * @param maxRun the longest run allowed
+     * @param found the list receiving the finished codes
+     */
+    private void canonicalGuesses(final byte[] pegs, final int j, final int color, final int maxRun, final List<Integer> found) {
+        if (j == slots) {
+            found.add(indexOf(pegs));
+            return;
+        } else if (color > colors) {
+            return;
+        }
+
+        for (int run = Math.min(maxRun, slots - j); run >= 1; --run) {
+            Arrays.fill(pegs, j, j + run, (byte) color);
+            this.canonicalGuesses(pegs, j + run, color + 1, run, found);
+        }
+    }
+
+    /**
+     * Computes the feedback bucket without consulting the precomputed table.
+     *
+     * @param secret the index of the secret code
+     * @param guess the index of the guessed code
+     * @return the feedback bucket
+     */
+    private int computeScore(final int secret, final int guess) {
+        if (digits != null) {
+            int reds = 0;
+
+            final int a = secret * slots;
+            final int b = guess * slots;
+
+            for (int j = 0; j < slots; ++j) {
+                if (digits[a + j] == digits[b + j]) ++reds;
+            }
+
+            if (!packedHistograms) {
+                return bucket(reds, commonPegs(digits, a, digits, b, slots) - reds);
+            }
+
+            return bucket(reds, matches(histograms[secret], histograms[guess]) - reds);
+        } else {
+            return score(pegsOf(secret), pegsOf(guess));
+        }
+    }
+
+    /**
+     * Writes the {@link Peg} bytes of the given code into the array at the given offset.
+     *
+     * @param index the index of the code
+     * @param out the array to write into
+     * @param offset the position of the first slot
+     */
+    private void decode(final int index, final byte[] out, final int offset) {
+        if (distinct) {
+            int  rest = index;
+            long used = 0;
+
+            for (int j = 0; j < slots; ++j) {
+                int digit = rest / radix[j];
+                rest %= radix[j];
+
+                // Take the digit-th smallest unused color
+                long free = ~used;
+                while (digit-- > 0) {
+                    free &= free - 1;
+                }
+
+                final int color = Long.numberOfTrailingZeros(free);
+                used |= 1L << color;
+                out[offset + j] = (byte) (color + 1);
+            }
+
+            return;
+        }
+
+        int rest = index;
+
+        for (int j = 0; j < slots; ++j) {
+            out[offset + j] = (byte) (rest % colors + 1);
+            rest /= colors;
+        }
+    }
+
+    /**
+     * Packs the number of pegs of each color into a long, four bits per color.
+     *
+     * @param pegs the array containing the code
+     * @param offset the position of the first slot
+     * @return the packed color histogram
+     */
+    private long histogram(final byte[] pegs, final int offset) {
+        long packed = 0;
+
+        for (int j = 0; j < slots; ++j) {
+            packed += 1L << (4 * (pegs[offset + j] - 1));
+        }
+
+        return packed;
+    }
+
+    /**
+     * Counts how many pegs two codes have in common regardless of position.
+     *
+     * @param h1 the packed histogram of the first code
+     * @param h2 the packed histogram of the second code
+     * @return the sum over all colors of the smaller count
+     */
+    private int matches(final long h1, final long h2) {
+        int total = 0;
+
+        for (int c = 0; c < colors; ++c) {
+            total += (int) Math.min((h1 >>> (4 * c)) & 0xF, (h2 >>> (4 * c)) & 0xF);
+        }
+
+        return total;
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * Consistency check for {@link CodeSpace}. For each configuration, compares the feedback of every
+ * (secret, guess) pair read through the index-based {@link CodeSpace#score(int, int)} (which uses the
+ * precomputed table when there is one) against the feedback computed from the {@link Peg} bytes, and checks
+ * that every bucket lies within {@link CodeSpace#buckets()} and that a code scored against itself reaches
+ * {@link CodeSpace#winningBucket()}. The configurations include the small boards with many slots (11x2 and
+ * 12x2) whose buckets do not fit in a signed byte. Exits with status 1 on the first mismatch.
+ *
+ * Usage: java CodeSpaceCheck
+ */
+public class CodeSpaceCheck {
+    private static final int[][] CONFIGURATIONS = {
+        { 4, 6 }, { 5, 8 }, { 6, 4 }, { 10, 2 }, { 11, 2 }, { 12, 2 }
+    };
+
+    /**
+     * Command line entry point.
+     *
+     * @param args unused
+     */
+    public static void main(final String[] args) {
+        for (final int[] configuration : CONFIGURATIONS) {
+            check(CodeSpace.of(configuration[0], configuration[1]));
+
+            if (configuration[0] <= configuration[1]) {
+                check(CodeSpace.of(configuration[0], configuration[1], true));
+            }
+        }
+
+        System.out.println("Checked " + CONFIGURATIONS.length + " configurations");
+        System.exit(0);
+    }
+
+    /**
+     * @param space the {@link CodeSpace} to check
+     */
+    private static void check(final CodeSpace space) {
+        final String name = space.slots + "x" + space.colors + (space.distinct ? " distinct" : "");
+
+        if (space.score(0, 0) != space.winningBucket()) {
+            fail(name + ": score(0, 0) is " + space.score(0, 0) + ", expected " + space.winningBucket());
+        }
+
+        if ((long) space.size * space.size > 1L << 26) {
+            return;
+        }
+
+        for (int secret = 0; secret < space.size; ++secret) {
+            final byte[] secretPegs = space.pegsOf(secret);
+
+            for (int guess = 0; guess < space.size; ++guess) {
+                final int bucket   = space.score(secret, guess);
+                final int expected = space.score(secretPegs, space.pegsOf(guess));
+
+                if (bucket != expected || bucket < 0 || bucket >= space.buckets()) {
+                    fail(name + ": score(" + secret + ", " + guess + ") is " + bucket + ", expected " + expected);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param message the mismatch
+     */
+    private static void fail(final String message) {
+        System.out.println("Mismatch: " + message);
+        System.exit(1);
+    }
+}
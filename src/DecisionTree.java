@@ -0,0 +1,52 @@
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Class to represent a complete guessing strategy for a {@link CodeSpace}. Each node holds the code index
+ * of the guess to make and one child per non-winning feedback bucket that can occur. Trees are stored
+ * on disk as a {@link StrategyTable}.
+ */
+public class DecisionTree {
+    public final int  slots;
+    public final int  colors;
+    public final long cost;
+
+    private final Node root;
+
+    /**
+     * Constructs a {@link DecisionTree} with the given root.
+     *
+     * @param slots the number of slots
+     * @param colors the number of colors
+     * @param cost the total number of guesses over all secrets
+     * @param root the root {@link Node}
+     */
+    public DecisionTree(final int slots, final int colors, final long cost, final Node root) {
+        this.slots  = slots;
+        this.colors = colors;
+        this.cost   = cost;
+        this.root   = root;
+    }
+
+    /**
+     * @return the root {@link Node} of the tree
+     */
+    public Node getRoot() {
+        return this.root;
+    }
+
+    /**
+     * A single decision: the guess to make and where to go for each feedback bucket.
+     */
+    public static class Node {
+        public final int guess;
+        public final Map<Integer, Node> children = new TreeMap<>();
+
+        /**
+         * @param guess the code index of the guess to make at this node
+         */
+        public Node(final int guess) {
+            this.guess = guess;
+        }
+    }
+}
@@ -0,0 +1,574 @@
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * Singleton instance class estimating how hard a game configuration is: how many guesses a strong solver
+ * needs on average, and how likely it is to find the secret within a given number of rows. Both come from
+ * a histogram of the number of guesses taken over many simulated games, so one entry per (slots, colors)
+ * configuration answers for every row count.
+ *
+ * Entries are read from a precomputed table bundled with the game ("resources/data/difficulty.table") and
+ * from the on-disk cache ({@link DifficultyEstimator#CACHE}). A configuration found in neither is simulated
+ * in the background, and the cache is rewritten as each simulation finishes. Configurations with too many
+ * codes to simulate get an information-theoretic lower bound instead. Both table files use the format:
+ *
+ *            4 bytes: "MMDT",
+ *            4 bytes: format version,
+ *            4 bytes: # of entries,
+ *
+ * followed by, for each entry, 4-byte integers (big-endian):
+ *
+ *            1 int:   key ((no repeats ? 65536 : 0) + slots * 256 + colors),
+ *            1 int:   # of games simulated,
+ *  (MAX_GUESSES+1) ints: # of games solved in exactly k guesses for k = 1..MAX_GUESSES, then the # of
+ *                        games not solved within MAX_GUESSES.
+ */
+public class DifficultyEstimator {
+    /**
+     * Longest game the simulation plays out. Games taking longer count as unsolved.
+     */
+    public static final int MAX_GUESSES = 63;
+
+    private static final int  MAGIC   = 0x4D4D4454;
+    private static final int  VERSION = 1;
+    private static final int  STRIDE  = 2 + MAX_GUESSES + 1;
+
+    private static final Path   CACHE    = Paths.get("../gamedata/difficulty.table");
+    private static final String RESOURCE = "resources/data/difficulty.table";
+
+    /**
+     * Number of games simulated for a configuration missing from the tables.
+     */
+    private static final int  GAMES         = 100;
+
+    /**
+     * Number of games simulated per configuration of the precomputed table larger than
+     * {@link DifficultyEstimator#MAX_SIMULATED}, where a game takes up to a minute.
+     */
+    private static final int  LARGE_GAMES   = 25;
+
+    /**
+     * Largest {@link CodeSpace} that is simulated on demand: after the first guess every candidate is then
+     * kept by {@link CandidateAnalysis}. Larger configurations are only simulated when building the
+     * precomputed table.
+     */
+    private static final long MAX_SIMULATED = 1 << 24;
+
+    /**
+     * Most candidates tried as the next guess, and most candidates each guess is scored against.
+     */
+    private static final int  GUESS_SAMPLE  = 256;
+    private static final int  SECRET_SAMPLE = 512;
+
+    /**
+     * The (slots, colors) configurations of the precomputed table: the original ranges of the custom game
+     * sliders, all 63 of them.
+     */
+    private static final int MAX_TABLE_SLOTS  = 10;
+    private static final int MAX_TABLE_COLORS = 8;
+
+    // Created after the constants above, which the constructor reads
+    private static final DifficultyEstimator INSTANCE = new DifficultyEstimator();
+
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "mastermind-difficulty");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Map<Integer, Estimate> entries = new ConcurrentHashMap<>();
+    private final Set<Integer>           pending = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Immutable class representing the estimated difficulty of one configuration.
+     */
+    public static class Estimate {
+        public final int     slots;
+        public final int     colors;
+        public final boolean distinct;
+
+        /**
+         * The number of games simulated, or 0 if the estimate is only a lower bound.
+         */
+        public final int games;
+
+        private final int[]  counts;
+        private final double bound;
+
+        /**
+         * @param slots the number of slots
+         * @param colors the number of colors
+         * @param distinct whether colors may not repeat
+         * @param counts the games solved in exactly 1..{@link DifficultyEstimator#MAX_GUESSES} guesses
+         *        (indices 0 and up), then the games not solved
+         */
+        public Estimate(final int slots, final int colors, final boolean distinct, final int[] counts) {
+            this.slots    = slots;
+            this.colors   = colors;
+            this.distinct = distinct;
+            this.games    = Arrays.stream(counts).sum();
+            this.counts   = counts.clone();
+            this.bound    = 0;
+        }
+
+        /**
+         * Private constructor for a lower bound on the number of guesses.
+         *
+         * @param slots the number of slots
+         * @param colors the number of colors
+         * @param distinct whether colors may not repeat
+         * @param bound the lower bound
+         */
+        private Estimate(final int slots, final int colors, final boolean distinct, final double bound) {
+            this.slots    = slots;
+            this.colors   = colors;
+            this.distinct = distinct;
+            this.games    = 0;
+            this.counts   = new int[MAX_GUESSES + 1];
+            this.bound    = bound;
+        }
+
+        /**
+         * @return whether the estimate comes from simulated games (rather than a lower bound)
+         */
+        public boolean isSimulated() {
+            return this.games > 0;
+        }
+
+        /**
+         * @return the average number of guesses of the simulated games, counting unsolved games as
+         *         {@link DifficultyEstimator#MAX_GUESSES} + 1, or the lower bound if nothing was simulated
+         */
+        public double expectedGuesses() {
+            if (!this.isSimulated()) {
+                return this.bound;
+            }
+
+            double total = 0;
+
+            for (int k = 0; k <= MAX_GUESSES; ++k) {
+                total += (double) (k + 1) * this.counts[k];
+            }
+
+            return total / this.games;
+        }
+
+        /**
+         * @param rows the number of rows
+         * @return the fraction of simulated games solved within the given number of guesses (0 if nothing
+         *         was simulated)
+         */
+        public double winProbability(final int rows) {
+            if (!this.isSimulated()) {
+                return 0;
+            }
+
+            long solved = 0;
+
+            for (int k = 0; k < Math.min(rows, MAX_GUESSES); ++k) {
+                solved += this.counts[k];
+            }
+
+            return (double) solved / this.games;
+        }
+
+        /**
+         * @param other another estimate of the same configuration
+         * @return an estimate combining the games of both
+         */
+        public Estimate merge(final Estimate other) {
+            final int[] sum = this.counts.clone();
+
+            for (int k = 0; k < sum.length; ++k) {
+                sum[k] += other.counts[k];
+            }
+
+            return new Estimate(slots, colors, distinct, sum);
+        }
+    }
+
+    /**
+     * Private constructor for building the singleton instance. Reads the bundled table, then the cache.
+     */
+    private DifficultyEstimator() {
+        try (InputStream stream = getClass().getResourceAsStream(RESOURCE)) {
+            if (stream != null) {
+                this.read(stream.readAllBytes());
+            }
+        } catch (final Exception e) {
+            System.out.println("Failed to read the difficulty table: " + e.toString());
+        }
+
+        try {
+            if (Files.exists(CACHE)) {
+                this.read(Files.readAllBytes(CACHE));
+            }
+        } catch (final Exception e) {
+            System.out.println("Failed to read the difficulty cache: " + e.toString());
+        }
+    }
+
+    /**
+     * @return the static singleton instance of the {@link DifficultyEstimator} class
+     */
+    public static DifficultyEstimator getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Looks up the difficulty of a configuration without blocking. If the configuration has not been
+     * estimated yet, its games are simulated in the background and the callback receives the result (on
+     * the background thread) once it has been written to the cache.
+     *
+     * @param slots the number of slots
+     * @param colors the number of colors
+     * @param distinct whether colors may not repeat
+     * @param onEstimated receives the estimate once a background simulation finishes
+     * @return the {@link Estimate}, or an empty {@link Optional} while it is being simulated
+     */
+    public Optional<Estimate> estimate(final int slots, final int colors, final boolean distinct,
+            final Consumer<Estimate> onEstimated) {
+        final int key = key(slots, colors, distinct);
+
+        final Estimate known = this.entries.get(key);
+
+        if (known != null) {
+            return Optional.of(known);
+        }
+
+        final double size = distinct ? permutations(slots, colors) : Math.pow(colors, slots);
+
+        // Each guess splits the candidates into at most (slots + 1)^2 parts, so identifying one of them takes
+        // at least log(size) / log(parts) guesses before the winning one
+        if (size > MAX_SIMULATED) {
+            final double parts = (slots + 1) * (slots + 1);
+            return Optional.of(new Estimate(slots, colors, distinct, Math.ceil(Math.log(size) / Math.log(parts)) + 1));
+        }
+
+        if (this.pending.add(key)) {
+            this.worker.execute(() -> {
+                try {
+                    final Estimate estimate = simulate(slots, colors, distinct, GAMES);
+
+                    this.entries.merge(key, estimate, Estimate::merge);
+                    this.writeCache();
+
+                    onEstimated.accept(this.entries.get(key));
+                } catch (final Exception e) {
+                    System.out.println("Failed to estimate difficulty: " + e.toString());
+                } finally {
+                    this.pending.remove(key);
+                }
+            });
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Simulates games of a configuration, in parallel, with a strong solver against random secrets.
+     *
+     * @param slots the number of slots
+     * @param colors the number of colors
+     * @param distinct whether colors may not repeat
+     * @param games the number of games to simulate
+     * @return the {@link Estimate}
+     */
+    public static Estimate simulate(final int slots, final int colors, final boolean distinct, final int games) {
+        final CodeSpace space  = CodeSpace.of(slots, colors, distinct);
+        final int[]     counts = new int[MAX_GUESSES + 1];
+
+        IntStream.range(0, games).parallel()
+            .map(game -> play(space))
+            .forEach(guesses -> {
+                synchronized (counts) {
+                    ++counts[guesses == 0 ? MAX_GUESSES : guesses - 1];
+                }
+            });
+
+        return new Estimate(slots, colors, distinct, counts);
+    }
+
+    /**
+     * Plays one game against a random secret. Each guess is the candidate (from a sample of them) that
+     * leaves the fewest secrets on average, as in {@link HintSolver}.
+     *
+     * @param space the {@link CodeSpace} of the game
+     * @return the number of guesses taken, or 0 if the game was not solved within
+     *         {@link DifficultyEstimator#MAX_GUESSES}
+     */
+    private static int play(final CodeSpace space) {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int               secret = random.nextInt(space.size);
+
+        final List<byte[]>  guesses   = new ArrayList<>();
+        final List<Integer> responses = new ArrayList<>();
+
+        Optional<CandidateAnalysis> analysis    = Optional.empty();
+        FeedbackConstraints         constraints = new FeedbackConstraints(space, new byte[0][], new int[0]);
+
+        for (int turn = 1; turn <= MAX_GUESSES; ++turn) {
+            final Optional<int[]>     candidates = analysis.flatMap(CandidateAnalysis::getCandidates);
+            final FeedbackConstraints known      = constraints;
+
+            // Before the first guess every code is a candidate: try one code per symmetry class. While there
+            // are too many candidates to list, random consistent codes stand in for them.
+            final int[] secrets = candidates.map(codes -> sample(codes, SECRET_SAMPLE))
+                .orElseGet(() -> sampleConsistent(space, known, SECRET_SAMPLE));
+            final int[] tried   = candidates.map(codes -> sample(codes, GUESS_SAMPLE))
+                .orElseGet(() -> guesses.isEmpty() ? space.canonicalGuesses() : Arrays.copyOf(secrets, GUESS_SAMPLE));
+
+            final int guess  = best(space, tried, secrets);
+            final int bucket = space.score(secret, guess);
+
+            if (bucket == space.winningBucket()) {
+                return turn;
+            }
+
+            guesses.add(space.pegsOf(guess));
+            responses.add(bucket);
+
+            constraints = new FeedbackConstraints(space, guesses.toArray(new byte[0][]),
+                responses.stream().mapToInt(Integer::intValue).toArray());
+
+            analysis = CandidateAnalysis.compute(constraints, analysis, () -> false);
+        }
+
+        return 0;
+    }
+
+    /**
+     * @param space the {@link CodeSpace} of the game
+     * @param tried the guesses to rank
+     * @param secrets the secrets to rank them against
+     * @return the guess whose partition of the secrets has the smallest sum of squared part sizes (the
+     *         first one on ties)
+     */
+    private static int best(final CodeSpace space, final int[] tried, final int[] secrets) {
+        final int[] counts = new int[space.buckets()];
+
+        int  bestGuess = tried[0];
+        long bestScore = Long.MAX_VALUE;
+
+        for (final int guess : tried) {
+            Arrays.fill(counts, 0);
+
+            for (final int secret : secrets) {
+                ++counts[space.score(secret, guess)];
+            }
+
+            long score = 0;
+            for (final int count : counts) {
+                score += (long) count * count;
+            }
+
+            if (score < bestScore) {
+                bestScore = score;
+                bestGuess = guess;
+            }
+        }
+
+        return bestGuess;
+    }
+
+    /**
+     * Draws random codes consistent with the feedback so far, for when there are too many candidates to
+     * list. Only used on the largest boards, where the candidates are still a sizeable share of the space.
+     *
+     * @param space the {@link CodeSpace} of the game
+     * @param constraints the feedback so far
+     * @param count the number of codes to draw (with replacement)
+     * @return the code indices
+     */
+    private static int[] sampleConsistent(final CodeSpace space, final FeedbackConstraints constraints, final int count) {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final byte[]            pegs   = new byte[space.slots];
+        final int[]             codes  = new int[count];
+
+        for (int i = 0; i < count; ) {
+            final int code = random.nextInt(space.size);
+            space.pegsOf(code, pegs);
+
+            if (constraints.isConsistent(pegs)) {
+                codes[i++] = code;
+            }
+        }
+
+        return codes;
+    }
+
+    /**
+     * @param codes code indices
+     * @param limit the most codes to return
+     * @return at most limit codes, evenly spaced through the array
+     */
+    private static int[] sample(final int[] codes, final int limit) {
+        if (codes.length <= limit) {
+            return codes;
+        }
+
+        final int[] sample = new int[limit];
+
+        for (int i = 0; i < limit; ++i) {
+            sample[i] = codes[(int) ((long) i * codes.length / limit)];
+        }
+
+        return sample;
+    }
+
+    /**
+     * @param slots the number of slots
+     * @param colors the number of colors
+     * @return the number of codes of a no-repeat game
+     */
+    private static double permutations(final int slots, final int colors) {
+        double total = 1;
+
+        for (int i = 0; i < slots; ++i) {
+            total *= Math.max(0, colors - i);
+        }
+
+        return total;
+    }
+
+    /**
+     * @param slots the number of slots
+     * @param colors the number of colors
+     * @param distinct whether colors may not repeat
+     * @return the key of the configuration in the tables
+     */
+    private static int key(final int slots, final int colors, final boolean distinct) {
+        return (distinct ? 1 << 16 : 0) + slots * 256 + colors;
+    }
+
+    /**
+     * Adds the entries of a table file, replacing any already known.
+     *
+     * @param data the contents of the file
+     */
+    private void read(final byte[] data) {
+        for (final Estimate estimate : parse(data)) {
+            this.entries.put(key(estimate.slots, estimate.colors, estimate.distinct), estimate);
+        }
+    }
+
+    /**
+     * @param data the contents of a table file
+     * @return the simulated {@link Estimate}s it holds
+     */
+    private static List<Estimate> parse(final byte[] data) {
+        final List<Estimate> estimates = new ArrayList<>();
+        final ByteBuffer     buffer    = ByteBuffer.wrap(data);
+
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IllegalArgumentException("Not a difficulty table");
+        }
+
+        final int count = buffer.getInt();
+
+        for (int e = 0; e < count; ++e) {
+            final int key    = buffer.getInt();
+            final int games  = buffer.getInt();
+            final int[] counts = new int[MAX_GUESSES + 1];
+
+            for (int k = 0; k < counts.length; ++k) {
+                counts[k] = buffer.getInt();
+            }
+
+            if (games > 0) {
+                estimates.add(new Estimate((key >> 8) & 0xFF, key & 0xFF, (key >> 16) != 0, counts));
+            }
+        }
+
+        return estimates;
+    }
+
+    /**
+     * @param estimates the simulated {@link Estimate}s
+     * @return the contents of a table file holding them
+     */
+    private static byte[] toBytes(final List<Estimate> estimates) {
+        final ByteBuffer buffer = ByteBuffer.allocate((3 + estimates.size() * STRIDE) * Integer.BYTES);
+
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(estimates.size());
+
+        for (final Estimate estimate : estimates) {
+            buffer.putInt(key(estimate.slots, estimate.colors, estimate.distinct));
+            buffer.putInt(estimate.games);
+
+            for (final int count : estimate.counts) {
+                buffer.putInt(count);
+            }
+        }
+
+        return buffer.array();
+    }
+
+    /**
+     * Rewrites the cache with every known entry. The file is replaced in one step, so a reader never sees
+     * it half written.
+     *
+     * @throws Exception if the file cannot be written
+     */
+    private synchronized void writeCache() throws Exception {
+        final Path temp = CACHE.resolveSibling(CACHE.getFileName() + ".tmp");
+
+        Files.createDirectories(CACHE.toAbsolutePath().getParent());
+        Files.write(temp, toBytes(new ArrayList<>(this.entries.values())));
+        Files.move(temp, CACHE, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Simulates every configuration of the precomputed table, reporting each as it finishes, and writes the
+     * table after each one. Configurations already in the output file are kept, so an interrupted run picks
+     * up where it stopped. Configurations larger than {@link DifficultyEstimator#MAX_SIMULATED} play
+     * {@link DifficultyEstimator#LARGE_GAMES} games, against random secrets like the others.
+     *
+     * @param args the output file (defaults to the cache) and the number of games per configuration
+     * @throws Exception if the table cannot be written
+     */
+    public static void main(final String[] args) throws Exception {
+        final Path file  = args.length > 0 ? Paths.get(args[0]) : CACHE;
+        final int  games = args.length > 1 ? Integer.parseInt(args[1]) : GAMES;
+
+        final List<Estimate> estimates = Files.exists(file) ? parse(Files.readAllBytes(file)) : new ArrayList<>();
+
+        for (int slots = 2; slots <= MAX_TABLE_SLOTS; ++slots) {
+            for (int colors = 2; colors <= MAX_TABLE_COLORS; ++colors) {
+                final int key = key(slots, colors, false);
+
+                if (estimates.stream().anyMatch(known -> key(known.slots, known.colors, known.distinct) == key)) continue;
+
+                final long     start    = System.nanoTime();
+                final Estimate estimate = simulate(slots, colors, false, Math.pow(colors, slots) > MAX_SIMULATED ? LARGE_GAMES : games);
+
+                System.out.printf("%2d slots, %d colors: %.2f guesses on average, %.0f%% within 8 rows (%d ms)%n",
+                    slots, colors, estimate.expectedGuesses(), 100 * estimate.winProbability(8),
+                    (System.nanoTime() - start) / 1000000);
+
+                estimates.add(estimate);
+                Files.write(file, toBytes(estimates));
+            }
+        }
+
+        System.out.println("Wrote " + estimates.size() + " configurations to " + file);
+    }
+}
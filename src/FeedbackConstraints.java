@@ -0,0 +1,272 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javafx.util.Pair;
+
+/**
+ * Immutable record of the rows played so far in a {@link GameState} and the feedback they received. A code
+ * is consistent with the constraints if, had it been the solution, every played row would have received the
+ * same feedback. Safe to use from any thread once constructed.
+ */
+public class FeedbackConstraints {
+    private final CodeSpace space;
+    private final int[]     guesses;
+    private final byte[][]  guessPegs;
+    private final long[]    guessHistograms;
+    private final int[]     responses;
+
+    // Number of pegs of each color in each played row, flattened as row * (colors + 1) + Peg byte
+    private final int[]     guessCounts;
+
+    /**
+     * Captures the played (full) rows of the given {@link GameState}. Must be called on the thread that
+     * owns the {@link GameState}.
+     *
+     * @param gameState the {@link GameState} to capture
+     */
+    public FeedbackConstraints(final GameState gameState) {
+        this(gameState.snapshot());
+    }
+
+    /**
+     * Captures the played (full) rows of the given {@link GameSnapshot}. May be called from any thread.
+     *
+     * @param snapshot the {@link GameSnapshot} to capture
+     */
+    public FeedbackConstraints(final GameSnapshot snapshot) {
+        this.space = CodeSpace.of(snapshot.slots, snapshot.colors, snapshot.distinct);
+
+        final List<byte[]>  pegs      = new ArrayList<>();
+        final List<Integer> responses = new ArrayList<>();
+
+        for (int i = 0; i < snapshot.maxRows; ++i) {
+            if (!snapshot.isRowFull(i)) continue;
+
+            final Pair<Integer, Integer> test = snapshot.testRow(i);
+
+            pegs.add(snapshot.rowPegs(i));
+            responses.add(space.bucket(test.getKey(), test.getValue()));
+        }
+
+        this.guessPegs       = pegs.toArray(new byte[0][]);
+        this.guessHistograms = pegs.stream().mapToLong(space::histogram).toArray();
+        this.guesses         = pegs.stream().mapToInt(space::indexOf).toArray();
+        this.responses       = responses.stream().mapToInt(Integer::intValue).toArray();
+        this.guessCounts     = countColors(space, this.guessPegs);
+    }
+
+    /**
+     * Constructs constraints from explicit rows, such as ones received from another process.
+     *
+     * @param space the {@link CodeSpace} of the game
+     * @param guessPegs the {@link Peg} bytes of each played row (all slots filled)
+     * @param responses the feedback bucket (see {@link CodeSpace#bucket(int, int)}) of each played row
+     */
+    public FeedbackConstraints(final CodeSpace space, final byte[][] guessPegs, final int[] responses) {
+        this.space           = space;
+        this.guessPegs       = guessPegs.clone();
+        this.guessHistograms = Arrays.stream(guessPegs).mapToLong(space::histogram).toArray();
+        this.guesses         = Arrays.stream(guessPegs).mapToInt(space::indexOf).toArray();
+        this.responses       = responses.clone();
+        this.guessCounts     = countColors(space, this.guessPegs);
+    }
+
+    /**
+     * @param space the {@link CodeSpace} of the game
+     * @param guessPegs the {@link Peg} bytes of each played row
+     * @return the number of pegs of each color in each row, flattened as row * (colors + 1) + Peg byte
+     */
+    private static int[] countColors(final CodeSpace space, final byte[][] guessPegs) {
+        final int[] counts = new int[guessPegs.length * (space.colors + 1)];
+
+        for (int i = 0; i < guessPegs.length; ++i) {
+            for (final byte pegByte : guessPegs[i]) {
+                ++counts[i * (space.colors + 1) + pegByte];
+            }
+        }
+
+        return counts;
+    }
+
+    /**
+     * @return the {@link CodeSpace} of the captured game
+     */
+    public CodeSpace getSpace() {
+        return this.space;
+    }
+
+    /**
+     * @return the number of played rows captured
+     */
+    public int size() {
+        return this.guesses.length;
+    }
+
+    /**
+     * @param code the code index
+     * @return whether the code is consistent with every played row
+     */
+    public boolean isConsistent(final int code) {
+        for (int i = 0; i < guesses.length; ++i) {
+            if (space.score(code, guesses[i]) != responses[i]) return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * @param pegs the {@link Peg} bytes of a code
+     * @return whether the code is consistent with every played row
+     */
+    public boolean isConsistent(final byte[] pegs) {
+        final long histogram = space.histogram(pegs);
+
+        for (int i = 0; i < guessPegs.length; ++i) {
+            if (space.score(pegs, histogram, guessPegs[i], guessHistograms[i]) != responses[i]) return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Creates a {@link Cursor} positioned on the given code. Only codes that may repeat colors can be walked
+     * this way.
+     *
+     * @param code the index of the first code to visit
+     * @return the {@link Cursor}
+     */
+    public Cursor cursor(final int code) {
+        if (space.distinct) {
+            throw new IllegalStateException("Cannot walk the codes of the no-repeat variant in place");
+        }
+
+        return new Cursor(code);
+    }
+
+    /**
+     * @param earlier another set of constraints
+     * @return whether these constraints are the earlier ones with zero or more rows played after them
+     */
+    public boolean extendsConstraints(final FeedbackConstraints earlier) {
+        if (earlier.space != this.space || earlier.guesses.length > this.guesses.length) {
+            return false;
+        }
+
+        for (int i = 0; i < earlier.guesses.length; ++i) {
+            if (earlier.guesses[i] != this.guesses[i] || earlier.responses[i] != this.responses[i]) return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Walks consecutive codes in index order, checking each against every played row without rescoring it.
+     * Moving to the next code usually changes a single slot, so the cursor keeps, for every played row,
+     * the number of pegs in the right position and in common with the current code, and only updates them
+     * for the slots that change. Not thread-safe: each worker uses its own.
+     */
+    public class Cursor {
+        private final int    colors;
+        private final int    rows;
+        private final byte[] bySlot;
+        private final int[]  rowCounts;
+        private final byte[] pegs;
+        private final int[]  counts;
+        private final int[]  reds;
+        private final int[]  common;
+        private final int[]  expectedReds;
+        private final int[]  expectedCommon;
+
+        /**
+         * @param code the index of the first code to visit
+         */
+        private Cursor(final int code) {
+            this.colors         = space.colors;
+            this.rows           = guessPegs.length;
+            this.bySlot         = new byte[space.slots * rows];
+            this.rowCounts      = guessCounts;
+            this.pegs           = space.pegsOf(code);
+            this.counts         = new int[space.colors + 1];
+            this.reds           = new int[guessPegs.length];
+            this.common         = new int[guessPegs.length];
+            this.expectedReds   = new int[guessPegs.length];
+            this.expectedCommon = new int[guessPegs.length];
+
+            for (final byte pegByte : pegs) {
+                ++counts[pegByte];
+            }
+
+            for (int i = 0; i < guessPegs.length; ++i) {
+                for (int j = 0; j < space.slots; ++j) {
+                    bySlot[j * rows + i] = guessPegs[i][j];
+                }
+
+                reds[i]           = CodeSpace.samePegs(pegs, guessPegs[i]);
+                common[i]         = CodeSpace.commonPegs(pegs, guessPegs[i]);
+                expectedReds[i]   = space.red(responses[i]);
+                expectedCommon[i] = expectedReds[i] + space.white(responses[i]);
+            }
+        }
+
+        /**
+         * @return the {@link Peg} bytes of the current code (updated in place by {@link Cursor#next()})
+         */
+        public byte[] pegs() {
+            return this.pegs;
+        }
+
+        /**
+         * @return whether the current code is consistent with every played row
+         */
+        public boolean isConsistent() {
+            for (int i = 0; i < rows; ++i) {
+                if (reds[i] != expectedReds[i] || common[i] != expectedCommon[i]) return false;
+            }
+
+            return true;
+        }
+
+        /**
+         * Moves on to the code with the next index, as {@link CodeSpace#increment(byte[])} does.
+         */
+        public void next() {
+            for (int j = 0; j < pegs.length; ++j) {
+                final int from = pegs[j];
+
+                if (from < colors) {
+                    this.change(j, from, from + 1);
+                    return;
+                }
+
+                this.change(j, from, 1);
+            }
+        }
+
+        /**
+         * @param j the slot that changes
+         * @param from the {@link Peg} byte leaving the slot
+         * @param to the {@link Peg} byte entering the slot (never the same)
+         */
+        private void change(final int j, final int from, final int to) {
+            final int stride    = colors + 1;
+            final int fromCount = counts[from];
+            final int toCount   = counts[to];
+
+            for (int i = 0, slot = j * rows; i < rows; ++i) {
+                final byte guess = bySlot[slot + i];
+
+                if (guess == from) --reds[i];
+                else if (guess == to) ++reds[i];
+
+                // A peg of a color is in common while the code has no more of it than the row does
+                if (fromCount <= rowCounts[i * stride + from]) --common[i];
+                if (toCount < rowCounts[i * stride + to]) ++common[i];
+            }
+
+            --counts[from];
+            ++counts[to];
+            pegs[j] = (byte) to;
+        }
+    }
+}
@@ -1,20 +1,40 @@
+import java.io.File;
 import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javafx.application.Platform;
 import javafx.event.EventHandler;
+import javafx.geometry.Orientation;
+import javafx.geometry.VPos;
 import javafx.scene.Node;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.ScrollBar;
+import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
 import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
+import javafx.scene.text.TextAlignment;
 import javafx.util.Pair;
 
 /**
  * Class for handling the drawing of a {@link Mastermind} game's {@link GameState} object.
  * This class doesn't directly inherit from {@link javafx.scene.canvas.Canvas}, but instead
  * chooses a compositional approach to hide the interface.
+ * 
+ * Boards taller than {@link GameCanvas#VISIBLE_ROWS} rows or wider than {@link GameCanvas#VISIBLE_SLOTS}
+ * slots are shown through a scrollable viewport: the canvas is only ever as large as the viewport and each
+ * render draws just the rows and columns that are in view, so drawing costs the same however large the
+ * board is.
+ *
+ * Input events that change the board are traced by {@link InputLatencyTracer}. Pressing F3 toggles an
+ * overlay of their latency percentiles and F4 exports the histograms to the game data directory.
  */
 public class GameCanvas {
     private static final double SLOT_WIDTH      = 50.0;
@@ -31,21 +51,66 @@ public class GameCanvas {
 
     private static final Color  INLAY_COLOR     = Color.rgb(30, 30, 30);
     private static final Color  SELECTED_COLOR  = Color.rgb(100, 100, 100);
+    private static final Color  PROGRESS_COLOR  = Color.rgb(240, 200, 0);
+    private static final Color  WARNING_COLOR   = Color.rgb(110, 25, 25);
+    private static final Color  COUNT_COLOR     = Color.rgb(150, 150, 150);
+
+    private static final double HEATMAP_OPACITY = 0.6;
+
+    private static final int    VISIBLE_ROWS    = 16;
+    private static final int    VISIBLE_SLOTS   = 16;
+
+    private static final Font   BOARD_FONT      = Font.font("Consolas", 18);
+    private static final double BOARD_LINE      = 22.0;
+
+    private static final Font   KEY_FONT        = Font.font("Consolas", 12);
+    private static final double KEY_LINE        = 14.0;
+
+    private static final Color  OVERLAY_COLOR   = Color.rgb(0, 0, 0, 0.75);
+    private static final Font   OVERLAY_FONT    = Font.font("Consolas", 12);
+    private static final double OVERLAY_LINE    = 15.0;
 
     private Canvas canvas;
+    private ScrollBar scrollBar;
+    private ScrollBar columnScrollBar;
+    private VBox view;
     private GameState gameState;
 
-    private double width  = 0;
-    private double height = 0;
+    private double width       = 0;
+    private double height      = 0;
+    private double slotsWidth  = 0;
+    private double boardWidth  = 0;
+    private double boardHeight = 0;
+    private double scrollX     = 0;
+    private double scrollY     = 0;
 
     private Optional<Pair<Integer, Integer>> selected = Optional.empty();
 
+    private OptionalDouble              hintProgress   = OptionalDouble.empty();
+    private OptionalDouble              answerProgress = OptionalDouble.empty();
+    private Optional<CandidateAnalysis> analysis       = Optional.empty();
+
+    // Runs the work of an "evil codemaker" answering a row, which must stay off the FX thread
+    private final Executor background;
+
+    private boolean showHeatmap           = false;
+    private boolean editableRowConsistent = true;
+    private boolean showLatencyOverlay    = false;
+
+    // Shared by every canvas this object creates, so each scene registers it at most once
+    private final Runnable pulseListener = InputLatencyTracer.getInstance()::pulse;
+
+    private Runnable       onBoardChanged = () -> {};
+    private Runnable       onRowCommitted = () -> {};
+
     /**
      * Constructs a new {@link GameCanvas} object using the given {@link GameState}.
      * 
      * @param gameState the {@link GameState} to display
+     * @param background the {@link Executor} on which an {@link Adversary} answers committed rows
      */
-    public GameCanvas(final GameState gameState) {
+    public GameCanvas(final GameState gameState, final Executor background) {
+        this.background = background;
         this.setGameState(gameState);
     }
 
@@ -62,41 +127,94 @@ public class GameCanvas {
      * @param gameState the new {@link GameState} object to display
      */
     public void setGameState(final GameState gameState) {
-        this.gameState = gameState;
+        this.gameState      = gameState;
+        this.answerProgress = OptionalDouble.empty();
         this.canvas = new Canvas(this.getWidth(this.gameState.slots), this.getHeight(this.gameState.maxRows));
-        this.canvas.getGraphicsContext2D().setFont(Font.font("Consolas", 18));
+        this.canvas.getGraphicsContext2D().setFont(BOARD_FONT);
+        this.canvas.sceneProperty().addListener((observable, oldScene, newScene) -> {
+            if (oldScene != null) oldScene.removePostLayoutPulseListener(this.pulseListener);
+            if (newScene != null) newScene.addPostLayoutPulseListener(this.pulseListener);
+        });
+
+        this.scrollY   = 0;
+        this.scrollBar = new ScrollBar();
+        this.scrollBar.setOrientation(Orientation.VERTICAL);
+        this.scrollBar.setMin(0);
+        this.scrollBar.setMax(Math.max(0, this.boardHeight - this.height));
+        this.scrollBar.setVisibleAmount(this.height);
+        this.scrollBar.setUnitIncrement(SLOT_WIDTH);
+        this.scrollBar.setBlockIncrement(this.height);
+        this.scrollBar.setPrefHeight(this.height);
+        this.scrollBar.setVisible(this.boardHeight > this.height);
+        this.scrollBar.setManaged(this.boardHeight > this.height);
+        this.scrollBar.setFocusTraversable(false);
+        this.scrollBar.valueProperty().addListener((observable, oldValue, newValue) -> {
+            this.scrollY = newValue.doubleValue();
+            this.render();
+        });
+
+        this.scrollX         = 0;
+        this.columnScrollBar = new ScrollBar();
+        this.columnScrollBar.setOrientation(Orientation.HORIZONTAL);
+        this.columnScrollBar.setMin(0);
+        this.columnScrollBar.setMax(Math.max(0, this.boardWidth - this.slotsWidth));
+        this.columnScrollBar.setVisibleAmount(this.slotsWidth);
+        this.columnScrollBar.setUnitIncrement(SLOT_WIDTH);
+        this.columnScrollBar.setBlockIncrement(this.slotsWidth);
+        this.columnScrollBar.setPrefWidth(this.width);
+        this.columnScrollBar.setVisible(this.boardWidth > this.slotsWidth);
+        this.columnScrollBar.setManaged(this.boardWidth > this.slotsWidth);
+        this.columnScrollBar.setFocusTraversable(false);
+        this.columnScrollBar.valueProperty().addListener((observable, oldValue, newValue) -> {
+            this.scrollX = newValue.doubleValue();
+            this.render();
+        });
+
+        this.view = new VBox(new HBox(this.canvas, this.scrollBar), this.columnScrollBar);
 
         final EventHandler<MouseEvent> mouseMovedHandler  = event -> {
+            final long arrival = System.nanoTime();
+
             final double x = event.getX();
             final double y = event.getY();
 
-            if (x > RESPONSE_WIDTH && x < width && y >= 0 && y < height) {
-                final int slotColumn = (int) ((x - RESPONSE_WIDTH) / SLOT_WIDTH);
-                final int slotRow = (int) (y / SLOT_WIDTH);
+            if (x > RESPONSE_WIDTH && x < RESPONSE_WIDTH + slotsWidth && y >= 0 && y < height) {
+                final int slotColumn = (int) ((x - RESPONSE_WIDTH + scrollX) / SLOT_WIDTH);
+                final int slotRow = (int) ((y + scrollY) / SLOT_WIDTH);
 
                 final Pair<Integer, Integer> newSelection = new Pair<>(slotRow, slotColumn);
 
                 if (selected.map(pair -> !pair.equals(newSelection)).orElse(true)) {
-                    Platform.runLater(() -> render());   
+                    requestRender(InputLatencyTracer.Input.MOUSE_MOVED, arrival);
                     selected = Optional.of(newSelection);
                 }
             } else {
                 selected = Optional.empty();
-                Platform.runLater(() -> render());
+                requestRender(InputLatencyTracer.Input.MOUSE_MOVED, arrival);
             }
         };
         final EventHandler<MouseEvent> mouseExitedHandler = event -> {
             selected = Optional.empty();
             Platform.runLater(() -> render());
         };
+        final EventHandler<ScrollEvent> scrollHandler     = event -> {
+            scrollBar.setValue(Math.min(Math.max(scrollY - event.getDeltaY(), scrollBar.getMin()), scrollBar.getMax()));
+            columnScrollBar.setValue(Math.min(Math.max(scrollX - event.getDeltaX(), columnScrollBar.getMin()), columnScrollBar.getMax()));
+            selected = Optional.empty();
+        };
         final EventHandler<KeyEvent>   keyTypedHandler    = event -> {
+            final long arrival = System.nanoTime();
+
             if (selected.isPresent()) {
                 final char key = event.getCharacter().charAt(0);
                 final Pair<Integer, Integer> pair = selected.get();
 
                 if (key == 'x') {
-                    gameState.clearPeg(pair.getKey(), pair.getValue());
-                    Platform.runLater(() -> render());
+                    if (gameState.clearPeg(pair.getKey(), pair.getValue())) {
+                        updateConsistency();
+                        onBoardChanged.run();
+                    }
+                    requestRender(InputLatencyTracer.Input.KEY_TYPED, arrival);
                     return;
                 }
 
@@ -104,14 +222,27 @@ public class GameCanvas {
 
                 if (pegColor.isPresent()) {
                     if (gameState.setPeg(pair.getKey(), pair.getValue(), new Peg(pegColor.get()))) {
-                        gameState.nextRowIfPossible();
-                        Platform.runLater(() -> render());
+                        if (!this.commitIfFull()) {
+                            SoundEffects.getInstance().play(SoundEffects.Sound.PEG);
+                        }
+                        requestRender(InputLatencyTracer.Input.KEY_TYPED, arrival);
                     }
                 }
             }
         };
         final EventHandler<KeyEvent>   keyPressedHandler  = event -> {
-            if (event.getCode().isArrowKey()) {
+            final long arrival = System.nanoTime();
+
+            if (event.getCode() == KeyCode.F3) {
+                showLatencyOverlay = !showLatencyOverlay;
+                requestRender(InputLatencyTracer.Input.KEY_PRESSED, arrival);
+            } else if (event.getCode() == KeyCode.F4) {
+                final File file = new File("../gamedata/latency_" + System.currentTimeMillis() + ".csv");
+
+                if (InputLatencyTracer.getInstance().export(file)) {
+                    System.out.println("Exported input latencies to " + file.getPath());
+                }
+            } else if (event.getCode().isArrowKey()) {
                 if (selected.isEmpty()) {
                     selected = Optional.of(new Pair<>(0, 0));
                 } else {
@@ -136,23 +267,270 @@ public class GameCanvas {
                     }
                 }
 
-                Platform.runLater(() -> render());
+                scrollToRow(selected.get().getKey());
+                scrollToColumn(selected.get().getValue());
+                requestRender(InputLatencyTracer.Input.KEY_PRESSED, arrival);
             }
         };
 
         this.canvas.addEventFilter(MouseEvent.MOUSE_MOVED, mouseMovedHandler);
         this.canvas.addEventFilter(MouseEvent.MOUSE_EXITED, mouseExitedHandler);
+        this.canvas.addEventFilter(ScrollEvent.SCROLL, scrollHandler);
         this.canvas.addEventFilter(KeyEvent.KEY_TYPED, keyTypedHandler);
         this.canvas.addEventFilter(KeyEvent.KEY_PRESSED, keyPressedHandler);
 
+        this.analysis = Optional.empty();
+        this.updateConsistency();
+        this.onBoardChanged.run();
+        this.onRowCommitted.run();
+        this.render();
+    }
+
+    /**
+     * Sets the action run (on the FX thread) whenever a {@link Peg} is placed or removed through this
+     * {@link GameCanvas}, or the displayed {@link GameState} is replaced.
+     * 
+     * @param onBoardChanged the action to run
+     */
+    public void setOnBoardChanged(final Runnable onBoardChanged) {
+        this.onBoardChanged = onBoardChanged;
+    }
+
+    /**
+     * Sets the action run (on the FX thread) whenever a row is committed through this {@link GameCanvas},
+     * or the displayed {@link GameState} is replaced.
+     * 
+     * @param onRowCommitted the action to run
+     */
+    public void setOnRowCommitted(final Runnable onRowCommitted) {
+        this.onRowCommitted = onRowCommitted;
+    }
+
+    /**
+     * Sets the analysis of the secrets still consistent with the feedback so far. Their number is drawn in
+     * the feedback area of the editable row, and their per-slot color frequencies are used by the heatmap.
+     * Must be called on the FX thread.
+     * 
+     * @param analysis the {@link CandidateAnalysis} of the displayed game, or empty to hide it
+     */
+    public void setCandidateAnalysis(final Optional<CandidateAnalysis> analysis) {
+        this.analysis = analysis;
+        this.render();
+    }
+
+    /**
+     * Sets whether each empty cell of the editable row is shaded by how likely each color is in that slot.
+     * Must be called on the FX thread.
+     * 
+     * @param showHeatmap whether to show the heatmap
+     */
+    public void setShowHeatmap(final boolean showHeatmap) {
+        this.showHeatmap = showHeatmap;
         this.render();
     }
 
     /**
-     * @return the actual {@link javafx.scene.canvas.Canvas} object being drawn on
+     * Fills the editable row with the given pegs, which plays them as the next guess. Must be called on
+     * the FX thread. Either every peg is placed or the row is left as it was.
+     * 
+     * @param pegs the {@link Peg} bytes to place
+     * @return whether the pegs were placed
+     */
+    public boolean fillEditableRow(final byte[] pegs) {
+        final Optional<Integer> row = this.gameState.getEditableRow();
+
+        if (row.isEmpty() || pegs.length != this.gameState.slots) {
+            return false;
+        }
+
+        for (final byte pegByte : pegs) {
+            if (pegByte < 1 || pegByte > this.gameState.colors) return false;
+        }
+
+        final byte[] before = new byte[pegs.length];
+
+        for (int j = 0; j < pegs.length; ++j) {
+            before[j] = this.gameState.pegAt(row.get(), j).map(Peg::toByte).orElse((byte) 0);
+        }
+
+        if (!this.placeRow(row.get(), pegs)) {
+            this.placeRow(row.get(), before);
+            return false;
+        }
+
+        this.commitIfFull();
+        this.render();
+        return true;
+    }
+
+    /**
+     * Replaces every peg of a row. The row is cleared first so that, in the no-repeat variant, a color may
+     * move to another slot.
+     * 
+     * @param i the row
+     * @param pegs the {@link Peg} bytes to place (0 leaves the slot empty)
+     * @return whether every peg was placed
+     */
+    private boolean placeRow(final int i, final byte[] pegs) {
+        for (int j = 0; j < pegs.length; ++j) {
+            this.gameState.clearPeg(i, j);
+        }
+
+        for (int j = 0; j < pegs.length; ++j) {
+            final Optional<Peg> peg = Peg.fromByte(pegs[j]);
+
+            if (peg.isPresent() && !this.gameState.setPeg(i, j, peg.get())) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Moves on to the next row if the editable row was just filled, notifying the listeners of the change
+     * and playing the matching sound effect. Against an "evil codemaker" the row is only committed once the
+     * {@link Adversary} has answered in the background; meanwhile the board is locked and shows the
+     * progress of the answer.
+     * 
+     * @return whether a row was committed or is being answered
+     */
+    private boolean commitIfFull() {
+        final GameState         game   = this.gameState;
+        final Optional<Integer> before = game.getEditableRow();
+
+        if (!game.isAdversarial()) {
+            game.nextRowIfPossible();
+            return this.rowCommitted(before);
+        }
+
+        // Only redraw once per percent to avoid flooding the FX thread
+        final AtomicInteger reported = new AtomicInteger();
+
+        final boolean answering = game.answerInBackground(this.background, Platform::runLater, fraction -> {
+            final int percent = (int) (fraction * 100);
+
+            if (reported.getAndAccumulate(percent, Math::max) < percent) {
+                Platform.runLater(() -> {
+                    if (this.gameState == game && game.isAnswering()) {
+                        this.answerProgress = OptionalDouble.of(fraction);
+                        this.render();
+                    }
+                });
+            }
+        }, () -> {
+            // The game may have been replaced while the adversary was thinking
+            if (this.gameState == game) {
+                this.answerProgress = OptionalDouble.empty();
+                this.rowCommitted(before);
+                this.render();
+            }
+        });
+
+        if (answering) {
+            this.answerProgress = OptionalDouble.of(0);
+            this.onBoardChanged.run();
+            return true;
+        }
+
+        return this.rowCommitted(before);
+    }
+
+    /**
+     * Notifies the listeners after the board may have moved on to the next row, playing the matching sound
+     * effect if it did.
+     * 
+     * @param before the editable row before the commit
+     * @return whether a row was committed
+     */
+    private boolean rowCommitted(final Optional<Integer> before) {
+        final boolean committed = !this.gameState.getEditableRow().equals(before);
+
+        if (committed) {
+            this.analysis = Optional.empty();
+            this.onRowCommitted.run();
+            this.gameState.getEditableRow().ifPresent(this::scrollToRow);
+
+            if (this.gameState.testRow(before.get()).getKey() == this.gameState.slots) {
+                SoundEffects.getInstance().play(SoundEffects.Sound.WIN);
+            } else if (this.gameState.getEditableRow().isEmpty()) {
+                SoundEffects.getInstance().play(SoundEffects.Sound.LOSS);
+            } else {
+                SoundEffects.getInstance().play(SoundEffects.Sound.COMMIT);
+            }
+        }
+
+        this.updateConsistency();
+        this.onBoardChanged.run();
+
+        return committed;
+    }
+
+    /**
+     * Re-checks whether the editable row contradicts the feedback of the rows above it.
+     */
+    private void updateConsistency() {
+        this.editableRowConsistent = this.gameState.getEditableRow().map(this.gameState::isRowConsistent).orElse(true);
+    }
+
+    /**
+     * Sets the progress of a hint being computed for the editable row, drawn as a bar beneath its
+     * feedback area. Must be called on the FX thread.
+     * 
+     * @param hintProgress the fraction completed, or empty to hide the bar
+     */
+    public void setHintProgress(final OptionalDouble hintProgress) {
+        this.hintProgress = hintProgress;
+        this.render();
+    }
+
+    /**
+     * Schedules a render on behalf of an input event, tracing the event until the render reaches the
+     * screen.
+     * 
+     * @param input the kind of {@link InputLatencyTracer.Input}
+     * @param arrival the {@link System#nanoTime()} at which the event arrived
+     */
+    private void requestRender(final InputLatencyTracer.Input input, final long arrival) {
+        InputLatencyTracer.getInstance().awaitRender(input, arrival);
+        Platform.runLater(() -> render());
+    }
+
+    /**
+     * Scrolls the viewport just enough to show the given row.
+     * 
+     * @param i the row to show
+     */
+    private void scrollToRow(final int i) {
+        final double upperY = SLOT_WIDTH * i;
+
+        if (upperY < this.scrollY) {
+            this.scrollBar.setValue(upperY);
+        } else if (upperY + SLOT_WIDTH > this.scrollY + this.height) {
+            this.scrollBar.setValue(upperY + SLOT_WIDTH - this.height);
+        }
+    }
+
+    /**
+     * Scrolls the viewport just enough to show the given column.
+     * 
+     * @param j the column to show
+     */
+    private void scrollToColumn(final int j) {
+        final double leftX = SLOT_WIDTH * j;
+
+        if (leftX < this.scrollX) {
+            this.columnScrollBar.setValue(leftX);
+        } else if (leftX + SLOT_WIDTH > this.scrollX + this.slotsWidth) {
+            this.columnScrollBar.setValue(leftX + SLOT_WIDTH - this.slotsWidth);
+        }
+    }
+
+    /**
+     * @return the {@link javafx.scene.Node} holding the canvas being drawn on and its scroll bars
      */
     public Node asNode() {
-        return this.canvas;
+        return this.view;
     }
 
     /**
@@ -166,35 +544,69 @@ public class GameCanvas {
      * Renders the current {@link GameState} to the internal {@link javafx.scene.canvas.Canvas}.
      */
     private void render() {
+        final long            start   = System.nanoTime();
         final GraphicsContext context = this.canvas.getGraphicsContext2D();
 
+        context.clearRect(0, 0, this.width, this.height);
+
         context.setFill(INLAY_COLOR);
         context.fillRect(BORDER_WIDTH, BORDER_WIDTH, RESPONSE_WIDTH - BORDER_WIDTH_2, this.height - BORDER_WIDTH_2);
         context.setFill(Color.BLACK);
         context.fillRect(this.width - SLOT_WIDTH + BORDER_WIDTH, BORDER_WIDTH, this.width - BORDER_WIDTH_2, this.height - BORDER_WIDTH_2);
 
-        for (int i = 0; i < this.gameState.colors; ++i) {
+        // The key legend is a single column at the board's font size while that fits the viewport; wider
+        // alphabets switch to a smaller font spread over as many columns as they need
+        final int     colors      = this.gameState.colors;
+        final boolean squeezed    = this.height / colors < BOARD_LINE;
+        final int     columns     = squeezed ? (int) Math.ceil(colors * KEY_LINE / this.height) : 1;
+        final int     perColumn   = (colors + columns - 1) / columns;
+        final double  keySpacing  = Math.min(SLOT_WIDTH, this.height / perColumn);
+        final double  columnWidth = SLOT_WIDTH / columns;
+
+        context.save();
+        context.setTextAlign(TextAlignment.CENTER);
+        context.setTextBaseline(VPos.CENTER);
+        context.setFont(squeezed ? KEY_FONT : BOARD_FONT);
+
+        for (int i = 0; i < colors; ++i) {
             final Peg.PegColor color = Peg.PegColor.values()[i];
             context.setFill(color.color);
-            context.fillText(color.key + "", this.width - SLOT_WIDTH / 2, SLOT_WIDTH * i + SLOT_WIDTH / 2 + 5);
+            context.fillText(color.key + "", this.width - SLOT_WIDTH + columnWidth * (i / perColumn + 0.5), keySpacing * (i % perColumn + 0.5));
         }
 
-        for (int i = 0; i < this.gameState.maxRows; ++i) {
+        context.restore();
+
+        final Optional<Integer> editableRow = this.gameState.getEditableRow();
+
+        final int firstRow    = (int) (this.scrollY / SLOT_WIDTH);
+        final int lastRow     = Math.min(this.gameState.maxRows, (int) Math.ceil((this.scrollY + this.height) / SLOT_WIDTH));
+        final int firstColumn = (int) (this.scrollX / SLOT_WIDTH);
+        final int lastColumn  = Math.min(this.gameState.slots, (int) Math.ceil((this.scrollX + this.slotsWidth) / SLOT_WIDTH));
+
+        for (int i = firstRow; i < lastRow; ++i) {
             final Pair<Integer, Integer> test = this.gameState.testRow(i);
 
             if (this.gameState.isRowFull(i)) {
                 context.setFill(Color.RED);
-                context.fillText(test.getKey().toString(), BORDER_WIDTH + SLOT_WIDTH / 2, BORDER_WIDTH + SLOT_WIDTH / 2 + SLOT_WIDTH * i + 5);
+                context.fillText(test.getKey().toString(), BORDER_WIDTH + SLOT_WIDTH / 2, BORDER_WIDTH + SLOT_WIDTH / 2 + SLOT_WIDTH * i - this.scrollY + 5);
 
                 context.setFill(Color.WHITE);
-                context.fillText(test.getValue().toString(), BORDER_WIDTH + SLOT_WIDTH / 2 + 50, BORDER_WIDTH + SLOT_WIDTH / 2 + SLOT_WIDTH * i + 5);
+                context.fillText(test.getValue().toString(), BORDER_WIDTH + SLOT_WIDTH / 2 + 50, BORDER_WIDTH + SLOT_WIDTH / 2 + SLOT_WIDTH * i - this.scrollY + 5);
             }
+        }
 
-            for (int j = 0; j < this.gameState.slots; ++j) {
+        // Columns scrolled partly out of view must not spill over the feedback area or the key legend
+        context.save();
+        context.beginPath();
+        context.rect(RESPONSE_WIDTH, 0, this.slotsWidth, this.height);
+        context.clip();
+
+        for (int i = firstRow; i < lastRow; ++i) {
+            for (int j = firstColumn; j < lastColumn; ++j) {
                 final Optional<Peg> peg = this.gameState.pegAt(i, j);
 
-                final double leftX  = RESPONSE_WIDTH + SLOT_WIDTH * j;
-                final double upperY = SLOT_WIDTH * i;
+                final double leftX  = RESPONSE_WIDTH + SLOT_WIDTH * j - this.scrollX;
+                final double upperY = SLOT_WIDTH * i - this.scrollY;
 
                 final double centerX = leftX + SLOT_WIDTH / 2;
                 final double centerY = upperY + SLOT_WIDTH / 2;
@@ -206,6 +618,10 @@ public class GameCanvas {
                 }
                 context.fillRect(BORDER_WIDTH + leftX, BORDER_WIDTH + upperY, SLOT_WIDTH - BORDER_WIDTH_2, SLOT_WIDTH - BORDER_WIDTH_2);
 
+                if (this.showHeatmap && peg.isEmpty() && this.analysis.isPresent() && editableRow.equals(Optional.of(i))) {
+                    this.drawHeatmapCell(context, this.analysis.get(), j, BORDER_WIDTH + leftX, BORDER_WIDTH + upperY);
+                }
+
                 if (peg.isPresent()) {
                     context.setFill(peg.get().getColor().color);
                     context.fillOval(centerX - PEG_RADIUS, centerY - PEG_RADIUS, PEG_DIAM, PEG_DIAM);
@@ -217,27 +633,141 @@ public class GameCanvas {
                 }
             }
         }
+
+        context.restore();
+
+        this.gameState.getEditableRow().ifPresent(i -> {
+            final double upperY = SLOT_WIDTH * i - this.scrollY;
+
+            if (!this.editableRowConsistent) {
+                context.setFill(WARNING_COLOR);
+                context.fillRect(BORDER_WIDTH_2, upperY + BORDER_WIDTH, RESPONSE_WIDTH - BORDER_WIDTH_2 * 2, SLOT_WIDTH - BORDER_WIDTH_2);
+            }
+
+            this.analysis.ifPresent(a -> {
+                context.setFill(COUNT_COLOR);
+                context.fillText(formatCount(a.count), BORDER_WIDTH + SLOT_WIDTH / 2, upperY + SLOT_WIDTH / 2 + 5);
+            });
+        });
+
+        // An answer being computed locks the board, so it takes precedence over a hint
+        final OptionalDouble progress = this.answerProgress.isPresent() ? this.answerProgress : this.hintProgress;
+
+        if (progress.isPresent()) {
+            this.gameState.getEditableRow().ifPresent(i -> {
+                final double barWidth = (RESPONSE_WIDTH - BORDER_WIDTH_2 * 2) * Math.min(Math.max(progress.getAsDouble(), 0), 1);
+                context.setFill(PROGRESS_COLOR);
+                context.fillRect(BORDER_WIDTH_2, SLOT_WIDTH * (i + 1) - this.scrollY - BORDER_WIDTH_2 * 2, barWidth, BORDER_WIDTH);
+            });
+        }
+
+        if (this.showLatencyOverlay) {
+            this.drawLatencyOverlay(context);
+        }
+
+        Telemetry.record(Telemetry.Metric.RENDER, start, null);
+        InputLatencyTracer.getInstance().rendered();
+    }
+
+    /**
+     * Draws the latency percentiles of each traced input in the upper left corner of the board: from the
+     * arrival of the event to the pulse showing its result, and the median up to the end of the render
+     * drawing it.
+     * 
+     * @param context the {@link GraphicsContext} to draw on
+     */
+    private void drawLatencyOverlay(final GraphicsContext context) {
+        final InputLatencyTracer          tracer = InputLatencyTracer.getInstance();
+        final InputLatencyTracer.Input[] inputs = InputLatencyTracer.Input.values();
+
+        context.setFill(OVERLAY_COLOR);
+        context.fillRect(BORDER_WIDTH, BORDER_WIDTH, this.width - SLOT_WIDTH - BORDER_WIDTH, OVERLAY_LINE * (inputs.length + 2) + BORDER_WIDTH_2);
+
+        context.setFont(OVERLAY_FONT);
+        context.setFill(Color.WHITE);
+        context.fillText(String.format("%-11s %5s %5s %5s %5s ms", "input", "p50", "p99", "max", "draw"), BORDER_WIDTH_2, BORDER_WIDTH + OVERLAY_LINE);
+
+        for (int k = 0; k < inputs.length; ++k) {
+            final LatencyHistogram toPulse  = tracer.toPulse(inputs[k]);
+            final LatencyHistogram toRender = tracer.toRender(inputs[k]);
+
+            context.fillText(String.format("%-11s %5.1f %5.1f %5.1f %5.1f", inputs[k].label,
+                toPulse.percentile(50) / 1e6, toPulse.percentile(99) / 1e6, toPulse.max() / 1e6, toRender.percentile(50) / 1e6),
+                BORDER_WIDTH_2, BORDER_WIDTH + OVERLAY_LINE * (k + 2));
+        }
+
+        context.fillText("dropped " + tracer.dropped() + ", F4 exports", BORDER_WIDTH_2, BORDER_WIDTH + OVERLAY_LINE * (inputs.length + 2));
+        context.setFont(BOARD_FONT);
+    }
+
+    /**
+     * Shades a cell with one horizontal band per color, each as tall as the probability of that color
+     * appearing in the cell's slot among the remaining secrets.
+     * 
+     * @param context the {@link GraphicsContext} to draw on
+     * @param analysis the {@link CandidateAnalysis} providing the probabilities
+     * @param slot the slot (column) of the cell
+     * @param x the left edge of the cell's inlay
+     * @param y the upper edge of the cell's inlay
+     */
+    private void drawHeatmapCell(final GraphicsContext context, final CandidateAnalysis analysis, final int slot,
+            final double x, final double y) {
+        final double size = SLOT_WIDTH - BORDER_WIDTH_2;
+
+        double offset = 0;
+
+        for (int c = 0; c < this.gameState.colors; ++c) {
+            final Peg.PegColor color = Peg.PegColor.values()[c];
+            final double band = size * analysis.probability(slot, color);
+
+            context.setFill(color.color.deriveColor(0, 1, 1, HEATMAP_OPACITY));
+            context.fillRect(x, y + offset, size, band);
+            offset += band;
+        }
+    }
+
+    /**
+     * Shortens large counts with a metric suffix so they fit in the feedback area (e.g. 1679616 -> "1.7M").
+     * 
+     * @param count the count to format
+     * @return the formatted count
+     */
+    private static String formatCount(final long count) {
+        if (count < 10_000) {
+            return Long.toString(count);
+        } else if (count < 1_000_000) {
+            return String.format("%.1fk", count / 1e3);
+        } else if (count < 1_000_000_000) {
+            return String.format("%.1fM", count / 1e6);
+        } else {
+            return String.format("%.1fG", count / 1e9);
+        }
     }
 
     /**
-     * Returns the width in pixels that the internal {@link javafx.scene.canvas.Canvas} should be.
+     * Returns the width in pixels that the internal {@link javafx.scene.canvas.Canvas} should be: that of
+     * the feedback area, the key legend and the slots, up to {@link GameCanvas#VISIBLE_SLOTS} of them.
      * 
      * @param slots the number of slots
      * @return the width in pixels
      */
     private double getWidth(final int slots) {
-        this.width = SLOT_WIDTH * (slots + 1) + RESPONSE_WIDTH;
+        this.boardWidth = SLOT_WIDTH * slots;
+        this.slotsWidth = SLOT_WIDTH * Math.min(slots, VISIBLE_SLOTS);
+        this.width      = this.slotsWidth + SLOT_WIDTH + RESPONSE_WIDTH;
         return this.width;
     }
 
     /**
-     * Returns the height in pixels that the internal {@link javafx.scene.canvas.Canvas} should be.
+     * Returns the height in pixels that the internal {@link javafx.scene.canvas.Canvas} should be: that of
+     * the whole board, up to {@link GameCanvas#VISIBLE_ROWS} rows.
      * 
      * @param maxRows the number of rows
      * @return the height in pixels
      */
     private double getHeight(final int maxRows) {
-        this.height = SLOT_WIDTH * maxRows;
+        this.boardHeight = SLOT_WIDTH * maxRows;
+        this.height      = SLOT_WIDTH * Math.min(maxRows, VISIBLE_ROWS);
         return this.height;
     }
 }
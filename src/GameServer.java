@@ -0,0 +1,477 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import javafx.util.Pair;
+
+/**
+ * Headless server hosting many concurrent {@link GameState} sessions behind a line protocol on a local TCP
+ * socket. Every request is a single line of space-separated words and receives a single line in reply,
+ * starting with "OK" or "ERR":
+ *
+ *      NEW slots colors rows           -> OK id
+ *      LOAD hex                        -> OK id            (hex of a {@link GameState#toByteList()} save)
+ *      SET id row column color         -> OK red white     (color is a {@link Peg.PegColor} key)
+ *      CLEAR id row column             -> OK
+ *      TEST id row                     -> OK red white
+ *      STATE id                        -> OK hex
+ *      END id                          -> OK
+ *      SHARE id                        -> OK               (see below)
+ *      STATS                           -> OK summary      (see {@link SessionStore#toString()})
+ *      QUIT                            -> OK               (closes the connection)
+ *
+ * As in the {@link GameCanvas}, a SET that fills the editable row plays it; the reply then carries the
+ * row's feedback (otherwise "OK 0 0"). Each connection is served by its own virtual thread, and sessions may
+ * be used from any connection. Sessions are kept in a {@link SessionStore}, so idle ones are spilled to disk.
+ *
+ * Requests on a session are normally applied one at a time under the session's lock. SHARE moves a session
+ * played by several clients at once (cooperative play, or spectators polling STATE) onto a
+ * {@link SharedGameState}: its SET, CLEAR, TEST and STATE requests then run concurrently without any lock,
+ * and a SET that lost a race for the row is answered "ERR not editable" like any other rejected move.
+ * Shared sessions stay in memory until they are ended, and only compact boards (see
+ * {@link GameSnapshot#isCompact(int, int)}) can be shared.
+ *
+ * A request with missing, unparsable or out-of-range arguments is answered "ERR malformed request: reason".
+ * Any other failure is a bug: it is logged and answered "ERR internal error".
+ *
+ * Usage: java GameServer [port] [max-hot-megabytes] [ttl-seconds]
+ */
+public class GameServer {
+    private static final int  DEFAULT_PORT          = 4040;
+    private static final long DEFAULT_MAX_HOT_BYTES = 256L * 1024 * 1024;
+
+    private final SessionStore               sessions;
+    private final Map<Long, SharedGameState> shared = new ConcurrentHashMap<>();
+    private final AtomicLong                 nextId = new AtomicLong(1);
+
+    // One virtual thread per connection: each spends nearly all its time blocked reading its socket
+    private final ExecutorService connections = Executors.newThreadPerTaskExecutor(
+        Thread.ofVirtual().name("mastermind-connection-", 0).factory());
+
+    private Optional<ServerSocket> serverSocket = Optional.empty();
+
+    /**
+     * Constructs a server whose sessions may use up to 256 MiB of heap before being spilled to a temporary
+     * file.
+     *
+     * @throws IOException if the spill file cannot be created
+     */
+    public GameServer() throws IOException {
+        this(new SessionStore(DEFAULT_MAX_HOT_BYTES, 0, Files.createTempFile("mastermind_sessions", ".spill")));
+    }
+
+    /**
+     * Constructs a server keeping its sessions in the given {@link SessionStore}.
+     *
+     * @param sessions the {@link SessionStore} to use
+     */
+    public GameServer(final SessionStore sessions) {
+        this.sessions = sessions;
+    }
+
+    /**
+     * Starts accepting connections on the loopback interface.
+     *
+     * @param port the port to listen on (0 picks a free port)
+     * @return the port actually listened on
+     * @throws IOException if the socket cannot be bound
+     */
+    public int start(final int port) throws IOException {
+        final ServerSocket socket = new ServerSocket();
+        socket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+
+        this.serverSocket = Optional.of(socket);
+
+        final Thread acceptor = new Thread(() -> {
+            while (!socket.isClosed()) {
+                try {
+                    final Socket client = socket.accept();
+                    client.setTcpNoDelay(true);
+                    connections.execute(() -> this.serve(client));
+                } catch (final IOException e) {
+                    if (!socket.isClosed()) {
+                        System.out.println("Failed to accept connection: " + e.toString());
+                    }
+                }
+            }
+        }, "mastermind-acceptor");
+
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        return socket.getLocalPort();
+    }
+
+    /**
+     * Stops accepting connections and closes the ones that are open.
+     */
+    public void stop() {
+        this.serverSocket.ifPresent(socket -> {
+            try {
+                socket.close();
+            } catch (final IOException e) {
+                System.out.println("Failed to close server socket: " + e.toString());
+            }
+        });
+
+        this.connections.shutdownNow();
+
+        try {
+            this.sessions.close();
+        } catch (final IOException e) {
+            System.out.println("Failed to close session store: " + e.toString());
+        }
+    }
+
+    /**
+     * @return the number of sessions currently hosted
+     */
+    public int sessionCount() {
+        return this.sessions.size() + this.shared.size();
+    }
+
+    /**
+     * Executes a single request line and returns the reply line (without a line terminator). Can be called
+     * directly to use the server in-process.
+     *
+     * @param line the request
+     * @return the reply
+     */
+    public String handle(final String line) {
+        final String[] words = line.trim().split("\\s+");
+
+        try {
+            switch (words[0]) {
+                case "NEW": {
+                    requireArguments(words, 3);
+
+                    final int slots  = parseInRange(words[1], "slots", 2, GameState.MAX_SLOTS);
+                    final int colors = parseInRange(words[2], "colors", 2, Peg.PegColor.values().length);
+                    final int rows   = parseInRange(words[3], "rows", 2, GameState.MAX_ROWS);
+                    return "OK " + this.addSession(new GameState(slots, colors, rows, GameState.randomSolution(slots, colors)));
+                }
+                case "LOAD":
+                    requireArguments(words, 1);
+                    return "OK " + this.addSession(GameState.fromByteList(fromHex(words[1])));
+                case "SET": {
+                    requireArguments(words, 4);
+
+                    final int  row    = Integer.parseInt(words[2]);
+                    final int  column = Integer.parseInt(words[3]);
+                    final char key    = words[4].charAt(0);
+                    return this.withSession(words[1], gameState -> this.set(gameState, row, column, key),
+                        board -> this.set(board, row, column, key));
+                }
+                case "CLEAR": {
+                    requireArguments(words, 3);
+
+                    final int row    = Integer.parseInt(words[2]);
+                    final int column = Integer.parseInt(words[3]);
+                    return this.withSession(words[1], gameState -> gameState.clearPeg(row, column) ? "OK" : "ERR not editable",
+                        board -> board.clearPeg(row, column) ? "OK" : "ERR not editable");
+                }
+                case "TEST": {
+                    requireArguments(words, 2);
+
+                    final int row = Integer.parseInt(words[2]);
+                    return this.withSession(words[1], gameState -> reply(gameState.testRow(row)),
+                        board -> reply(test(board.snapshot(), row)));
+                }
+                case "STATE":
+                    requireArguments(words, 1);
+                    return this.withSession(words[1], gameState -> "OK " + toHex(gameState.toByteList()),
+                        board -> "OK " + toHex(board.snapshot().toByteList()));
+                case "END": {
+                    requireArguments(words, 1);
+
+                    final long    id     = Long.parseLong(words[1]);
+                    final boolean shared = this.shared.remove(id) != null;
+                    return this.sessions.remove(id) || shared ? "OK" : "ERR no such session";
+                }
+                case "SHARE":
+                    requireArguments(words, 1);
+                    return this.share(Long.parseLong(words[1]));
+                case "STATS":
+                    return "OK " + this.sessions + " shared=" + this.shared.size();
+                case "QUIT":
+                    return "OK";
+                default:
+                    return "ERR unknown command";
+            }
+        } catch (final IllegalArgumentException e) {
+            // Also covers NumberFormatException
+            return "ERR malformed request: " + e.getMessage();
+        } catch (final RuntimeException e) {
+            System.out.println("Failed to handle request \"" + line + "\": " + e.toString());
+            return "ERR internal error";
+        }
+    }
+
+    /**
+     * @param words the words of a request, starting with the command
+     * @param count the number of arguments the command takes
+     * @throws IllegalArgumentException if the request has fewer arguments
+     */
+    private static void requireArguments(final String[] words, final int count) {
+        if (words.length < count + 1) {
+            throw new IllegalArgumentException(words[0] + " takes " + count + " arguments");
+        }
+    }
+
+    /**
+     * @param word an argument of a request
+     * @param name the name of the argument, for the error message
+     * @param min the least value allowed
+     * @param max the greatest value allowed
+     * @return the value of the argument
+     * @throws IllegalArgumentException if the argument is not an integer within the range
+     */
+    private static int parseInRange(final String word, final String name, final int min, final int max) {
+        final int value = Integer.parseInt(word);
+
+        if (value < min || value > max) {
+            throw new IllegalArgumentException(name + " must be between " + min + " and " + max);
+        }
+
+        return value;
+    }
+
+    /**
+     * Serves a single connection until the client quits or disconnects.
+     *
+     * @param client the connected {@link Socket}
+     */
+    private void serve(final Socket client) {
+        try (client;
+             BufferedReader reader = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.US_ASCII));
+             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(client.getOutputStream(), StandardCharsets.US_ASCII))) {
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                writer.write(this.handle(line));
+                writer.write('\n');
+                writer.flush();
+
+                if (line.trim().equals("QUIT")) {
+                    return;
+                }
+            }
+        } catch (final IOException e) {
+            // The client went away; nothing to clean up beyond closing the socket
+        }
+    }
+
+    /**
+     * Places a peg and plays the row if it is now full.
+     *
+     * @param gameState the session
+     * @param row the row
+     * @param column the column
+     * @param key the {@link Peg.PegColor} key
+     * @return the reply line
+     */
+    private String set(final GameState gameState, final int row, final int column, final char key) {
+        final Optional<Peg.PegColor> color = Peg.PegColor.fromCharacter(key, gameState.colors);
+
+        if (color.isEmpty()) {
+            return "ERR unknown color";
+        } else if (!gameState.setPeg(row, column, new Peg(color.get()))) {
+            return "ERR not editable";
+        }
+
+        gameState.nextRowIfPossible();
+
+        return reply(gameState.testRow(row));
+    }
+
+    /**
+     * Places a peg on a shared board and plays the row if it is now full. The feedback is read from a
+     * snapshot taken afterwards, so it is that of the row as committed, whoever committed it.
+     *
+     * @param board the shared session
+     * @param row the row
+     * @param column the column
+     * @param key the {@link Peg.PegColor} key
+     * @return the reply line
+     */
+    private String set(final SharedGameState board, final int row, final int column, final char key) {
+        final Optional<Peg.PegColor> color = Peg.PegColor.fromCharacter(key, board.colors);
+
+        if (color.isEmpty()) {
+            return "ERR unknown color";
+        } else if (!board.setPeg(row, column, new Peg(color.get()))) {
+            return "ERR not editable";
+        }
+
+        board.nextRowIfPossible();
+
+        return reply(test(board.snapshot(), row));
+    }
+
+    /**
+     * @param snapshot a {@link GameSnapshot} of a shared session
+     * @param row the row, which may be out of range as with {@link GameState#testRow(int)}
+     * @return the feedback of the row, or (0, 0) if it is out of range or not full
+     */
+    private static Pair<Integer, Integer> test(final GameSnapshot snapshot, final int row) {
+        return row < 0 || row >= snapshot.maxRows ? new Pair<>(0, 0) : snapshot.testRow(row);
+    }
+
+    /**
+     * @param test the feedback of a row
+     * @return the reply line carrying it
+     */
+    private static String reply(final Pair<Integer, Integer> test) {
+        return "OK " + test.getKey() + " " + test.getValue();
+    }
+
+    /**
+     * Moves a session onto a {@link SharedGameState}. The board is built while holding the session's lock,
+     * so no move on the session is lost, and requests that were waiting for the lock find the shared board
+     * instead (see {@link GameServer#withSession(String, Function, Function)}).
+     *
+     * @param id the id of the session
+     * @return the reply line
+     */
+    private String share(final long id) {
+        if (this.shared.containsKey(id)) {
+            return "OK";
+        }
+
+        final Optional<String> reply = this.sessions.apply(id, gameState -> {
+            if (gameState.isAdversarial()) {
+                return "ERR cannot share an evil codemaker game";
+            } else if (!GameSnapshot.isCompact(gameState.slots, gameState.colors)) {
+                return "ERR too many slots or colors to share";
+            }
+
+            this.shared.putIfAbsent(id, new SharedGameState(gameState.snapshot()));
+            return "OK";
+        });
+
+        if (reply.isEmpty()) {
+            return this.shared.containsKey(id) ? "OK" : "ERR no such session";
+        } else if (reply.get().equals("OK")) {
+            this.sessions.remove(id);
+        }
+
+        return reply.get();
+    }
+
+    /**
+     * @param gameState the new session
+     * @return the id of the session
+     */
+    private long addSession(final GameState gameState) {
+        final long id = nextId.getAndIncrement();
+        this.sessions.put(id, gameState);
+        return id;
+    }
+
+    /**
+     * Runs an action on a session while holding its lock, or, if the session is shared, runs the shared
+     * action on its board without locking.
+     *
+     * @param id the session id as sent by the client
+     * @param action the action producing the reply line
+     * @param sharedAction the action producing the reply line for a shared session
+     * @return the reply line
+     */
+    private String withSession(final String id, final Function<GameState, String> action,
+            final Function<SharedGameState, String> sharedAction) {
+        final long            key   = Long.parseLong(id);
+        final SharedGameState board = this.shared.get(key);
+
+        if (board != null) {
+            return sharedAction.apply(board);
+        }
+
+        // A session shared while this request waited for its lock is left untouched (a null reply)
+        final Optional<String> reply = this.sessions.apply(key, gameState -> this.shared.containsKey(key) ? null : action.apply(gameState));
+
+        if (reply.isEmpty() && this.shared.containsKey(key)) {
+            return sharedAction.apply(this.shared.get(key));
+        }
+
+        return reply.orElse("ERR no such session");
+    }
+
+    /**
+     * @param data the bytes to encode
+     * @return the bytes as lowercase hexadecimal
+     */
+    public static String toHex(final List<Byte> data) {
+        final StringBuilder builder = new StringBuilder(data.size() * 2);
+
+        for (final byte b : data) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * @param hex the hexadecimal string to decode
+     * @return the decoded bytes
+     * @throws IllegalArgumentException if the string has an odd length or a character that is not a
+     *         hexadecimal digit
+     */
+    public static List<Byte> fromHex(final String hex) {
+        if (hex.length() % 2 != 0) {
+            throw new IllegalArgumentException("odd number of hex digits");
+        }
+
+        final List<Byte> data = new ArrayList<>(hex.length() / 2);
+
+        for (int i = 0; i < hex.length(); i += 2) {
+            final int high = Character.digit(hex.charAt(i), 16);
+            final int low  = Character.digit(hex.charAt(i + 1), 16);
+
+            if (high < 0 || low < 0) {
+                throw new IllegalArgumentException("not a hex digit at " + (high < 0 ? i : i + 1));
+            }
+
+            data.add((byte) (high << 4 | low));
+        }
+
+        return data;
+    }
+
+    /**
+     * Command line entry point.
+     *
+     * @param args optionally the port to listen on, the in-memory session cap in MiB, and the session
+     *        time-to-live in seconds
+     * @throws IOException if the socket cannot be bound
+     * @throws InterruptedException if interrupted while serving
+     */
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        final long maxHotBytes = args.length > 1 ? Long.parseLong(args[1]) * 1024 * 1024 : DEFAULT_MAX_HOT_BYTES;
+        final long ttlNanos    = args.length > 2 ? Long.parseLong(args[2]) * 1_000_000_000L : 0;
+
+        final Path       spill  = Files.createTempFile("mastermind_sessions", ".spill");
+        final GameServer server = new GameServer(new SessionStore(maxHotBytes, ttlNanos, spill));
+        final int port = server.start(args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT);
+
+        System.out.println("Mastermind server listening on localhost:" + port);
+        Thread.currentThread().join();
+    }
+}
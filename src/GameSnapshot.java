@@ -0,0 +1,362 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import javafx.util.Pair;
+
+/**
+ * Immutable copy of a {@link GameState} at one point in time. Every row (and the solution) is packed into
+ * longs: four bits per slot while the colors fit in four bits, so that a row of up to 16 slots is a single
+ * long, and six bits per slot for the wider alphabets. Each row has its own array and snapshots share the
+ * rows they have in common, so making a new one after a move copies the edited row and the row references
+ * but no other row. Snapshots are safe to read from any thread without locking; see
+ * {@link GameState#snapshot()}.
+ */
+public class GameSnapshot {
+    private static final int  BITS_PER_SLOT      = 4;
+    private static final long SLOT_MASK          = 0xF;
+    private static final int  WIDE_BITS_PER_SLOT = 6;
+
+    public final int     slots;
+    public final int     colors;
+    public final int     maxRows;
+    public final boolean distinct;
+
+    private final int      bits;
+    private final int      perWord;
+    private final long[]   solution;
+    private final long[][] rows;
+    private final int      editableRow;
+
+    /**
+     * Private constructor for a snapshot built from packed rows.
+     *
+     * @param slots the number of slots
+     * @param colors the number of colors
+     * @param maxRows the number of rows
+     * @param distinct whether the game is of the no-repeat variant
+     * @param solution the packed solution
+     * @param rows the packed rows, one array of longs per row (not copied, and possibly shared with other
+     *        snapshots)
+     * @param editableRow the index of the editable row, or -1 if there is none
+     */
+    private GameSnapshot(final int slots, final int colors, final int maxRows, final boolean distinct,
+            final long[] solution, final long[][] rows, final int editableRow) {
+        this.slots       = slots;
+        this.colors      = colors;
+        this.maxRows     = maxRows;
+        this.distinct    = distinct;
+        this.bits        = bitsPerSlot(colors);
+        this.perWord     = Long.SIZE / this.bits;
+        this.solution    = solution;
+        this.rows        = rows;
+        this.editableRow = editableRow;
+    }
+
+    /**
+     * Captures the given {@link GameState}. Must be called on the thread that owns the {@link GameState};
+     * other threads should use {@link GameState#snapshot()}.
+     *
+     * @param gameState the {@link GameState} to capture
+     * @return the {@link GameSnapshot}
+     */
+    public static GameSnapshot of(final GameState gameState) {
+        final int      bits     = bitsPerSlot(gameState.colors);
+        final int      words    = wordsPerRow(gameState.slots, gameState.colors);
+        final long[][] rows     = new long[gameState.maxRows][words];
+        final long[]   solution = new long[words];
+
+        for (int i = 0; i < gameState.maxRows; ++i) {
+            packInto(gameState.rowPegs(i), bits, rows[i]);
+        }
+
+        packInto(gameState.solutionPegs(), bits, solution);
+
+        return new GameSnapshot(gameState.slots, gameState.colors, gameState.maxRows, gameState.distinct, solution,
+            rows, gameState.getEditableRow().orElse(-1));
+    }
+
+    /**
+     * Describes a game that has just started: every row is empty and the first one is editable. Lets a
+     * {@link GameState} publish its first snapshot from its constructor without handing out itself.
+     *
+     * @param slots the number of slots
+     * @param colors the number of colors
+     * @param maxRows the number of rows
+     * @param distinct whether the game is of the no-repeat variant
+     * @param solutionPegs the {@link Peg} bytes of the solution
+     * @return the {@link GameSnapshot}
+     */
+    public static GameSnapshot ofNewGame(final int slots, final int colors, final int maxRows, final boolean distinct,
+            final byte[] solutionPegs) {
+        final int      words    = wordsPerRow(slots, colors);
+        final long[]   empty    = new long[words];
+        final long[][] rows     = new long[maxRows][];
+        final long[]   solution = new long[words];
+
+        // Empty rows never change in place, so they can all share one array
+        Arrays.fill(rows, empty);
+        packInto(solutionPegs, bitsPerSlot(colors), solution);
+
+        return new GameSnapshot(slots, colors, maxRows, distinct, solution, rows, 0);
+    }
+
+    /**
+     * @param i the ith row coordinate
+     * @param j the jth column coordinate
+     * @param pegByte the {@link Peg} byte to place (0 to clear the slot)
+     * @return a copy of this snapshot with the slot changed, sharing every other row with this one
+     */
+    public GameSnapshot withPeg(final int i, final int j, final byte pegByte) {
+        final long[][] copy  = rows.clone();
+        final long[]   row   = rows[i].clone();
+        final int      index = j / perWord;
+        final int      shift = (j % perWord) * bits;
+        final long     mask  = (1L << bits) - 1;
+
+        row[index] = (row[index] & ~(mask << shift)) | ((pegByte & mask) << shift);
+        copy[i]    = row;
+
+        return new GameSnapshot(slots, colors, maxRows, distinct, solution, copy, editableRow);
+    }
+
+    /**
+     * @param i the ith row coordinate
+     * @param j the jth column coordinate
+     * @return the {@link Optional}<{@link Peg}> at row i and column j (if it exists)
+     */
+    public Optional<Peg> pegAt(final int i, final int j) {
+        if (i < 0 || i >= maxRows || j < 0 || j >= slots) {
+            return Optional.empty();
+        }
+
+        return Peg.fromByte(this.get(rows[i], j));
+    }
+
+    /**
+     * @param i the ith row coordinate
+     * @return the {@link Peg} bytes of the row (0 for empty slots), or an empty array if the row is undefined
+     */
+    public byte[] rowPegs(final int i) {
+        return i < 0 || i >= maxRows ? new byte[0] : this.unpack(rows[i]);
+    }
+
+    /**
+     * @return the {@link Peg} bytes of the solution
+     */
+    public byte[] solutionPegs() {
+        return this.unpack(solution);
+    }
+
+    /**
+     * @param i the row to select
+     * @return whether the row is full of {@link Peg}s (returns false if the row is undefined)
+     */
+    public boolean isRowFull(final int i) {
+        if (i < 0 || i >= maxRows) {
+            return false;
+        }
+
+        for (int j = 0; j < slots; ++j) {
+            if (this.get(rows[i], j) == 0) return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * @return the index of the row accepting edits when the snapshot was taken (empty once every row is
+     *         used up)
+     */
+    public Optional<Integer> getEditableRow() {
+        return editableRow < 0 ? Optional.empty() : Optional.of(editableRow);
+    }
+
+    /**
+     * Computes the feedback for a given row, exactly as {@link GameState#testRow(int)} does.
+     *
+     * @param i the ith row coordinate
+     * @return a pair of integers (r,w) representing the red and white responses
+     */
+    public Pair<Integer, Integer> testRow(final int i) {
+        if (!this.isRowFull(i)) {
+            return new Pair<>(0, 0);
+        }
+
+        final byte[] guess  = this.rowPegs(i);
+        final byte[] secret = this.solutionPegs();
+        final int    reds   = CodeSpace.samePegs(guess, secret);
+
+        return new Pair<>(reds, CodeSpace.commonPegs(guess, secret) - reds);
+    }
+
+    /**
+     * Interprets this snapshot as a list of bytes in the format of {@link GameState#toByteList()}.
+     *
+     * @return the {@link List}<{@link Byte}> representation of this snapshot
+     */
+    public List<Byte> toByteList() {
+        final byte[] pegData = new byte[(maxRows + 1) * slots];
+
+        System.arraycopy(this.solutionPegs(), 0, pegData, 0, slots);
+
+        for (int i = 0; i < maxRows; ++i) {
+            System.arraycopy(this.rowPegs(i), 0, pegData, (i + 1) * slots, slots);
+        }
+
+        return GameState.encode(slots, colors, maxRows, distinct, pegData);
+    }
+
+    /**
+     * @param other the object to compare to
+     * @return whether the other object is a snapshot of an identical game
+     */
+    @Override
+    public boolean equals(final Object other) {
+        if (!(other instanceof GameSnapshot)) {
+            return false;
+        }
+
+        final GameSnapshot that = (GameSnapshot) other;
+
+        return this.slots == that.slots && this.colors == that.colors && this.distinct == that.distinct
+            && Arrays.equals(this.solution, that.solution)
+            && this.editableRow == that.editableRow && Arrays.deepEquals(this.rows, that.rows);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.deepHashCode(rows) * 31 + Arrays.hashCode(solution);
+    }
+
+    /**
+     * Whether rows of the given configuration fit in a single long with {@link GameSnapshot#pack(byte[])},
+     * leaving the upper four bits free for callers to use as flags.
+     *
+     * @param slots the number of slots
+     * @param colors the number of colors
+     * @return whether the configuration is compact
+     */
+    public static boolean isCompact(final int slots, final int colors) {
+        return colors <= SLOT_MASK && slots * BITS_PER_SLOT <= Long.SIZE - 4;
+    }
+
+    /**
+     * Builds a snapshot of a compact configuration (see {@link GameSnapshot#isCompact(int, int)}) from
+     * rows packed with {@link GameSnapshot#pack(byte[])}.
+     *
+     * @param slots the number of slots
+     * @param colors the number of colors
+     * @param distinct whether the game is of the no-repeat variant
+     * @param solution the packed solution
+     * @param rows the packed rows
+     * @param editableRow the index of the editable row, or -1 if there is none
+     * @return the {@link GameSnapshot}
+     */
+    public static GameSnapshot fromPacked(final int slots, final int colors, final boolean distinct, final long solution,
+            final long[] rows, final int editableRow) {
+        if (!isCompact(slots, colors)) {
+            throw new IllegalArgumentException("Not a compact configuration: " + slots + " slots, " + colors + " colors");
+        }
+
+        final long[][] unpacked = new long[rows.length][];
+
+        for (int i = 0; i < rows.length; ++i) {
+            unpacked[i] = new long[] { rows[i] };
+        }
+
+        return new GameSnapshot(slots, colors, rows.length, distinct, new long[] { solution }, unpacked, editableRow);
+    }
+
+    /**
+     * Packs a row of a compact configuration into the lowest {@code 4 * slots} bits of a long, slot 0
+     * lowest.
+     *
+     * @param pegs the {@link Peg} bytes of a row (0 for empty slots)
+     * @return the packed row
+     */
+    public static long pack(final byte[] pegs) {
+        long packed = 0;
+
+        for (int j = 0; j < pegs.length; ++j) {
+            packed |= (pegs[j] & SLOT_MASK) << (j * BITS_PER_SLOT);
+        }
+
+        return packed;
+    }
+
+    /**
+     * @param packed the packed row
+     * @param j the jth column
+     * @param pegByte the {@link Peg} byte to place (0 to clear the slot)
+     * @return the packed row with the slot changed
+     */
+    public static long withSlot(final long packed, final int j, final byte pegByte) {
+        final int shift = j * BITS_PER_SLOT;
+        return (packed & ~(SLOT_MASK << shift)) | ((pegByte & SLOT_MASK) << shift);
+    }
+
+    /**
+     * @param packed the packed row
+     * @param j the jth column
+     * @return the {@link Peg} byte in the slot (0 if empty)
+     */
+    public static byte slot(final long packed, final int j) {
+        return (byte) ((packed >>> (j * BITS_PER_SLOT)) & SLOT_MASK);
+    }
+
+    /**
+     * @param colors the number of colors
+     * @return the number of bits each slot is packed into
+     */
+    private static int bitsPerSlot(final int colors) {
+        return colors <= SLOT_MASK ? BITS_PER_SLOT : WIDE_BITS_PER_SLOT;
+    }
+
+    /**
+     * @param slots the number of slots
+     * @param colors the number of colors
+     * @return the number of longs each row is packed into
+     */
+    private static int wordsPerRow(final int slots, final int colors) {
+        final int perWord = Long.SIZE / bitsPerSlot(colors);
+        return Math.max(1, (slots + perWord - 1) / perWord);
+    }
+
+    /**
+     * @param pegs the {@link Peg} bytes of a row (0 for empty slots)
+     * @param bits the number of bits per slot
+     * @param out the array receiving the packed row
+     */
+    private static void packInto(final byte[] pegs, final int bits, final long[] out) {
+        final int  perWord = Long.SIZE / bits;
+        final long mask    = (1L << bits) - 1;
+
+        for (int j = 0; j < pegs.length; ++j) {
+            out[j / perWord] |= (pegs[j] & mask) << ((j % perWord) * bits);
+        }
+    }
+
+    /**
+     * @param packed the packed row
+     * @param j the jth column
+     * @return the {@link Peg} byte in the slot (0 if empty)
+     */
+    private byte get(final long[] packed, final int j) {
+        return (byte) ((packed[j / perWord] >>> ((j % perWord) * bits)) & ((1L << bits) - 1));
+    }
+
+    /**
+     * @param packed the packed row
+     * @return the {@link Peg} bytes of the row (0 for empty slots)
+     */
+    private byte[] unpack(final long[] packed) {
+        final byte[] pegs = new byte[slots];
+
+        for (int j = 0; j < slots; ++j) {
+            pegs[j] = this.get(packed, j);
+        }
+
+        return pegs;
+    }
+}
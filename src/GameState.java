@@ -1,6 +1,10 @@
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleConsumer;
 
 import javafx.util.Pair;
 
@@ -14,21 +18,70 @@ import javafx.util.Pair;
  *      (slots) bytes: solution pegs,
  * (slots*rows) bytes: guess pegs,
  * 
- * which are then compressed down from the total number of bytes (n) to (ceil(n/2)).
+ * which are then compressed down from the total number of bytes (n) to (ceil(n/2)). This holds games of
+ * up to 15 colors. Games with more colors, and no-repeat games, are exported in the versioned format:
+ * 
+ *            1 byte:  0 (never a valid # of slots, so marks the format as versioned),
+ *            1 byte:  format version ({@link GameState#SAVE_VERSION}),
+ *            1 byte:  flags (bit 0: no repeated colors; absent in version 2),
+ *            1 byte:  # of slots,
+ *            1 byte:  # of colors,
+ *            1 byte:  # of rows,
+ *  (slots*(rows+1)) pegs: solution pegs then guess pegs, each in just enough bits for the colors (and 0
+ *                         for an empty slot), packed lowest bit first and padded to a whole byte.
+ * 
+ * A {@link GameState} is not thread-safe and belongs to the thread that edits it. Every edit publishes a new
+ * immutable {@link GameSnapshot}, which any other thread may read through {@link GameState#snapshot()}.
  */
 public class GameState {
     private static final int DEFAULT_SLOTS  = 4;
     private static final int DEFAULT_COLORS = 6;
     private static final int DEFAULT_ROWS   = 8;
+
+    /**
+     * The most slots a game may have.
+     */
+    public static final int MAX_SLOTS = 64;
+
+    /**
+     * The most rows a game may have: the number of rows is saved in a single unsigned byte.
+     */
+    public static final int MAX_ROWS  = 255;
+
+    /**
+     * The version of the versioned save format written for games the original format cannot describe.
+     */
+    public static final int SAVE_VERSION = 3;
+
+    private static final int FLAG_DISTINCT = 1;
+
+    // Calls to testRow, read by Telemetry in the game; a plain counter so that the headless tools, which
+    // never start Telemetry, register no bean or flight recorder event
+    static final LongAdder TEST_ROW_CALLS = new LongAdder();
     
     public final int slots;
     public final int colors;
     public final int maxRows;
 
+    /**
+     * Whether this is the no-repeat ("Bulls and Cows") variant, where neither the solution nor any guess
+     * may use a color twice.
+     */
+    public final boolean distinct;
+
     private final List<Row> rows;
 
     private Row solution;
 
+    // In the "evil codemaker" mode, the adversary answering each committed row in place of the solution,
+    // its answers so far (kept here so that reading them never touches an adversary busy answering), and
+    // whether an answer is being computed in the background
+    private Optional<Adversary> adversary = Optional.empty();
+    private final List<Integer> answers   = new ArrayList<>();
+    private boolean             answering = false;
+
+    private volatile GameSnapshot snapshot;
+
     /**
      * Default constructor that creates a game with 4, 6 colors, 8 rows and a random solution code.
      */
@@ -49,9 +102,9 @@ public class GameState {
      * Constructor that creates a game with the specified number of slots, colors, rows, and with
      * the specified solution. The correct bounds for the variables are:
      * 
-     * 2 <= slots <= 10
+     * 2 <= slots <= {@link GameState#MAX_SLOTS}
      * 2 <= colors <= # of {@link Peg.PegColor}
-     * 2 <= maxRows <= 16
+     * 2 <= maxRows <= {@link GameState#MAX_ROWS}
      * 
      * The provided values are truncated to these ranges.
      * 
@@ -61,9 +114,30 @@ public class GameState {
      * @param solutionPegs the byte array representing the solution
      */
     public GameState(final int slots, final int colors, final int maxRows, final byte[] solutionPegs) {
-        this.slots   = Math.min(Math.max(slots, 2), 10);
-        this.colors  = Math.min(Math.max(colors, 2), Peg.PegColor.values().length);
-        this.maxRows = Math.min(Math.max(maxRows, 2), 16);
+        this(slots, colors, maxRows, false, solutionPegs);
+    }
+
+    /**
+     * Constructor that creates a game as {@link GameState#GameState(int, int, int, byte[])} does, optionally
+     * of the no-repeat variant. A no-repeat game has at most as many slots as there are colors, and at least
+     * as many colors as slots; the provided values are truncated accordingly.
+     * 
+     * @param slots the number of slots
+     * @param colors the number of colors
+     * @param maxRows the number of rows
+     * @param distinct whether colors may not repeat within the solution or a guess
+     * @param solutionPegs the byte array representing the solution
+     * @throws IllegalArgumentException if the game is of the no-repeat variant and the solution repeats a color
+     */
+    public GameState(final int slots, final int colors, final int maxRows, final boolean distinct, final byte[] solutionPegs) {
+        this.slots    = clampSlots(slots, distinct);
+        this.colors   = clampColors(colors, this.slots, distinct);
+        this.maxRows  = Math.min(Math.max(maxRows, 2), MAX_ROWS);
+        this.distinct = distinct;
+
+        if (distinct && hasRepeats(solutionPegs)) {
+            throw new IllegalArgumentException("The solution of a no-repeat game repeats a color");
+        }
 
         this.rows     = new ArrayList<>(this.maxRows);
         this.solution = new Row(solutionPegs, this.slots, false);
@@ -75,6 +149,71 @@ public class GameState {
 
         // Only the first row should be initially editable
         this.rows.get(0).toggleEditable();
+
+        this.snapshot = GameSnapshot.ofNewGame(this.slots, this.colors, this.maxRows, distinct, toPegBytes(this.solution));
+    }
+
+    /**
+     * Creates a game against an "evil codemaker" ({@link Adversary}) that never fixes a secret, and instead
+     * answers each committed row with the feedback that keeps the most secrets possible. The solution only
+     * ever holds one secret consistent with the answers so far, so that snapshots, saves and hints see an
+     * ordinary game; a saved game is loaded as an ordinary game against that secret.
+     * 
+     * @param slots the number of slots
+     * @param colors the number of colors
+     * @param maxRows the number of rows
+     * @param distinct whether colors may not repeat within the solution or a guess
+     * @return the new {@link GameState}
+     * @throws IllegalArgumentException if the configuration has too many codes to enumerate
+     */
+    public static GameState withAdversary(final int slots, final int colors, final int maxRows, final boolean distinct) {
+        // Clamp as the constructor will, so that the adversary's codes fit the board
+        final int       clampedSlots  = clampSlots(slots, distinct);
+        final int       clampedColors = clampColors(colors, clampedSlots, distinct);
+        final Adversary adversary     = new Adversary(CodeSpace.of(clampedSlots, clampedColors, distinct));
+        final GameState state         = new GameState(clampedSlots, clampedColors, maxRows, distinct, adversary.representative());
+
+        state.adversary = Optional.of(adversary);
+
+        return state;
+    }
+
+    /**
+     * @param slots the requested number of slots
+     * @param distinct whether colors may not repeat
+     * @return the number of slots a game actually gets (see {@link GameState#GameState(int, int, int, boolean, byte[])})
+     */
+    private static int clampSlots(final int slots, final boolean distinct) {
+        return Math.min(Math.max(slots, 2), distinct ? Peg.PegColor.values().length : MAX_SLOTS);
+    }
+
+    /**
+     * @param colors the requested number of colors
+     * @param slots the clamped number of slots
+     * @param distinct whether colors may not repeat
+     * @return the number of colors a game actually gets (see {@link GameState#GameState(int, int, int, boolean, byte[])})
+     */
+    private static int clampColors(final int colors, final int slots, final boolean distinct) {
+        return Math.min(Math.max(colors, distinct ? slots : 2), Peg.PegColor.values().length);
+    }
+
+    /**
+     * @return whether the feedback comes from an "evil codemaker" (see
+     *         {@link GameState#withAdversary(int, int, int, boolean)})
+     */
+    public boolean isAdversarial() {
+        return this.adversary.isPresent();
+    }
+
+    /**
+     * Returns the latest {@link GameSnapshot} of this game without locking. Safe to call from any thread:
+     * the snapshot reflects every edit completed on the owning thread before it was published, and never
+     * a partially edited row.
+     * 
+     * @return the current {@link GameSnapshot}
+     */
+    public GameSnapshot snapshot() {
+        return this.snapshot;
     }
 
     /**
@@ -86,15 +225,28 @@ public class GameState {
     }
 
     /**
-     * Sets the current solution of this {@link GameState} object to the specified solution.
+     * @return the index of the row currently accepting edits (empty once every row is used up)
+     */
+    public Optional<Integer> getEditableRow() {
+        for (int i = 0; i < maxRows; ++i) {
+            if (rows.get(i).isEditable()) return Optional.of(i);
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Sets the current solution of this {@link GameState} object to the specified solution. In the
+     * no-repeat variant the solution must not repeat a color.
      * 
      * @param solution the byte array representing the solution
      * @return whether the method was successful
      */
     public boolean setSolution(final byte[] solution) {
         final Row row = new Row(solution, this.slots, false);
-        if (row.isFull()) {
+        if (row.isFull() && !(this.distinct && hasRepeats(solution))) {
             this.solution = row;
+            this.publish();
             return true;
         } else {
             return false;
@@ -118,16 +270,28 @@ public class GameState {
      * Computes the feedback for a given row. Feedback consists of two numbers, "red" and "white".
      * The "red" number records how many {@link Peg}s in the given row are the correct color and in the
      * correct position. The "white" number records how many {@link Peg}s are the correct color but in the
-     * wrong position.
+     * wrong position. Against an "evil codemaker" the feedback of a committed row is the answer the
+     * {@link Adversary} gave when it was committed.
      * 
      * @param i the ith row coordinate
      * @return a pair of integers (r,w) representing the red and white responses
      */
     public Pair<Integer, Integer> testRow(final int i) {
+        TEST_ROW_CALLS.increment();
+
         final Pair<Integer, Integer> fail = new Pair<Integer,Integer>(0, 0);
         final Optional<Row> temp = this.getRow(i);
         
-        if (temp.isEmpty()) {
+        if (this.adversary.isPresent()) {
+            final CodeSpace space = this.adversary.get().space;
+
+            if (i < 0 || i >= this.answers.size()) {
+                return fail;
+            }
+
+            final int bucket = this.answers.get(i);
+            return new Pair<Integer,Integer>(space.red(bucket), space.white(bucket));
+        } else if (temp.isEmpty()) {
             return fail;
         } else {
             final Row rowToTest = temp.get();
@@ -143,7 +307,46 @@ public class GameState {
     }
 
     /**
-     * Sets the {@link Peg} at the specified location to be the provided {@link Peg}. 
+     * Checks whether the (possibly partially filled) row could still be completed into a code that is
+     * consistent with the feedback of every full row above it, i.e. whether it could still be the solution.
+     * Only the full rows above are examined, and the check stops at the first contradiction. For a partial
+     * row the test is necessary but not sufficient: each earlier row is considered on its own.
+     * 
+     * @param i the ith row
+     * @return false if the row contradicts the feedback of an earlier row
+     */
+    public boolean isRowConsistent(final int i) {
+        final Optional<Row> temp = this.getRow(i);
+
+        if (temp.isEmpty()) {
+            return true;
+        }
+
+        final Row row = temp.get();
+        final int unfilled = row.emptySlots();
+
+        for (int k = 0; k < i; ++k) {
+            final Row earlier = rows.get(k);
+
+            if (!earlier.isFull()) continue;
+
+            final int reds    = solution.getRed(earlier);
+            final int matches = solution.getWhite(earlier);
+
+            final int rowReds    = row.getRed(earlier);
+            final int rowMatches = row.getWhite(earlier);
+
+            if (rowReds > reds || rowReds + unfilled < reds || rowMatches > matches || rowMatches + unfilled < matches) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Sets the {@link Peg} at the specified location to be the provided {@link Peg}. In the no-repeat
+     * variant a color already placed elsewhere in the row is refused.
      * 
      * @param i the ith row
      * @param j the jth column
@@ -151,9 +354,12 @@ public class GameState {
      * @return whether the set was successful
      */
     public boolean setPeg(final int i, final int j, final Peg peg) {
-        if (i < 0 || i >= maxRows) return false;
+        if (i < 0 || i >= maxRows || this.answering) return false;
+        else if (this.distinct && this.repeatsInRow(i, j, peg.toByte())) return false;
+        else if (!rows.get(i).setPeg(j, peg)) return false;
         else {
-            return rows.get(i).setPeg(j, peg);
+            this.snapshot = this.snapshot.withPeg(i, j, peg.toByte());
+            return true;
         }
     }
 
@@ -165,10 +371,58 @@ public class GameState {
      * @return whether the removal was successful
      */
     public boolean clearPeg(final int i, final int j) {
-        if (i < 0 || i >= maxRows) return false;
+        if (i < 0 || i >= maxRows || this.answering || !rows.get(i).clearPeg(j)) return false;
         else {
-            return rows.get(i).clearPeg(j);
+            this.snapshot = this.snapshot.withPeg(i, j, (byte) 0);
+            return true;
+        }
+    }
+
+    /**
+     * @param i the ith row
+     * @param j the jth column, which is ignored
+     * @param pegByte the {@link Peg} byte to look for
+     * @return whether another slot of the row holds the color
+     */
+    private boolean repeatsInRow(final int i, final int j, final byte pegByte) {
+        final byte[] pegs = this.rowPegs(i);
+
+        for (int k = 0; k < pegs.length; ++k) {
+            if (k != j && pegs[k] == pegByte) return true;
         }
+
+        return false;
+    }
+
+    /**
+     * @param pegs {@link Peg} bytes (0 for empty slots)
+     * @return whether any color appears more than once
+     */
+    private static boolean hasRepeats(final byte[] pegs) {
+        long seen = 0;
+
+        for (final byte peg : pegs) {
+            if (peg == 0) continue;
+            if ((seen & (1L << peg)) != 0) return true;
+            seen |= 1L << peg;
+        }
+
+        return false;
+    }
+
+    /**
+     * @param i the ith row
+     * @return the {@link Peg} bytes of the row (0 for empty slots), or an empty array if the row is undefined
+     */
+    public byte[] rowPegs(final int i) {
+        return this.getRow(i).map(GameState::toPegBytes).orElse(new byte[0]);
+    }
+
+    /**
+     * @return the {@link Peg} bytes of the solution
+     */
+    public byte[] solutionPegs() {
+        return toPegBytes(this.solution);
     }
 
     /**
@@ -177,29 +431,168 @@ public class GameState {
      * @return the {@link List}<{@link Byte}> representation of this object
      */
     public List<Byte> toByteList() {
-        final List<Byte> data = new ArrayList<>();
+        final byte[] pegData = new byte[(maxRows + 1) * slots];
+
+        System.arraycopy(this.solutionPegs(), 0, pegData, 0, slots);
+
+        for (int i = 0; i < maxRows; ++i) {
+            System.arraycopy(this.rowPegs(i), 0, pegData, (i + 1) * slots, slots);
+        }
+
+        return GameState.encode(slots, colors, maxRows, distinct, pegData);
+    }
+
+    /**
+     * Encodes a game in the format given in {@link GameState}, choosing the original format whenever it can
+     * describe the game so that small games keep their size and stay readable by older versions.
+     * 
+     * @param slots the number of slots
+     * @param colors the number of colors
+     * @param maxRows the number of rows
+     * @param distinct whether the game is of the no-repeat variant
+     * @param pegData the {@link Peg} bytes of the solution followed by those of every row
+     * @return the encoded game
+     */
+    public static List<Byte> encode(final int slots, final int colors, final int maxRows, final boolean distinct,
+            final byte[] pegData) {
+        final List<Byte> data      = new ArrayList<>();
+        final boolean    versioned = colors >= 16 || distinct;
+
+        if (versioned) {
+            data.add((byte) 0);
+            data.add((byte) SAVE_VERSION);
+            data.add((byte) (distinct ? FLAG_DISTINCT : 0));
+        }
 
         data.add((byte) slots);
         data.add((byte) colors);
         data.add((byte) maxRows);
 
-        final List<Byte> pegData = new ArrayList<>();
-        
-        pegData.addAll(this.solution.toByteList());
+        if (versioned) {
+            data.addAll(GameState.packBits(pegData, bitsPerPeg(colors)));
+        } else {
+            final List<Byte> pegList = new ArrayList<>(pegData.length);
 
-        for (final Row row : this.rows) {
-            pegData.addAll(row.toByteList());
-        }
+            for (final byte b : pegData) {
+                pegList.add(b);
+            }
 
-        data.addAll(GameState.squeeze(pegData));
+            data.addAll(GameState.squeeze(pegList));
+        }
 
         return data;
     }
 
     /**
-     * Shifts which row is editable to the next row if possible.
+     * Shifts which row is editable to the next row if possible. Against an "evil codemaker" this is when the
+     * {@link Adversary} answers the row, and the solution moves to a secret consistent with the answer. The
+     * answer is computed on the calling thread; see
+     * {@link GameState#answerInBackground(Executor, Executor, DoubleConsumer, Runnable)} for interactive games.
+     * Does nothing while an answer is being computed in the background.
      */
     public void nextRowIfPossible() {
+        final Optional<Row> row = this.fullEditableRow();
+
+        if (row.isEmpty() || this.answering) {
+            return;
+        }
+
+        if (this.adversary.isPresent()) {
+            final Adversary adversary = this.adversary.get();
+            final int       bucket    = adversary.respond(toPegBytes(row.get()));
+
+            this.applyAnswer(bucket, adversary.representative());
+        } else {
+            this.advanceRow();
+        }
+    }
+
+    /**
+     * Against an "evil codemaker", has the {@link Adversary} answer the full editable row without blocking
+     * the owning thread, as an answer takes seconds on the largest boards. Until the answer has been
+     * applied the board refuses every edit (see {@link GameState#isAnswering()}); it is then applied on the
+     * owning thread as {@link GameState#nextRowIfPossible()} would have.
+     *
+     * @param background runs the {@link Adversary}'s work
+     * @param owner runs work on the thread that owns this game (such as {@code Platform::runLater})
+     * @param progress receives the fraction of the answer computed so far, from the background threads
+     * @param onAnswered runs on the owning thread once the answer has been applied
+     * @return whether an answer was started (false if the game has no adversary, the editable row is not
+     *         full, or an answer is already being computed)
+     */
+    public boolean answerInBackground(final Executor background, final Executor owner, final DoubleConsumer progress,
+            final Runnable onAnswered) {
+        final Optional<Row> row = this.fullEditableRow();
+
+        if (this.adversary.isEmpty() || row.isEmpty() || this.answering) {
+            return false;
+        }
+
+        final Adversary adversary = this.adversary.get();
+        final byte[]    guess     = toPegBytes(row.get());
+
+        this.answering = true;
+
+        background.execute(() -> {
+            try {
+                final int    bucket         = adversary.respond(guess, progress);
+                final byte[] representative = adversary.representative();
+
+                owner.execute(() -> {
+                    this.answering = false;
+                    this.applyAnswer(bucket, representative);
+                    onAnswered.run();
+                });
+            } catch (final RuntimeException e) {
+                System.out.println("Failed to answer row: " + e.toString());
+
+                owner.execute(() -> {
+                    this.answering = false;
+                    onAnswered.run();
+                });
+            }
+        });
+
+        return true;
+    }
+
+    /**
+     * @return whether an {@link Adversary}'s answer is being computed in the background, during which the
+     *         board refuses edits
+     */
+    public boolean isAnswering() {
+        return this.answering;
+    }
+
+    /**
+     * Records an {@link Adversary}'s answer to the full editable row and moves on to the next row.
+     *
+     * @param bucket the feedback bucket given
+     * @param representative the {@link Peg} bytes of a secret consistent with every answer so far
+     */
+    private void applyAnswer(final int bucket, final byte[] representative) {
+        this.answers.add(bucket);
+        this.solution = new Row(representative, this.slots, false);
+        this.advanceRow();
+    }
+
+    /**
+     * @return the editable row, if it is full
+     */
+    private Optional<Row> fullEditableRow() {
+        for (final Row row : this.rows) {
+            if (row.isEditable()) {
+                return row.isFull() ? Optional.of(row) : Optional.empty();
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Makes the row after the full editable row editable in its place (if there is one).
+     */
+    private void advanceRow() {
         boolean found = false;
 
         for (final Row row : this.rows) {
@@ -208,9 +601,13 @@ public class GameState {
                 found = true;
             } else if (found) {
                 row.toggleEditable();
-                return;
+                break;
             }
         }
+
+        if (found) {
+            this.publish();
+        }
     }
 
     /**
@@ -230,6 +627,21 @@ public class GameState {
         return str;
     }
 
+    /**
+     * Replaces the published {@link GameSnapshot} with one of the current state.
+     */
+    private void publish() {
+        this.snapshot = GameSnapshot.of(this);
+    }
+
+    /**
+     * @param row the {@link Row} to convert
+     * @return the {@link Peg} bytes of the row (0 for empty slots)
+     */
+    private static byte[] toPegBytes(final Row row) {
+        return row.pegBytes.clone();
+    }
+
     /**
      * Retrieves the row at the given location (or an empty {@link Optional} if the row
      * does not exist).
@@ -287,33 +699,135 @@ public class GameState {
         return newData;
     }
 
+    /**
+     * @param colors the number of colors
+     * @return the number of bits needed for a {@link Peg} byte (or 0 for an empty slot)
+     */
+    public static int bitsPerPeg(final int colors) {
+        return Integer.SIZE - Integer.numberOfLeadingZeros(colors);
+    }
+
+    /**
+     * Packs values of the given width one after another, lowest bit first, padding the last byte with
+     * zeros.
+     * 
+     * @param values the values to pack (each must fit in the width)
+     * @param bits the width of each value
+     * @return the packed bytes
+     */
+    public static List<Byte> packBits(final byte[] values, final int bits) {
+        final List<Byte> packed = new ArrayList<>((values.length * bits + 7) / 8);
+
+        int buffer = 0;
+        int filled = 0;
+
+        for (final byte value : values) {
+            buffer |= (value & ((1 << bits) - 1)) << filled;
+            filled += bits;
+
+            while (filled >= 8) {
+                packed.add((byte) buffer);
+                buffer >>>= 8;
+                filled  -= 8;
+            }
+        }
+
+        if (filled > 0) {
+            packed.add((byte) buffer);
+        }
+
+        return packed;
+    }
+
+    /**
+     * Performs the inverse operation to the {@link GameState#packBits(byte[], int)} method. Padding bits
+     * come out as trailing zero values.
+     * 
+     * @param data the data to unpack
+     * @param bits the width of each value
+     * @return every value held by the data
+     */
+    public static List<Byte> unpackBits(final List<Byte> data, final int bits) {
+        final List<Byte> values = new ArrayList<>(data.size() * 8 / bits);
+
+        int buffer = 0;
+        int filled = 0;
+
+        for (final byte b : data) {
+            buffer |= (b & 0xFF) << filled;
+            filled += 8;
+
+            while (filled >= bits) {
+                values.add((byte) (buffer & ((1 << bits) - 1)));
+                buffer >>>= bits;
+                filled  -= bits;
+            }
+        }
+
+        return values;
+    }
+
     /**
      * Takes a {@link List} of {@link Byte}s and builds a GameState object from the given
      * data. This method assumes that the data follows the format given in {@link GameState}.
+     * The data is read in place, not consumed, so the cost is linear in its size.
      * 
      * @param data the data to build a {@link GameState} object from
      * @return the {@link GameState} object
+     * @throws IllegalArgumentException if the data is truncated, of an unsupported version, or describes a
+     *         game outside the bounds of {@link GameState}
      */
     public static GameState fromByteList(final List<Byte> data) {
-        final int slots   = (int) data.remove(0);
-        final int colors  = (int) data.remove(0);
-        final int maxRows = (int) data.remove(0);
+        if (data.size() < 3 || (data.get(0) == 0 && data.size() < 6)) {
+            throw new IllegalArgumentException("Truncated save data");
+        }
+
+        final boolean versioned = data.get(0) == 0;
+        int           flags     = 0;
+        int           next      = 0;
 
-        final List<Byte> pegData = GameState.unsqueeze(data);
+        if (versioned) {
+            final int version = data.get(1) & 0xFF;
+            next = 2;
+
+            if (version < 2 || version > SAVE_VERSION) {
+                throw new IllegalArgumentException("Unsupported save format version: " + version);
+            } else if (version >= 3) {
+                flags = data.get(next++) & 0xFF;
+            }
+        }
+
+        final int slots   = data.get(next++) & 0xFF;
+        final int colors  = data.get(next++) & 0xFF;
+        final int maxRows = data.get(next++) & 0xFF;
+
+        final boolean distinct = (flags & FLAG_DISTINCT) != 0;
+
+        if (slots < 2 || slots > MAX_SLOTS || colors < 2 || colors > Peg.PegColor.values().length || maxRows < 2
+                || (distinct && slots > colors)) {
+            throw new IllegalArgumentException("Invalid save header: " + slots + " slots, " + colors + " colors, " + maxRows + " rows");
+        }
+
+        final List<Byte> body    = data.subList(next, data.size());
+        final List<Byte> pegData = versioned ? GameState.unpackBits(body, bitsPerPeg(colors)) : GameState.unsqueeze(body);
+
+        if (pegData.size() < (maxRows + 1) * slots) {
+            throw new IllegalArgumentException("Truncated save data");
+        }
 
         final byte[] solution = new byte[slots];
 
         for (int i = 0; i < slots; ++i) {
-            solution[i] = pegData.remove(0);
+            solution[i] = pegData.get(i);
         }
 
-        final GameState state = new GameState(slots, colors, maxRows, solution);
+        final GameState state = new GameState(slots, colors, maxRows, distinct, solution);
         
         for (int i = 0; i < maxRows; ++i) {
             state.getRow(i).ifPresent(row -> row.setEditable(true));
 
             for (int j = 0; j < slots; ++j) {
-                final Optional<Peg> peg = Peg.fromByte(pegData.remove(0));
+                final Optional<Peg> peg = Peg.fromByte(pegData.get((i + 1) * slots + j));
 
                 if (peg.isPresent()) {
                     if (!state.setPeg(i, j, peg.get())) {
@@ -339,6 +853,8 @@ public class GameState {
             }
         }
 
+        state.publish();
+
         return state;
     }
 
@@ -359,6 +875,39 @@ public class GameState {
         return data;
     }
 
+    /**
+     * Builds a random solution as {@link GameState#randomSolution(int, int)} does, optionally without
+     * repeating a color (by drawing the first slots of a shuffle of the colors).
+     * 
+     * @param slots the number of slots
+     * @param colors the number of colors
+     * @param distinct whether the solution may not repeat a color
+     * @return the random solution
+     * @throws IllegalArgumentException if there are fewer colors than slots in a no-repeat game
+     */
+    public static byte[] randomSolution(final int slots, final int colors, final boolean distinct) {
+        if (!distinct) {
+            return randomSolution(slots, colors);
+        } else if (slots > colors) {
+            throw new IllegalArgumentException("Cannot fill " + slots + " slots with distinct colors out of " + colors);
+        }
+
+        final byte[] deck = new byte[colors];
+
+        for (int c = 0; c < colors; ++c) {
+            deck[c] = Peg.PegColor.values()[c].toByte();
+        }
+
+        for (int i = 0; i < slots; ++i) {
+            final int  k    = i + (int) (Math.random() * (colors - i));
+            final byte temp = deck[i];
+            deck[i] = deck[k];
+            deck[k] = temp;
+        }
+
+        return Arrays.copyOf(deck, slots);
+    }
+
     /**
      * Private class for representing a row of {@link Pegs}.
      */
@@ -366,6 +915,9 @@ public class GameState {
         private boolean isEditable;
 
         private final ArrayList<Optional<Peg>> pegs;
+
+        // The same pegs as Peg bytes (0 for empty slots), kept in step so scoring never has to convert
+        private final byte[] pegBytes;
         
         /**
          * Constructs a {@link Row} from the given byte array of pegs with the given number of slots
@@ -378,10 +930,14 @@ public class GameState {
          */
         public Row(final byte[] pegBytes, final int slots, final boolean isEditable) {
             this.pegs = new ArrayList<>(slots);
+            this.pegBytes = new byte[slots];
             this.isEditable = isEditable;
 
             for (int i = 0; i < slots; ++i) {
-                pegs.add(Peg.fromByte(pegBytes[i]));
+                final Optional<Peg> peg = Peg.fromByte(pegBytes[i]);
+
+                pegs.add(peg);
+                this.pegBytes[i] = peg.isPresent() ? pegBytes[i] : 0;
             }
         }
 
@@ -411,6 +967,7 @@ public class GameState {
             if (j >= slots || j < 0) return false;
             else if (isEditable) {
                 pegs.set(j, Optional.of(peg));
+                pegBytes[j] = peg.toByte();
                 return true;
             } else {
                 return false;
@@ -427,6 +984,7 @@ public class GameState {
             if (j >= slots || j < 0) return false;
             else if (isEditable) {
                 pegs.set(j, Optional.empty());
+                pegBytes[j] = 0;
                 return true;
             } else {
                 return false;
@@ -444,6 +1002,19 @@ public class GameState {
             return true;
         }
 
+        /**
+         * @return the number of slots in this {@link Row} without a {@link Peg}
+         */
+        public int emptySlots() {
+            int counter = 0;
+
+            for (int i = 0; i < slots; ++i) {
+                if (pegs.get(i).isEmpty()) ++counter;
+            }
+
+            return counter;
+        }
+
         /**
          * Computes how many {@link Peg}s are the correct color and in the correct position
          * given the provided solution {@link Row}.
@@ -476,16 +1047,7 @@ public class GameState {
          * @return how many {@link Peg}s are the correct color.
          */
         public int getWhite(final Row solution) {
-            final int[] colors1 = this.getColorCount();
-            final int[] colors2 = solution.getColorCount();
-
-            int counter = 0;
-
-            for (int i = 0; i < Peg.PegColor.values().length; ++i) {
-                counter += Math.min(colors1[i], colors2[i]);
-            }
-
-            return counter;
+            return CodeSpace.commonPegs(this.pegBytes, solution.pegBytes);
         }
 
         /**
@@ -513,31 +1075,6 @@ public class GameState {
             return this.isEditable;
         }
 
-        /**
-         * Computes an array of integers with a length equal to the number of {@link Peg.PegColor}s.
-         * The array is then stocked with the number of {@link Peg}s of that {@link Peg.PegColor} present
-         * in this row.
-         * 
-         * @return the integer array of color counts
-         */
-        private int[] getColorCount() {
-            final int size = Peg.PegColor.values().length;
-
-            final int data[] = new int[size];
-
-            for (int i = 0; i < size; ++i) {
-                data[i] = 0;
-            }
-
-            for (final Optional<Peg> peg : pegs) {
-                peg.ifPresent(p -> {
-                    ++data[p.getColor().ordinal()];
-                });
-            }
-
-            return data;
-        }
-
         /**
          * Interprets this {@link Row} as a list of bytes.
          * 
@@ -0,0 +1,164 @@
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Class for suggesting a strong next guess for a {@link GameState}, using only the feedback of the rows
+ * that have already been played. Intended to run off the FX thread: the constructor only takes a
+ * {@link GameSnapshot} of the {@link GameState}, and {@link HintSolver#solve(long, DoubleConsumer)} builds the
+ * {@link CodeSpace} and constraints itself, so the FX thread never waits for them on large boards. The search
+ * can be stopped by interrupting its thread or by running out of time, in which case the best guess found so
+ * far is returned.
+ *
+ * Guesses are ranked by the expected number of secrets that would remain after playing them (the sum of
+ * the squared partition sizes), with ties going to guesses that could themselves be the secret.
+ */
+public class HintSolver {
+    /**
+     * Most candidates that are used when ranking guesses. Larger sets are sampled evenly.
+     */
+    private static final int MAX_SAMPLE     = 2048;
+
+    /**
+     * How many codes are processed between checks of the deadline and interrupt flag.
+     */
+    private static final int CHECK_INTERVAL = 1024;
+
+    private final GameSnapshot snapshot;
+
+    /**
+     * Captures the played rows of the given {@link GameState}. Must be called on the thread that owns the
+     * {@link GameState}.
+     *
+     * @param gameState the {@link GameState} to suggest a guess for
+     */
+    public HintSolver(final GameState gameState) {
+        this.snapshot = gameState.snapshot();
+    }
+
+    /**
+     * Searches for the best next guess until the search completes, the time budget runs out, or the
+     * thread is interrupted.
+     *
+     * @param budgetNanos the time budget in nanoseconds
+     * @param progress receives the fraction of the search completed so far (from the calling thread)
+     * @return the {@link Peg} bytes of the best guess found, or an empty {@link Optional} if no code
+     *         consistent with the feedback was found in time
+     */
+    public Optional<byte[]> solve(final long budgetNanos, final DoubleConsumer progress) {
+        final long                deadline    = System.nanoTime() + budgetNanos;
+        final FeedbackConstraints constraints = new FeedbackConstraints(snapshot);
+        final CodeSpace           space       = constraints.getSpace();
+
+        // Phase 1 (first half of the progress): collect the codes consistent with every played row. When
+        // there are more than fit, reservoir sampling keeps a uniform sample of all of them rather than the
+        // lowest indices.
+        final ThreadLocalRandom random     = ThreadLocalRandom.current();
+        final int[]             candidates = new int[Math.min(space.size, MAX_SAMPLE * 8)];
+        int found   = 0;
+        int skipped = 0;
+
+        for (int code = 0; code < space.size; ++code) {
+            if (code % CHECK_INTERVAL == 0) {
+                if (this.stopped(deadline)) break;
+                progress.accept(0.5 * code / space.size);
+            }
+
+            if (constraints.isConsistent(code)) {
+                if (found < candidates.length) {
+                    candidates[found++] = code;
+                } else {
+                    final long slot = random.nextLong(found + ++skipped);
+
+                    if (slot < candidates.length) {
+                        candidates[(int) slot] = code;
+                    }
+                }
+            }
+        }
+
+        if (found == 0) {
+            return Optional.empty();
+        }
+
+        // A single candidate, or running out of time, leaves nothing better than a consistent code
+        if ((found == 1 && skipped == 0) || this.stopped(deadline)) {
+            return Optional.of(space.pegsOf(candidates[0]));
+        }
+
+        final int[] sample = this.sample(candidates, found);
+
+        // Phase 2 (second half of the progress): rank candidates first, then every other code
+        final int[] counts = new int[space.buckets()];
+
+        int  bestGuess = candidates[0];
+        long bestScore = Long.MAX_VALUE;
+
+        final boolean[] isCandidate = new boolean[space.size <= MAX_SAMPLE * 64 ? space.size : 0];
+        for (int i = 0; i < found && isCandidate.length > 0; ++i) {
+            isCandidate[candidates[i]] = true;
+        }
+
+        final int total = found + (isCandidate.length > 0 ? space.size : 0);
+
+        for (int k = 0; k < total; ++k) {
+            if (k % CHECK_INTERVAL == 0) {
+                if (this.stopped(deadline)) break;
+                progress.accept(0.5 + 0.5 * k / total);
+            }
+
+            final int guess = k < found ? candidates[k] : k - found;
+
+            if (k >= found && isCandidate[guess]) continue;
+
+            Arrays.fill(counts, 0);
+
+            for (final int secret : sample) {
+                ++counts[space.score(secret, guess)];
+            }
+
+            long score = 0;
+            for (final int count : counts) {
+                score += (long) count * count;
+            }
+
+            // Candidates are tried first, so a strict comparison already prefers them on ties
+            if (score < bestScore) {
+                bestScore = score;
+                bestGuess = guess;
+            }
+        }
+
+        progress.accept(1.0);
+        return Optional.of(space.pegsOf(bestGuess));
+    }
+
+    /**
+     * @param candidates the candidate code indices
+     * @param found the number of candidates
+     * @return at most {@link HintSolver#MAX_SAMPLE} candidates, evenly spaced through the array (which is
+     *         itself a uniform sample when there were too many candidates to keep)
+     */
+    private int[] sample(final int[] candidates, final int found) {
+        if (found <= MAX_SAMPLE) {
+            return Arrays.copyOf(candidates, found);
+        }
+
+        final int[] sample = new int[MAX_SAMPLE];
+
+        for (int i = 0; i < MAX_SAMPLE; ++i) {
+            sample[i] = candidates[(int) ((long) i * found / MAX_SAMPLE)];
+        }
+
+        return sample;
+    }
+
+    /**
+     * @param deadline the {@link System#nanoTime()} at which the search must stop
+     * @return whether the search should stop
+     */
+    private boolean stopped(final long deadline) {
+        return Thread.currentThread().isInterrupted() || System.nanoTime() >= deadline;
+    }
+}
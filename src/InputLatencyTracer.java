@@ -0,0 +1,180 @@
+import java.io.File;
+import java.io.PrintWriter;
+
+/**
+ * Singleton instance class tracing how long the input events of a {@link GameCanvas} take to reach the
+ * screen. Each handled event is timestamped on arrival, then correlated with the render that draws its
+ * result and with the JavaFX pulse that hands that drawing to the render thread, which is as close to the
+ * photons as the application can see.
+ *
+ * Events are kept in a preallocated ring buffer of primitive timestamps and the latencies are counted in
+ * {@link LatencyHistogram}s, so tracing an event never allocates. This is the game's only measurement of
+ * input latency: each render latency is also reported to {@link Telemetry} as
+ * {@link Telemetry.Metric#INPUT_LATENCY}. Should the pulses stall for longer than the buffer holds, the
+ * oldest events are dropped (and counted). Every method must be called on the FX thread.
+ *
+ * The histograms can be exported as CSV for offline analysis, one line per non-empty bucket:
+ *
+ *      input,stage,lowest_ns,highest_ns,count
+ *
+ * where the stage is "render" (arrival to the end of the render drawing the result) or "pulse" (arrival to
+ * the pulse showing it).
+ */
+public class InputLatencyTracer {
+    private static final int CAPACITY = 1 << 10;
+    private static final int MASK     = CAPACITY - 1;
+
+    private static final InputLatencyTracer INSTANCE = new InputLatencyTracer();
+
+    /**
+     * Enumeration of the traced input events.
+     */
+    public static enum Input {
+        KEY_TYPED("key typed"),
+        KEY_PRESSED("key pressed"),
+        MOUSE_MOVED("mouse moved");
+
+        public final String label;
+
+        private final LatencyHistogram toRender = new LatencyHistogram();
+        private final LatencyHistogram toPulse  = new LatencyHistogram();
+
+        /**
+         * @param label the name of the input in the overlay and the export
+         */
+        private Input(final String label) {
+            this.label = label;
+        }
+    }
+
+    // Input.values() copies its array on every call
+    private final Input[] kinds    = Input.values();
+    private final long[]  arrivals = new long[CAPACITY];
+    private final byte[]  inputs   = new byte[CAPACITY];
+
+    // Positions in the ring: [tail, drawn) are drawn and await a pulse, [drawn, head) await a render
+    private int  tail    = 0;
+    private int  drawn   = 0;
+    private int  head    = 0;
+    private long dropped = 0;
+
+    /**
+     * Private constructor for building the singleton instance.
+     */
+    private InputLatencyTracer() {
+    }
+
+    /**
+     * @return the static singleton instance of the {@link InputLatencyTracer} class
+     */
+    public static InputLatencyTracer getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Notes that an input event which arrived at the given time has requested a render. Events that change
+     * nothing on screen should not be traced, as no render shows them.
+     *
+     * @param input the kind of {@link Input}
+     * @param arrival the {@link System#nanoTime()} at which the event arrived
+     */
+    public void awaitRender(final Input input, final long arrival) {
+        if (this.head - this.tail == CAPACITY) {
+            ++this.tail;
+            ++this.dropped;
+            this.drawn = this.drawn - this.tail < 0 ? this.tail : this.drawn;
+        }
+
+        this.arrivals[this.head & MASK] = arrival;
+        this.inputs[this.head & MASK]   = (byte) input.ordinal();
+        ++this.head;
+    }
+
+    /**
+     * Notes that a render has finished: every event awaiting a render is now drawn, and its latency is
+     * recorded here and in {@link Telemetry}.
+     */
+    public void rendered() {
+        if (this.drawn == this.head) {
+            return;
+        }
+
+        final long now = System.nanoTime();
+
+        for (int i = this.drawn; i != this.head; ++i) {
+            final Input input   = this.kinds[this.inputs[i & MASK]];
+            final long  arrival = this.arrivals[i & MASK];
+
+            input.toRender.record(now - arrival);
+            Telemetry.record(Telemetry.Metric.INPUT_LATENCY, arrival, now, input.label);
+        }
+
+        this.drawn = this.head;
+    }
+
+    /**
+     * Notes that a pulse has laid out the scene and is about to hand it to the render thread: every drawn
+     * event is now on its way to the screen. Meant to be registered as a post-layout pulse listener of the
+     * scene holding the canvas.
+     */
+    public void pulse() {
+        if (this.tail == this.drawn) {
+            return;
+        }
+
+        final long now = System.nanoTime();
+
+        for (int i = this.tail; i != this.drawn; ++i) {
+            this.kinds[this.inputs[i & MASK]].toPulse.record(now - this.arrivals[i & MASK]);
+        }
+
+        this.tail = this.drawn;
+    }
+
+    /**
+     * @param input the kind of {@link Input}
+     * @return the latencies from the arrival of such events to the pulse showing their result
+     */
+    public LatencyHistogram toPulse(final Input input) {
+        return input.toPulse;
+    }
+
+    /**
+     * @param input the kind of {@link Input}
+     * @return the latencies from the arrival of such events to the end of the render drawing their result
+     */
+    public LatencyHistogram toRender(final Input input) {
+        return input.toRender;
+    }
+
+    /**
+     * @return the number of events dropped because the ring buffer was full
+     */
+    public long dropped() {
+        return this.dropped;
+    }
+
+    /**
+     * Writes every histogram to a CSV file (see {@link InputLatencyTracer}).
+     *
+     * @param file the file to write
+     * @return whether the file was written
+     */
+    public boolean export(final File file) {
+        try (final PrintWriter out = new PrintWriter(file)) {
+            out.println("input,stage,lowest_ns,highest_ns,count");
+
+            for (final Input input : Input.values()) {
+                input.toRender.forEachBucket((lowest, highest, count) ->
+                    out.println(input.name() + ",render," + lowest + "," + highest + "," + count));
+                input.toPulse.forEachBucket((lowest, highest, count) ->
+                    out.println(input.name() + ",pulse," + lowest + "," + highest + "," + count));
+            }
+
+            return !out.checkError();
+        } catch (final Exception e) {
+            System.out.println("Failed to export input latencies: " + e.toString());
+            return false;
+        }
+    }
+}
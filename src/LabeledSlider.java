@@ -47,6 +47,17 @@ public class LabeledSlider {
         return "" + (int) (this.slider.getValue());
     }
 
+    /**
+     * @param onChange called (on the FX thread) whenever the integer value of the slider changes
+     */
+    public void setOnValueChanged(final Runnable onChange) {
+        this.slider.valueProperty().addListener((observable, before, after) -> {
+            if (before.intValue() != after.intValue()) {
+                onChange.run();
+            }
+        });
+    }
+
     /**
      * @return the present (integer) value of the slider
      */
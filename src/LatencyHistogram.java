@@ -0,0 +1,163 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe histogram of latencies in nanoseconds, in the style of HdrHistogram: values are counted in
+ * log-linear buckets that keep their seven most significant bits, so any value from a nanosecond to
+ * centuries is recorded with a relative error of at most 1/64 in fixed memory.
+ * Recording is a single atomic increment and never allocates.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS    = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int HALF        = SUB_BUCKETS / 2;
+    private static final int BUCKETS     = SUB_BUCKETS + (63 - SUB_BITS + 1) * HALF;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /**
+     * Functional interface receiving the buckets of a {@link LatencyHistogram}.
+     */
+    public static interface BucketConsumer {
+        /**
+         * @param lowest the smallest value counted in the bucket
+         * @param highest the largest value counted in the bucket
+         * @param count the number of values recorded in the bucket
+         */
+        void accept(final long lowest, final long highest, final long count);
+    }
+
+    /**
+     * @param nanos the latency to record (negative values are recorded as 0)
+     */
+    public void record(final long nanos) {
+        counts.incrementAndGet(indexOf(Math.max(0, nanos)));
+    }
+
+    /**
+     * @return the number of values recorded
+     */
+    public long count() {
+        long total = 0;
+
+        for (int i = 0; i < BUCKETS; ++i) {
+            total += counts.get(i);
+        }
+
+        return total;
+    }
+
+    /**
+     * Returns the value at the given percentile, rounded up to the highest value of its bucket (as
+     * HdrHistogram does), so the percentile is never understated.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the latency in nanoseconds, or 0 if nothing was recorded
+     */
+    public long percentile(final double percentile) {
+        final long total = this.count();
+
+        if (total == 0) {
+            return 0;
+        }
+
+        final long target = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long       seen   = 0;
+
+        for (int i = 0; i < BUCKETS; ++i) {
+            seen += counts.get(i);
+
+            if (seen >= target) {
+                return highestEquivalent(i);
+            }
+        }
+
+        return highestEquivalent(BUCKETS - 1);
+    }
+
+    /**
+     * @return the largest latency recorded (to bucket precision) in nanoseconds
+     */
+    public long max() {
+        for (int i = BUCKETS - 1; i >= 0; --i) {
+            if (counts.get(i) > 0) return highestEquivalent(i);
+        }
+
+        return 0;
+    }
+
+    /**
+     * @return the mean latency (to bucket precision) in nanoseconds
+     */
+    public double mean() {
+        double sum   = 0;
+        long   total = 0;
+
+        for (int i = 0; i < BUCKETS; ++i) {
+            final long n = counts.get(i);
+            sum   += (double) n * ((lowestEquivalent(i) + highestEquivalent(i)) / 2);
+            total += n;
+        }
+
+        return total == 0 ? 0 : sum / total;
+    }
+
+    /**
+     * Passes every non-empty bucket to the given consumer, from the lowest values to the highest.
+     *
+     * @param consumer the {@link BucketConsumer} to call
+     */
+    public void forEachBucket(final BucketConsumer consumer) {
+        for (int i = 0; i < BUCKETS; ++i) {
+            final long n = counts.get(i);
+
+            if (n > 0) {
+                consumer.accept(lowestEquivalent(i), highestEquivalent(i), n);
+            }
+        }
+    }
+
+    /**
+     * @param value a non-negative value
+     * @return the bucket of the value
+     */
+    private static int indexOf(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        // Keep the top SUB_BITS bits: the mantissa lies in [HALF, SUB_BUCKETS)
+        final int shift    = 63 - Long.numberOfLeadingZeros(value) - (SUB_BITS - 1);
+        final int mantissa = (int) (value >>> shift);
+
+        return SUB_BUCKETS + (shift - 1) * HALF + (mantissa - HALF);
+    }
+
+    /**
+     * @param index a bucket
+     * @return the smallest value counted in the bucket
+     */
+    private static long lowestEquivalent(final int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+
+        final int shift    = (index - SUB_BUCKETS) / HALF + 1;
+        final int mantissa = (index - SUB_BUCKETS) % HALF + HALF;
+
+        return (long) mantissa << shift;
+    }
+
+    /**
+     * @param index a bucket
+     * @return the largest value counted in the bucket
+     */
+    private static long highestEquivalent(final int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+
+        final int shift = (index - SUB_BUCKETS) / HALF + 1;
+
+        return lowestEquivalent(index) + (1L << shift) - 1;
+    }
+}
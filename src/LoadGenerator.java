@@ -0,0 +1,406 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Synthetic load generator for the game engine. Simulates a number of players, each playing games through
+ * the {@link GameServer} protocol, either in-process (calling {@link GameServer#handle(String)} directly)
+ * or against a running server.
+ *
+ * Requests are sent open-loop: the nth request is due at a fixed time given by the target rate, whatever
+ * happened to the requests before it, and its latency is measured from that due time rather than from
+ * when it was actually sent. A stalled server therefore shows up as the latency of every request it held
+ * back, instead of silently lowering the request rate (coordinated omission), as a closed-loop benchmark
+ * would. Requests are dealt to the players in turn; a player only has one request in flight, so a request
+ * due for a busy player waits, and the wait is counted.
+ *
+ * Three kinds of players are available:
+ *
+ *      random  fills each row with random colors, slot by slot
+ *      human   fills slots in a random order and sometimes clears a peg and retypes it
+ *      solver  plays a random code consistent with the feedback so far (see {@link FeedbackConstraints})
+ *
+ * Throughput and latency percentiles are printed every second, and percentiles over the whole run at the
+ * end (see {@link LatencyHistogram}).
+ *
+ * Usage: java LoadGenerator [players] [requests-per-second] [seconds] [random|human|solver] [host:port]
+ */
+public class LoadGenerator {
+    private static final int SLOTS  = 4;
+    private static final int COLORS = 6;
+    private static final int ROWS   = 8;
+
+    /**
+     * Attempts at drawing a consistent code before a solver player settles for a random one.
+     */
+    private static final int MAX_SAMPLES = 2000;
+
+    /**
+     * Interface for a way of sending requests to the server. Each sender thread gets its own.
+     */
+    private static interface Transport extends AutoCloseable {
+        /**
+         * @param line the request
+         * @return the reply
+         * @throws IOException if the connection fails
+         */
+        String request(String line) throws IOException;
+
+        @Override
+        void close() throws IOException;
+    }
+
+    private final int    players;
+    private final long   intervalNanos;
+    private final long   durationNanos;
+    private final String kind;
+
+    private final LatencyHistogram                  total    = new LatencyHistogram();
+    private final AtomicReference<LatencyHistogram> interval = new AtomicReference<>(new LatencyHistogram());
+    private final AtomicLong                        nextTick = new AtomicLong();
+    private final AtomicLong                        errors   = new AtomicLong();
+
+    /**
+     * @param players the number of simulated players
+     * @param rate the target number of requests per second
+     * @param seconds how long to run
+     * @param kind the kind of player ("random", "human" or "solver")
+     */
+    public LoadGenerator(final int players, final double rate, final int seconds, final String kind) {
+        this.players       = players;
+        this.intervalNanos = Math.max(1, (long) (1e9 / rate));
+        this.durationNanos = seconds * 1_000_000_000L;
+        this.kind          = kind;
+    }
+
+    /**
+     * Runs the load, printing a line per second and a summary at the end.
+     *
+     * @param transports one {@link Transport} per sender thread
+     * @throws InterruptedException if interrupted while waiting for the senders
+     */
+    private void run(final List<Transport> transports) throws InterruptedException {
+        final List<Player> simulated = new ArrayList<>();
+        for (int p = 0; p < players; ++p) {
+            simulated.add(new Player(kind));
+        }
+
+        final long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+        final long end   = start + durationNanos;
+
+        final List<Thread> senders = new ArrayList<>();
+
+        for (final Transport transport : transports) {
+            senders.add(new Thread(() -> {
+                while (true) {
+                    final long tick = nextTick.getAndIncrement();
+                    final long due  = start + tick * intervalNanos;
+
+                    if (due >= end) return;
+
+                    // Sleep until the request is due; never skip it if it is already late
+                    for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()) {
+                        LockSupport.parkNanos(wait);
+                    }
+
+                    final Player player = simulated.get((int) (tick % players));
+
+                    synchronized (player) {
+                        try {
+                            final String request = player.nextRequest();
+                            player.onReply(transport.request(request));
+                        } catch (final IOException | RuntimeException e) {
+                            errors.incrementAndGet();
+                            player.reset();
+                        }
+                    }
+
+                    final long latency = System.nanoTime() - due;
+                    total.record(latency);
+                    interval.get().record(latency);
+                }
+            }, "load-sender"));
+        }
+
+        senders.forEach(Thread::start);
+
+        System.out.println("Second    Requests     p50 us     p99 us   p99.9 us     max us");
+
+        for (int second = 1; System.nanoTime() < end; ++second) {
+            final long wake = start + second * 1_000_000_000L;
+
+            for (long wait = wake - System.nanoTime(); wait > 0; wait = wake - System.nanoTime()) {
+                LockSupport.parkNanos(wait);
+            }
+
+            final LatencyHistogram last = interval.getAndSet(new LatencyHistogram());
+            System.out.println(String.format("%6d  %10d %10d %10d %10d %10d", second, last.count(),
+                last.percentile(50) / 1000, last.percentile(99) / 1000, last.percentile(99.9) / 1000, last.max() / 1000));
+        }
+
+        for (final Thread sender : senders) {
+            sender.join();
+        }
+
+        final double seconds = durationNanos / 1e9;
+
+        System.out.println();
+        System.out.println("Players:     " + players + " (" + kind + ") over " + transports.size() + " senders");
+        System.out.println("Target:      " + (long) (1e9 / intervalNanos) + " requests per second");
+        System.out.println("Achieved:    " + (long) (total.count() / seconds) + " requests per second, " + errors.get() + " errors");
+        System.out.println("mean:        " + (long) (total.mean() / 1000) + " us");
+
+        for (final String percentile : new String[] { "50", "90", "99", "99.9", "99.99" }) {
+            System.out.println(String.format("p%-11s%d us", percentile + ":", total.percentile(Double.parseDouble(percentile)) / 1000));
+        }
+
+        System.out.println("max:         " + (total.max() / 1000) + " us");
+    }
+
+    /**
+     * A simulated player. Not thread-safe: callers hold its lock.
+     */
+    private static class Player {
+        private final String    kind;
+        private final CodeSpace space = CodeSpace.of(SLOTS, COLORS);
+
+        private long          id        = -1;
+        private int           row       = 0;
+        private int           step      = 0;
+        private byte[]        guess     = null;
+        private int[]         order     = null;
+        private boolean       retype    = false;
+        private boolean       ending    = false;
+        private List<byte[]>  played    = new ArrayList<>();
+        private List<Integer> responses = new ArrayList<>();
+
+        /**
+         * @param kind the kind of player ("random", "human" or "solver")
+         */
+        public Player(final String kind) {
+            this.kind = kind;
+        }
+
+        /**
+         * @return the next request this player sends
+         */
+        public String nextRequest() {
+            if (id < 0) {
+                return "NEW " + SLOTS + " " + COLORS + " " + ROWS;
+            } else if (ending) {
+                return "END " + id;
+            } else if (guess == null) {
+                this.planRow();
+            }
+
+            final int  slot  = order[step];
+            final char color = Peg.PegColor.values()[guess[slot] - 1].key;
+
+            if (retype) {
+                return "CLEAR " + id + " " + row + " " + slot;
+            }
+
+            return "SET " + id + " " + row + " " + slot + " " + color;
+        }
+
+        /**
+         * Advances the player according to the reply to its last request.
+         *
+         * @param reply the reply
+         */
+        public void onReply(final String reply) {
+            final String[] words = reply.split(" ");
+
+            if (!words[0].equals("OK")) {
+                throw new IllegalStateException("Server replied " + reply);
+            }
+
+            if (id < 0) {
+                id = Long.parseLong(words[1]);
+                return;
+            } else if (ending) {
+                this.reset();
+                return;
+            } else if (retype) {
+                retype = false;
+                return;
+            }
+
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+
+            if (kind.equals("human") && step + 1 < SLOTS && random.nextInt(8) == 0) {
+                // Second thoughts: clear the peg just placed and place it again
+                retype = true;
+                return;
+            }
+
+            if (++step < SLOTS) return;
+
+            final int red   = Integer.parseInt(words[1]);
+            final int white = Integer.parseInt(words[2]);
+
+            played.add(guess);
+            responses.add(space.bucket(red, white));
+
+            guess = null;
+            step  = 0;
+
+            // Once the game is over, the next request ends it
+            ending = red == SLOTS || ++row == ROWS;
+        }
+
+        /**
+         * Forgets the current game, so that the next request starts a new one.
+         */
+        public void reset() {
+            this.id        = -1;
+            this.row       = 0;
+            this.step      = 0;
+            this.guess     = null;
+            this.retype    = false;
+            this.ending    = false;
+            this.played    = new ArrayList<>();
+            this.responses = new ArrayList<>();
+        }
+
+        /**
+         * Chooses the code and slot order of the next row.
+         */
+        private void planRow() {
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+
+            guess = GameState.randomSolution(SLOTS, COLORS);
+            order = new int[SLOTS];
+
+            for (int j = 0; j < SLOTS; ++j) {
+                order[j] = j;
+            }
+
+            if (kind.equals("human")) {
+                for (int j = SLOTS - 1; j > 0; --j) {
+                    final int k = random.nextInt(j + 1);
+                    final int t = order[j];
+                    order[j] = order[k];
+                    order[k] = t;
+                }
+            } else if (kind.equals("solver") && !played.isEmpty()) {
+                final FeedbackConstraints constraints = new FeedbackConstraints(space, played.toArray(new byte[0][]),
+                    responses.stream().mapToInt(Integer::intValue).toArray());
+
+                for (int attempt = 0; attempt < MAX_SAMPLES && !constraints.isConsistent(guess); ++attempt) {
+                    guess = GameState.randomSolution(SLOTS, COLORS);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param server the in-process {@link GameServer}
+     * @return a {@link Transport} calling the server directly
+     */
+    private static Transport inProcess(final GameServer server) {
+        return new Transport() {
+            @Override
+            public String request(final String line) {
+                return server.handle(line);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * @param host the server host
+     * @param port the server port
+     * @return a {@link Transport} over a new connection to the server
+     * @throws IOException if the connection fails
+     */
+    private static Transport connect(final String host, final int port) throws IOException {
+        final Socket socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+        final BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII));
+
+        return new Transport() {
+            @Override
+            public String request(final String line) throws IOException {
+                writer.write(line);
+                writer.write('\n');
+                writer.flush();
+
+                final String reply = reader.readLine();
+
+                if (reply == null) {
+                    throw new IOException("Server closed the connection");
+                }
+
+                return reply;
+            }
+
+            @Override
+            public void close() throws IOException {
+                socket.close();
+            }
+        };
+    }
+
+    /**
+     * Command line entry point.
+     *
+     * @param args players, rate, seconds, kind of player and server address (all optional)
+     * @throws Exception if the server cannot be reached
+     */
+    public static void main(final String[] args) throws Exception {
+        final int    players = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        final double rate    = args.length > 1 ? Double.parseDouble(args[1]) : 10_000;
+        final int    seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        final String kind    = args.length > 3 ? args[3] : "random";
+
+        if (!kind.equals("random") && !kind.equals("human") && !kind.equals("solver")) {
+            System.out.println("Unknown kind of player: " + kind);
+            return;
+        }
+
+        // Enough senders to keep every player busy, but not a thread per player for huge populations
+        final int senders = Math.min(players, 256);
+
+        final List<Transport> transports = new ArrayList<>();
+
+        if (args.length > 4) {
+            final String host = args[4].substring(0, args[4].lastIndexOf(':'));
+            final int    port = Integer.parseInt(args[4].substring(args[4].lastIndexOf(':') + 1));
+
+            for (int i = 0; i < senders; ++i) {
+                transports.add(connect(host, port));
+            }
+        } else {
+            final GameServer server = new GameServer();
+
+            for (int i = 0; i < senders; ++i) {
+                transports.add(inProcess(server));
+            }
+        }
+
+        new LoadGenerator(players, rate, seconds, kind).run(transports);
+
+        for (final Transport transport : transports) {
+            transport.close();
+        }
+
+        System.exit(0);
+    }
+}
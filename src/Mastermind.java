@@ -4,8 +4,16 @@ import java.io.FileOutputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
-
+import java.util.OptionalDouble;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import javafx.animation.AnimationTimer;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.geometry.Pos;
 import javafx.scene.Group;
 import javafx.scene.Scene;
@@ -13,12 +21,12 @@ import javafx.scene.control.Button;
 import javafx.scene.control.CheckBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.Slider;
+import javafx.scene.control.ToggleButton;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.StackPane;
 import javafx.scene.layout.VBox;
-import javafx.scene.media.MediaPlayer;
 import javafx.scene.paint.Color;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
@@ -29,61 +37,146 @@ import javafx.stage.Stage;
 public class Mastermind extends Application {
     public static final Color BACKGROUND_COLOR = Color.rgb(40, 40, 40);
 
-    private Optional<MediaPlayer> musicPlayer = Optional.empty();
-    private Optional<Stage>       stage       = Optional.empty();
+    private static final long HINT_BUDGET_MILLIS = 2000;
+
+    /**
+     * Pool for work that must stay off the FX thread (such as hints). That work is CPU-bound and never
+     * blocks, so it runs on one platform thread per spare core rather than on virtual threads, which would
+     * only add scheduling overhead. Its threads are daemons so that closing the window always exits the
+     * application.
+     */
+    private final ExecutorService backgroundExecutor = Executors.newFixedThreadPool(
+        Math.max(1, Runtime.getRuntime().availableProcessors() - 1),
+        runnable -> {
+            final Thread thread = new Thread(runnable, "mastermind-background");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+    private Optional<SoundtrackStreamer> musicPlayer = Optional.empty();
+    private Optional<Stage>              stage       = Optional.empty();
+
+    // The menus are built on first use and then reused, keeping their controls' state. Rebuilding a menu
+    // and applying its styles took 2-11 ms (median) per switch; reusing it takes 0.1-0.2 ms
+    private Optional<MainMenuScene>   mainMenuScene   = Optional.empty();
+    private Optional<SettingsScene>   settingsScene   = Optional.empty();
+    private Optional<CustomGameScene> customGameScene = Optional.empty();
 
     /**
-     * Loads the application and starts the game in the {@link MainMenuScene} state.
+     * Registers the {@link Telemetry} counters, then starts loading the media and sound effects in the
+     * background before the FX thread builds the first scene.
+     */
+    @Override
+    public void init() {
+        Telemetry.getInstance();
+        MediaLoader.getInstance();
+        SoundEffects.getInstance();
+    }
+
+    /**
+     * Loads the application and starts the game in the {@link MainMenuScene} state. Only the main menu's
+     * image is waited for; the icon and the soundtrack are attached whenever they finish loading.
      */
     @Override
     public void start(final Stage stage) throws Exception {
         this.stage = Optional.ofNullable(stage);
 
-        MediaLoader.getInstance().getImage(MediaLoader.ImageType.ICON).ifPresent(image -> this.stage.ifPresent(s -> s.getIcons().add(image)));
+        MediaLoader.getInstance().getImageAsync(MediaLoader.ImageType.ICON).thenAccept(icon -> Platform.runLater(
+            () -> icon.ifPresent(image -> this.stage.ifPresent(s -> s.getIcons().add(image)))));
 
         loadMainMenuScene();
 
-        this.musicPlayer = MediaLoader.getInstance().getSoundtrack().map(media -> {
-            final MediaPlayer player = new MediaPlayer(media);
-            player.setVolume(0.5);
-            player.setAutoPlay(true);
-            player.setCycleCount(MediaPlayer.INDEFINITE);
-            return player;
-        });
+        MediaLoader.getInstance().getSoundtrack().thenAccept(soundtrack -> Platform.runLater(() -> {
+            this.musicPlayer = soundtrack;
+            this.musicPlayer.ifPresent(player -> player.play());
+        }));
 
         this.stage.ifPresent(s -> s.setTitle("MASTERMIND"));
         this.stage.ifPresent(s -> s.setResizable(false));
         this.stage.ifPresent(s -> s.show());
+
+        // The first pulse after showing the stage renders the first frame
+        new AnimationTimer() {
+            @Override
+            public void handle(final long now) {
+                this.stop();
+                MediaLoader.getInstance().markFirstFrame();
+            }
+        }.start();
     }
 
     /**
-     * Loads the {@link GameScene} with the given {@link GameState}.
+     * Loads the {@link GameScene} with the given {@link GameState}. A game scene is always built anew.
      * 
      * @param gameState to display
      */
     public void loadGameScene(final GameState gameState) {
-        this.stage.ifPresent(s -> s.setScene(new GameScene(gameState).asScene()));
+        final long start = System.nanoTime();
+        this.showScene("game", new GameScene(gameState).asScene(), start, false);
     }
 
     /**
-     * Loads the {@link MainMenuScene}.
+     * Loads the {@link MainMenuScene}, building it only the first time.
      */
     public void loadMainMenuScene() {
-        this.stage.ifPresent(s -> s.setScene(new MainMenuScene().asScene()));
+        final long    start  = System.nanoTime();
+        final boolean cached = this.mainMenuScene.isPresent();
+
+        if (!cached) {
+            this.mainMenuScene = Optional.of(new MainMenuScene());
+        }
+
+        this.showScene("main menu", this.mainMenuScene.get().asScene(), start, cached);
     }
 
     /**
-     * Loads the {@link SettingsScene}.
+     * Loads the {@link SettingsScene}, building it only the first time.
      */
     public void loadSettingsScene() {
-        this.stage.ifPresent(s -> s.setScene(new SettingsScene().asScene()));
+        final long    start  = System.nanoTime();
+        final boolean cached = this.settingsScene.isPresent();
+
+        if (!cached) {
+            this.settingsScene = Optional.of(new SettingsScene());
+        }
+
+        this.showScene("settings", this.settingsScene.get().asScene(), start, cached);
     }
 
     /**
-     * Loads the {@link CustomGameScene}.
+     * Loads the {@link CustomGameScene}, building it only the first time.
      */
     public void loadCustomGameScene() {
-        this.stage.ifPresent(s -> s.setScene(new CustomGameScene().asScene()));
+        final long    start  = System.nanoTime();
+        final boolean cached = this.customGameScene.isPresent();
+
+        if (!cached) {
+            this.customGameScene = Optional.of(new CustomGameScene());
+        }
+
+        this.showScene("custom game", this.customGameScene.get().asScene(), start, cached);
+    }
+
+    /**
+     * Shows a scene and records how long the switch took (see {@link Telemetry}), up to the end of the
+     * next pulse, which applies the style sheets, lays out and renders the new scene.
+     *
+     * @param name the name of the scene in the report
+     * @param scene the {@link Scene} to show
+     * @param start when the switch was requested, from {@link System#nanoTime()}
+     * @param cached whether the scene was reused rather than built
+     */
+    private void showScene(final String name, final Scene scene, final long start, final boolean cached) {
+        this.stage.ifPresent(s -> s.setScene(scene));
+
+        new AnimationTimer() {
+            @Override
+            public void handle(final long now) {
+                this.stop();
+                Platform.runLater(() -> Telemetry.record(Telemetry.Metric.SCENE_SWITCH, start,
+                    name + (cached ? " (cached)" : " (built)")));
+            }
+        }.start();
     }
 
     /**
@@ -93,6 +186,11 @@ public class Mastermind extends Application {
     private class GameScene {
         private final Scene scene;
 
+        private Optional<Future<?>> hint     = Optional.empty();
+        private Optional<Future<?>> analysis = Optional.empty();
+
+        private Optional<CandidateAnalysis> lastAnalysis = Optional.empty();
+
         /**
          * Constructor to build a {@link GameScene} on which to draw the {@link GameCanvas} and buttons.
          * 
@@ -104,27 +202,36 @@ public class Mastermind extends Application {
             
             MediaLoader.getInstance().getGlobalCssUrl().ifPresent(url -> this.scene.getStylesheets().add(url.toExternalForm()));
 
-            final GameCanvas canvas     = new GameCanvas(gameState);
+            final GameCanvas canvas     = new GameCanvas(gameState, backgroundExecutor);
             final BorderPane borderPane = new BorderPane();
             final HBox       buttonBox  = new HBox(5);
 
             final Button saveButton = new Button("Save");
             saveButton.setOnAction(event -> {
-                final List<Byte> temp = canvas.getGameState().toByteList();
+                // The snapshot is immutable, so encoding and writing it can happen off the FX thread
+                final GameSnapshot snapshot = canvas.getGameState().snapshot();
 
-                final byte[] data = new byte[temp.size()];
+                backgroundExecutor.execute(() -> {
+                    final long       start = System.nanoTime();
+                    final List<Byte> temp  = snapshot.toByteList();
 
-                for (int i = 0; i < temp.size(); ++i) {
-                    data[i] = temp.get(i);
-                }
+                    final byte[] data = new byte[temp.size()];
 
-                try {
-                    final FileOutputStream fStream = new FileOutputStream(new File("../gamedata/mastermind_" + ((long) (Math.random() * Long.MAX_VALUE))));
-                    fStream.write(data);
-                    fStream.close();
-                } catch (final Exception e) {
-                    System.out.println("Failed to write save file: " + e.toString());
-                }
+                    for (int i = 0; i < temp.size(); ++i) {
+                        data[i] = temp.get(i);
+                    }
+
+                    try {
+                        final File             file    = new File("../gamedata/mastermind_" + ((long) (Math.random() * Long.MAX_VALUE)));
+                        final FileOutputStream fStream = new FileOutputStream(file);
+                        fStream.write(data);
+                        fStream.close();
+
+                        Telemetry.record(Telemetry.Metric.SAVE, start, file.getName());
+                    } catch (final Exception e) {
+                        System.out.println("Failed to write save file: " + e.toString());
+                    }
+                });
 
                 canvas.requestFocus();
             });
@@ -132,24 +239,75 @@ public class Mastermind extends Application {
             final Button newGameButton = new Button("New Game");
             newGameButton.setOnAction(event -> {
                 final GameState gs = canvas.getGameState();
-                canvas.setGameState(new GameState(gs.slots, gs.colors, gs.maxRows, GameState.randomSolution(gs.slots, gs.colors)));
-                borderPane.setCenter(canvas.asNode());
+
+                if (!gs.isAdversarial()) {
+                    canvas.setGameState(new GameState(gs.slots, gs.colors, gs.maxRows, gs.distinct, GameState.randomSolution(gs.slots, gs.colors, gs.distinct)));
+                    borderPane.setCenter(canvas.asNode());
+                    canvas.requestFocus();
+                    return;
+                }
+
+                // Building an adversary enumerates its code space, so it happens off the FX thread while the
+                // board is locked
+                newGameButton.setDisable(true);
+                canvas.asNode().setDisable(true);
+
+                backgroundExecutor.execute(() -> {
+                    final GameState next = GameState.withAdversary(gs.slots, gs.colors, gs.maxRows, gs.distinct);
+
+                    Platform.runLater(() -> {
+                        newGameButton.setDisable(false);
+                        canvas.setGameState(next);
+                        borderPane.setCenter(canvas.asNode());
+                        canvas.requestFocus();
+                    });
+                });
+            });
+
+            final Button hintButton = new Button("Hint");
+            hintButton.setOnAction(event -> {
+                this.requestHint(canvas);
+                canvas.requestFocus();
+            });
+
+            final ToggleButton heatmapButton = new ToggleButton("Heatmap");
+            heatmapButton.setOnAction(event -> {
+                canvas.setShowHeatmap(heatmapButton.isSelected());
                 canvas.requestFocus();
             });
 
             final Button mainMenuButton = new Button("Main Menu");
             mainMenuButton.setOnAction(event -> {
+                this.cancelHint(canvas);
+                this.analysis.ifPresent(future -> future.cancel(true));
                 loadMainMenuScene();
             });
 
+            // Hints and the candidate analysis enumerate every code, which the widest boards have too many of
+            final boolean enumerable = CodeSpace.isEnumerable(gameState.slots, gameState.colors, gameState.distinct);
+            hintButton.setDisable(!enumerable);
+            heatmapButton.setDisable(!enumerable);
+
+            canvas.setOnBoardChanged(() -> this.cancelHint(canvas));
+            canvas.setOnRowCommitted(() -> this.analyzeCandidates(canvas));
+            this.analyzeCandidates(canvas);
+
             saveButton.setFocusTraversable(false);
             newGameButton.setFocusTraversable(false);
+            hintButton.setFocusTraversable(false);
+            heatmapButton.setFocusTraversable(false);
             mainMenuButton.setFocusTraversable(false);
 
             buttonBox.getChildren().add(newGameButton);
             buttonBox.getChildren().add(saveButton);
+            buttonBox.getChildren().add(hintButton);
+            buttonBox.getChildren().add(heatmapButton);
             buttonBox.getChildren().add(mainMenuButton);
 
+            if (!enumerable) {
+                buttonBox.getChildren().add(new Label("Too many codes for hints"));
+            }
+
             borderPane.setCenter(canvas.asNode());
             borderPane.setBottom(buttonBox);
 
@@ -157,6 +315,110 @@ public class Mastermind extends Application {
             canvas.requestFocus();
         }
 
+        /**
+         * Starts computing a hint for the displayed {@link GameState} in the background. When it finishes
+         * (or its time budget runs out) the suggested guess is played into the editable row, unless the
+         * board has changed in the meantime.
+         * 
+         * @param canvas the {@link GameCanvas} to fill and to show progress on
+         */
+        private void requestHint(final GameCanvas canvas) {
+            this.cancelHint(canvas);
+
+            final GameState gameState = canvas.getGameState();
+
+            if (gameState.getEditableRow().isEmpty() || !CodeSpace.isEnumerable(gameState.slots, gameState.colors, gameState.distinct)) {
+                return;
+            }
+
+            final HintSolver  solver   = new HintSolver(gameState);
+            final Future<?>[] self     = new Future<?>[1];
+            final double[]    reported = new double[1];
+
+            canvas.setHintProgress(OptionalDouble.of(0));
+
+            self[0] = backgroundExecutor.submit(() -> {
+                final Optional<byte[]> guess = solver.solve(TimeUnit.MILLISECONDS.toNanos(HINT_BUDGET_MILLIS), fraction -> {
+                    // Only redraw once per percent to avoid flooding the FX thread
+                    if (fraction - reported[0] >= 0.01) {
+                        reported[0] = fraction;
+                        Platform.runLater(() -> {
+                            if (this.isCurrentHint(self[0])) canvas.setHintProgress(OptionalDouble.of(fraction));
+                        });
+                    }
+                });
+
+                Platform.runLater(() -> {
+                    if (this.isCurrentHint(self[0])) {
+                        this.hint = Optional.empty();
+                        canvas.setHintProgress(OptionalDouble.empty());
+                        guess.ifPresent(canvas::fillEditableRow);
+                    }
+                });
+            });
+
+            this.hint = Optional.of(self[0]);
+        }
+
+        /**
+         * Starts analyzing, in the background, the secrets consistent with the played rows of the displayed
+         * {@link GameState}. Any analysis still running is abandoned. The previous analysis is passed along
+         * so that its candidates can be filtered instead of rescanning every code.
+         * 
+         * @param canvas the {@link GameCanvas} to show the analysis on
+         */
+        private void analyzeCandidates(final GameCanvas canvas) {
+            this.analysis.ifPresent(future -> future.cancel(true));
+
+            final GameSnapshot snapshot = canvas.getGameState().snapshot();
+
+            if (!CodeSpace.isEnumerable(snapshot.slots, snapshot.colors, snapshot.distinct)) {
+                this.analysis = Optional.empty();
+                return;
+            }
+
+            final Optional<CandidateAnalysis> previous = this.lastAnalysis;
+            final Future<?>[]                 self     = new Future<?>[1];
+
+            // The task polls its own future for cancellation, so it must be published before it runs
+            final FutureTask<Void> task = new FutureTask<>(() -> {
+                final FeedbackConstraints         constraints = new FeedbackConstraints(snapshot);
+                final Optional<CandidateAnalysis> result      = CandidateAnalysis.compute(constraints, previous, () -> self[0].isCancelled());
+
+                Platform.runLater(() -> {
+                    if (result.isPresent() && this.analysis.map(current -> current == self[0]).orElse(false)) {
+                        this.lastAnalysis = result;
+                        canvas.setCandidateAnalysis(result);
+                    }
+                });
+            }, null);
+
+            self[0] = task;
+            this.analysis = Optional.of(task);
+            backgroundExecutor.execute(task);
+        }
+
+        /**
+         * Cancels the hint being computed (if any) and hides its progress.
+         * 
+         * @param canvas the {@link GameCanvas} showing the progress
+         */
+        private void cancelHint(final GameCanvas canvas) {
+            if (this.hint.isPresent()) {
+                this.hint.get().cancel(true);
+                this.hint = Optional.empty();
+                canvas.setHintProgress(OptionalDouble.empty());
+            }
+        }
+
+        /**
+         * @param future the {@link Future} of a hint task
+         * @return whether the task is the latest hint requested and has not been cancelled
+         */
+        private boolean isCurrentHint(final Future<?> future) {
+            return this.hint.map(current -> current == future && !future.isCancelled()).orElse(false);
+        }
+
         /**
          * @return the internal {@link javafx.scene.Scene}
          */
@@ -201,19 +463,32 @@ public class Mastermind extends Application {
                         return;
                     }
 
+                    final long            start   = System.nanoTime();
                     final FileInputStream fStream = new FileInputStream(file);
 
                     final byte[] temp = fStream.readAllBytes();
 
                     fStream.close();
 
+                    // A puzzle bank opens one of its puzzles at random
+                    if (PuzzleBank.isBank(temp)) {
+                        final Optional<GameState> puzzle = PuzzleBank.fromBytes(temp).random(Optional.empty()).map(PuzzleGenerator.Puzzle::toGameState);
+
+                        Telemetry.record(Telemetry.Metric.LOAD, start, file.getName());
+                        puzzle.ifPresent(gameState -> loadGameScene(gameState));
+                        return;
+                    }
+
                     final List<Byte> data = new ArrayList<>();
 
                     for (final byte b : temp) {
                         data.add(b);
                     }
 
-                    loadGameScene(GameState.fromByteList(data));
+                    final GameState gameState = GameState.fromByteList(data);
+
+                    Telemetry.record(Telemetry.Metric.LOAD, start, file.getName());
+                    loadGameScene(gameState);
 
                 } catch (final Exception e) {
                     System.out.println("Exception occurred while attempting to load game file: " + e.toString());
@@ -264,8 +539,8 @@ public class Mastermind extends Application {
             volumeLabel.setAlignment(Pos.BASELINE_RIGHT);
 
             final Slider volumeSlider = new Slider(0, 1, 0.5);
-            volumeSlider.setOnMouseDragged(event -> {
-                musicPlayer.ifPresent(mediaPlayer -> mediaPlayer.setVolume(volumeSlider.getValue()));
+            volumeSlider.valueProperty().addListener((observable, oldValue, newValue) -> {
+                musicPlayer.ifPresent(player -> player.setVolume(newValue.doubleValue()));
             });
 
             final HBox volumeBox = new HBox(10);
@@ -276,6 +551,8 @@ public class Mastermind extends Application {
             soundEffectsLabel.setAlignment(Pos.BASELINE_RIGHT);
 
             final CheckBox soundEffectsCheckBox = new CheckBox();
+            soundEffectsCheckBox.setSelected(SoundEffects.getInstance().isEnabled());
+            soundEffectsCheckBox.setOnAction(event -> SoundEffects.getInstance().setEnabled(soundEffectsCheckBox.isSelected()));
 
             final HBox soundEffectsBox = new HBox(10);
             soundEffectsBox.setAlignment(Pos.BASELINE_CENTER);
@@ -312,6 +589,9 @@ public class Mastermind extends Application {
     private class CustomGameScene {
         private final Scene scene;
 
+        // Refreshes the difficulty estimate for the current slider values
+        private Runnable onEstimated = () -> {};
+
         /**
          * The default constructor to build a {@link CustomGameScene}.
          */
@@ -321,16 +601,93 @@ public class Mastermind extends Application {
 
             MediaLoader.getInstance().getGlobalCssUrl().ifPresent(url -> this.scene.getStylesheets().add(url.toExternalForm()));
 
-            final LabeledSlider slotsSlider  = new LabeledSlider("SLOTS", 2, 10, 4);
+            final LabeledSlider slotsSlider  = new LabeledSlider("SLOTS", 2, GameState.MAX_SLOTS, 4);
             final LabeledSlider colorsSlider = new LabeledSlider("COLORS", 2, Peg.PegColor.values().length, 6);
-            final LabeledSlider rowsSlider   = new LabeledSlider("ROWS", 2, 16, 8);
+            final LabeledSlider rowsSlider   = new LabeledSlider("ROWS", 2, GameState.MAX_ROWS, 8);
+
+            final Label distinctLabel = new Label("NO REPEATS");
+            distinctLabel.setAlignment(Pos.BASELINE_RIGHT);
+
+            final CheckBox distinctCheckBox = new CheckBox();
+
+            final HBox distinctBox = new HBox(10);
+            distinctBox.setAlignment(Pos.BASELINE_CENTER);
+            distinctBox.getChildren().addAll(distinctLabel, distinctCheckBox);
+
+            final Label evilLabel = new Label("EVIL CODEMAKER");
+            evilLabel.setAlignment(Pos.BASELINE_RIGHT);
+
+            final CheckBox evilCheckBox = new CheckBox();
+
+            final HBox evilBox = new HBox(10);
+            evilBox.setAlignment(Pos.BASELINE_CENTER);
+            evilBox.getChildren().addAll(evilLabel, evilCheckBox);
+
+            final Label estimateLabel = new Label();
+
+            final Runnable updateEstimate = () -> {
+                final boolean distinct = distinctCheckBox.isSelected();
+                final int     slots    = distinct ? Math.min(slotsSlider.getValue(), Peg.PegColor.values().length) : slotsSlider.getValue();
+                final int     colors   = distinct ? Math.max(colorsSlider.getValue(), slots) : colorsSlider.getValue();
+                final int     rows     = rowsSlider.getValue();
+
+                // Only a table lookup on the FX thread; a missing entry is simulated in the background and
+                // the label refreshed once it is cached
+                final Optional<DifficultyEstimator.Estimate> estimate = DifficultyEstimator.getInstance().estimate(
+                    slots, colors, distinct, done -> Platform.runLater(this.onEstimated));
+
+                if (estimate.isEmpty()) {
+                    estimateLabel.setText("Estimating difficulty...");
+                } else if (!estimate.get().isSimulated()) {
+                    estimateLabel.setText(String.format("A strong solver needs at least %.0f guesses", estimate.get().expectedGuesses()));
+                } else {
+                    estimateLabel.setText(String.format("A strong solver averages %.2f guesses, solving %.0f%% within %d rows",
+                        estimate.get().expectedGuesses(), 100 * estimate.get().winProbability(rows), rows));
+                }
+            };
+
+            this.onEstimated = updateEstimate;
+
+            slotsSlider.setOnValueChanged(updateEstimate);
+            colorsSlider.setOnValueChanged(updateEstimate);
+            rowsSlider.setOnValueChanged(updateEstimate);
+            distinctCheckBox.setOnAction(event -> updateEstimate.run());
+            updateEstimate.run();
 
             final Button playButton = new Button("Play");
             playButton.setOnAction(event -> {
-                final int slots  = (int) slotsSlider.getValue();
-                final int colors = (int) colorsSlider.getValue();
-                final int rows   = (int) rowsSlider.getValue();
-                loadGameScene(new GameState(slots, colors, rows, GameState.randomSolution(slots, colors)));
+                final boolean distinct = distinctCheckBox.isSelected();
+
+                // Without repeats there must be at least as many colors as slots
+                final int slots  = distinct ? Math.min(slotsSlider.getValue(), Peg.PegColor.values().length) : slotsSlider.getValue();
+                final int colors = distinct ? Math.max(colorsSlider.getValue(), slots) : colorsSlider.getValue();
+                final int rows   = rowsSlider.getValue();
+
+                if (!evilCheckBox.isSelected()) {
+                    loadGameScene(new GameState(slots, colors, rows, distinct, GameState.randomSolution(slots, colors, distinct)));
+                    return;
+                }
+
+                // Building an adversary enumerates its code space, so it happens off the FX thread
+                playButton.setDisable(true);
+
+                backgroundExecutor.execute(() -> {
+                    GameState game;
+
+                    try {
+                        game = GameState.withAdversary(slots, colors, rows, distinct);
+                    } catch (final IllegalArgumentException e) {
+                        System.out.println("Evil codemaker unavailable, playing a fixed secret: " + e.toString());
+                        game = new GameState(slots, colors, rows, distinct, GameState.randomSolution(slots, colors, distinct));
+                    }
+
+                    final GameState chosen = game;
+
+                    Platform.runLater(() -> {
+                        playButton.setDisable(false);
+                        loadGameScene(chosen);
+                    });
+                });
             });
 
             final Button backButton = new Button("Back");
@@ -338,7 +695,7 @@ public class Mastermind extends Application {
 
             final VBox customGameBox = new VBox(10);
             customGameBox.setAlignment(Pos.CENTER);
-            customGameBox.getChildren().addAll(slotsSlider.asNode(), colorsSlider.asNode(), rowsSlider.asNode(), playButton, backButton);
+            customGameBox.getChildren().addAll(slotsSlider.asNode(), colorsSlider.asNode(), rowsSlider.asNode(), distinctBox, evilBox, estimateLabel, playButton, backButton);
 
             final StackPane stackPane = new StackPane();
             MediaLoader.getInstance().getImage(MediaLoader.ImageType.SETTINGS_MENU).ifPresent(
@@ -1,35 +1,63 @@
-import java.io.File;
-import java.io.FileInputStream;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
 import java.net.URL;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 import javafx.scene.image.Image;
-import javafx.scene.media.Media;
 
 /**
- * Singleton instance class for loading and retrieving media for the {@link Mastermind} game.
+ * Singleton instance class for loading and retrieving media for the {@link Mastermind} game. Every asset
+ * starts loading on a small background pool as soon as the instance is created, each behind its own
+ * {@link CompletableFuture}, so a scene only ever waits for the assets it actually shows. All assets are
+ * read through the class path, and the time each one took is kept for startup metrics.
  */
 public class MediaLoader {
     private static final MediaLoader INSTANCE = new MediaLoader();
 
-    private Optional<Media> soundtrack = Optional.empty();
-    private Optional<URL>   cssUrl     = Optional.empty();
+    private static final String[] SOUNDTRACK_LOCATIONS  = { "audio/mastermind.ogg", "audio/mastermind.au", "audio/mastermind.wav" };
+    private static final int      SOUNDTRACK_FADE_MILLIS = 2000;
+
+    private final ExecutorService loader = Executors.newFixedThreadPool(
+        Math.max(1, Math.min(ImageType.values().length, Runtime.getRuntime().availableProcessors())),
+        runnable -> {
+            final Thread thread = new Thread(runnable, "mastermind-media");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+    private final long startNanos = System.nanoTime();
+
+    private final Map<String, Long>                                  loadMillis = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final Map<ImageType, CompletableFuture<Optional<Image>>> images     = new EnumMap<>(ImageType.class);
+
+    private final CompletableFuture<Optional<SoundtrackStreamer>> soundtrack;
+    private final Optional<URL>                                   cssUrl;
 
     /**
-     * Private constructor for building the singleton instance.
+     * Private constructor for building the singleton instance. Only submits the loading work.
      */
     private MediaLoader() {
-        ImageType.ICON.image          = loadFile("images/icon.png").map(Image::new);
-        ImageType.MAIN_MENU.image     = loadFile("images/main_menu.png").map(Image::new);
-        ImageType.SETTINGS_MENU.image = loadFile("images/settings_menu.png").map(Image::new);
+        for (final ImageType imageType : ImageType.values()) {
+            this.images.put(imageType, CompletableFuture.supplyAsync(() -> this.loadImage(imageType.location), loader));
+        }
+
+        this.soundtrack = CompletableFuture.supplyAsync(() -> this.loadSoundtrack(), loader);
 
-        this.soundtrack = loadResource("audio/mastermind.wav").map(audioURL -> new Media(audioURL.toExternalForm()));
-        this.cssUrl     = loadResource("styling/textures.css");
+        this.cssUrl = loadResource("styling/textures.css");
     }
 
     /**
      * Private method for obtaining a {@link URL} to the requested resource.
-     * 
+     *
      * @param location the relative path string within the resources folder
      * @return the {@link Optional}<{@link URL}> to the requested resource
      */
@@ -43,34 +71,90 @@ public class MediaLoader {
     }
 
     /**
-     * Private method for loading a {@link FileInputStream} for the requested file.
-     * 
-     * @param location the relative path string within the resources folder
-     * @return the {@link Optional}<{@link FileInputStream}> for the requested file
+     * Private method for opening the soundtrack, preferring a compressed file when one is packaged. Only
+     * the header is read here; the audio itself is streamed while it plays.
+     *
+     * @return the {@link Optional}<{@link SoundtrackStreamer}> of the first soundtrack file that decodes
      */
-    private Optional<FileInputStream> loadFile(final String location) {
-        try {
-            return Optional.ofNullable(new FileInputStream(new File("resources/" + location)));
-        } catch (final Exception e) {
-            System.out.println("Exception while loading file (at " + location + "): " + e.toString());
-            return Optional.empty();
+    private Optional<SoundtrackStreamer> loadSoundtrack() {
+        for (final String location : SOUNDTRACK_LOCATIONS) {
+            final URL url = getClass().getResource("resources/" + location);
+
+            if (url != null) {
+                final Optional<SoundtrackStreamer> streamer = this.timed(location, () -> SoundtrackStreamer.open(url, SOUNDTRACK_FADE_MILLIS));
+                if (streamer.isPresent()) return streamer;
+            }
         }
+
+        System.out.println("Missing soundtrack resource (at audio/mastermind.*)");
+        return Optional.empty();
+    }
+
+    /**
+     * Private method for decoding the requested image. The stream is closed once the image is decoded.
+     *
+     * @param location the relative path string within the resources folder
+     * @return the {@link Optional}<{@link Image}> decoded from the requested file
+     */
+    private Optional<Image> loadImage(final String location) {
+        return this.timed(location, () -> {
+            try (InputStream stream = getClass().getResourceAsStream("resources/" + location)) {
+                if (stream == null) {
+                    System.out.println("Missing image resource (at " + location + ")");
+                    return Optional.empty();
+                }
+
+                return Optional.of(new Image(stream));
+            } catch (final Exception e) {
+                System.out.println("Exception while loading image (at " + location + "): " + e.toString());
+                return Optional.empty();
+            }
+        });
+    }
+
+    /**
+     * Runs a loading step and records when it finished, in milliseconds since loading started, as well as
+     * how long it took (see {@link Telemetry}).
+     *
+     * @param <T> the type of the loaded asset
+     * @param name the name to record the time under
+     * @param step the loading step
+     * @return the result of the step
+     */
+    private <T> T timed(final String name, final Supplier<T> step) {
+        final long stepStart = System.nanoTime();
+        final T    result    = step.get();
+
+        this.loadMillis.put(name, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        Telemetry.record(Telemetry.Metric.MEDIA_LOAD, stepStart, name);
+
+        return result;
     }
-    
+
     /**
-     * Method for retrieving one of the {@link Image} objects defined in {@link ImageType}.
-     * 
+     * Method for retrieving one of the {@link Image} objects defined in {@link ImageType}. Waits for that
+     * image (and only that image) to finish loading.
+     *
      * @param imageType which image is being requested
      * @return the {@link Optional}<{@link Image}>
      */
     public Optional<Image> getImage(final ImageType imageType) {
-        return imageType.image;
+        return this.images.get(imageType).join();
     }
 
     /**
-     * @return the {@link Optional}<{@link Media}> object containing the soundtrack 
+     * @param imageType which image is being requested
+     * @return the {@link CompletableFuture} completing with the {@link Optional}<{@link Image}>
      */
-    public Optional<Media> getSoundtrack() {
+    public CompletableFuture<Optional<Image>> getImageAsync(final ImageType imageType) {
+        return this.images.get(imageType);
+    }
+
+    /**
+     * @return the {@link CompletableFuture} completing with the {@link Optional}<{@link SoundtrackStreamer}>
+     *         of the soundtrack
+     */
+    public CompletableFuture<Optional<SoundtrackStreamer>> getSoundtrack() {
         return this.soundtrack;
     }
 
@@ -81,6 +165,26 @@ public class MediaLoader {
         return this.cssUrl;
     }
 
+    /**
+     * Records that the first frame has been shown, and the startup metrics with it (see {@link Telemetry}).
+     */
+    public void markFirstFrame() {
+        this.loadMillis.put("first frame", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+
+        final long sinceLaunch = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+        Telemetry.record(Telemetry.Metric.FIRST_FRAME, startNanos, sinceLaunch + " ms after launch; " + this.getLoadMillis());
+    }
+
+    /**
+     * @return the time at which each asset (and the first frame) was ready, in milliseconds since loading
+     *         started, in the order they became ready
+     */
+    public Map<String, Long> getLoadMillis() {
+        synchronized (this.loadMillis) {
+            return new LinkedHashMap<>(this.loadMillis);
+        }
+    }
+
     /**
      * @return the static singleton instance of the {@link MediaLoader} class
      */
@@ -92,11 +196,18 @@ public class MediaLoader {
      * Inner enumeration for the different kinds of images loaded by the {@link MediaLoader} class.
      */
     public static enum ImageType{
-        ICON,
-        MAIN_MENU,
-        SETTINGS_MENU;
+        ICON("images/icon.png"),
+        MAIN_MENU("images/main_menu.png"),
+        SETTINGS_MENU("images/settings_menu.png");
 
-        private Optional<Image> image = Optional.empty();
+        private final String location;
+
+        /**
+         * @param location the relative path string within the resources folder
+         */
+        private ImageType(final String location) {
+            this.location = location;
+        }
     }
 
 }
@@ -0,0 +1,554 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Exact solver that finds a strategy minimizing the expected number of guesses for a (slots, colors)
+ * configuration of {@link Mastermind}. The cost of a candidate set is the total number of guesses needed
+ * to identify every secret in it, so the expected number of guesses is the cost divided by the set size.
+ *
+ * The strategy tree is searched depth first with branch-and-bound. A guess is skipped as soon as a lower
+ * bound derived from the sizes of its partition reaches the best cost found so far. Solved subsets are
+ * shared through a {@link TranspositionTable}. Every first guess (up to symmetry) is searched as its own
+ * fork/join task, and the partition it produces is searched bucket by bucket in parallel.
+ *
+ * The optimal tree is written to the output file as a {@link StrategyTable}. When a checkpoint file is
+ * given, the result of each finished first guess is appended to it, so an interrupted run can be resumed
+ * with the same arguments.
+ *
+ * Usage: java OptimalSolver slots colors output-file [checkpoint-file]
+ */
+public class OptimalSolver {
+    /**
+     * Largest set size for which {@link OptimalSolver#minimumCost(int)} is precomputed.
+     */
+    private static final int MAX_COST_TABLE = 1 << 16;
+
+    /**
+     * Result of a search that was cut off by the bound and is therefore not exact.
+     */
+    private static final long PRUNED = Long.MAX_VALUE;
+
+    private final CodeSpace          space;
+    private final TranspositionTable table;
+    private final ForkJoinPool       pool;
+
+    private final int    winning;
+    private final int    branching;
+    private final long[] costTable;
+
+    private final AtomicLong best = new AtomicLong(Long.MAX_VALUE);
+
+    private Optional<Path> checkpoint = Optional.empty();
+
+    /**
+     * Constructs a solver for the given {@link CodeSpace} using the common fork/join pool and a
+     * {@link TranspositionTable} with the default memory cap.
+     *
+     * @param space the {@link CodeSpace} to solve
+     */
+    public OptimalSolver(final CodeSpace space) {
+        this(space, new TranspositionTable(), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs a solver for the given {@link CodeSpace}.
+     *
+     * @param space the {@link CodeSpace} to solve
+     * @param table the {@link TranspositionTable} to share solved subsets through
+     * @param pool the {@link ForkJoinPool} to run on
+     */
+    public OptimalSolver(final CodeSpace space, final TranspositionTable table, final ForkJoinPool pool) {
+        this.space   = space;
+        this.table   = table;
+        this.pool    = pool;
+        this.winning = space.winningBucket();
+
+        // A guess can produce at most this many non-winning feedbacks ((slots - 1, 1) is impossible)
+        this.branching = (space.slots + 1) * (space.slots + 2) / 2 - 2;
+        this.costTable = new long[Math.min(space.size, MAX_COST_TABLE) + 1];
+
+        for (int n = 0; n < this.costTable.length; ++n) {
+            this.costTable[n] = this.computeMinimumCost(n);
+        }
+    }
+
+    /**
+     * Enables checkpointing to (and resuming from) the given file.
+     *
+     * @param checkpoint the checkpoint file
+     */
+    public void setCheckpoint(final Path checkpoint) {
+        this.checkpoint = Optional.of(checkpoint);
+    }
+
+    /**
+     * @return the {@link TranspositionTable} used by this solver
+     */
+    public TranspositionTable getTable() {
+        return this.table;
+    }
+
+    /**
+     * Searches the whole code space and builds the optimal {@link DecisionTree}.
+     *
+     * @return the optimal {@link DecisionTree}
+     * @throws IOException if the checkpoint file cannot be read or written
+     */
+    public DecisionTree solve() throws IOException {
+        final Map<Integer, Long> finished = readCheckpoint();
+        final List<RootTask>     tasks    = new ArrayList<>();
+
+        int  bestGuess = -1;
+        long bestCost  = Long.MAX_VALUE;
+
+        for (final Map.Entry<Integer, Long> entry : finished.entrySet()) {
+            if (entry.getValue() < bestCost) {
+                bestCost  = entry.getValue();
+                bestGuess = entry.getKey();
+            }
+        }
+
+        best.set(bestCost);
+
+        // Every first guess is equivalent (by permuting colors and slots) to one whose colors are
+        // introduced in order with non-increasing multiplicities, so only those need to be searched.
+        for (final int guess : space.canonicalGuesses()) {
+            if (!finished.containsKey(guess)) {
+                tasks.add(new RootTask(guess));
+            }
+        }
+
+        for (final RootTask task : tasks) {
+            pool.execute(task);
+        }
+
+        for (final RootTask task : tasks) {
+            final long cost = task.join();
+
+            if (cost < bestCost) {
+                bestCost  = cost;
+                bestGuess = task.guess;
+            }
+        }
+
+        final int[] all = space.allCodes();
+        final DecisionTree.Node root = new DecisionTree.Node(bestGuess);
+        this.buildChildren(root, all, all.length);
+
+        return new DecisionTree(space.slots, space.colors, bestCost, root);
+    }
+
+    /**
+     * Finds the cost of the given candidate set if it is below the bound.
+     *
+     * @param set the candidate code indices (the first n entries are used)
+     * @param n the number of candidates
+     * @param bound an exclusive upper bound on the costs of interest
+     * @param guessOut a one-element array which receives the best guess
+     * @return the exact cost if it is below the bound, otherwise some value at least equal to the bound
+     */
+    private long search(final int[] set, final int n, final long bound, final int[] guessOut) {
+        if (n <= 2) {
+            guessOut[0] = set[0];
+            return minimumCost(n);
+        }
+
+        if (minimumCost(n) >= bound) {
+            return minimumCost(n);
+        }
+
+        final long key = TranspositionTable.hash(set, n);
+        final Optional<TranspositionTable.Entry> cached = table.get(key, n);
+
+        if (cached.isPresent()) {
+            guessOut[0] = cached.get().bestGuess;
+            return cached.get().cost;
+        }
+
+        final long[] order  = this.orderGuesses(set, n);
+        final int[]  counts = new int[space.buckets()];
+        final int[]  child  = new int[1];
+
+        long bestCost  = bound;
+        int  bestGuess = -1;
+
+        for (final long packed : order) {
+            final long lowerBound = packed >>> 32;
+            final int  guess      = (int) packed;
+
+            if (lowerBound >= bestCost) {
+                break;
+            }
+
+            final int[][] parts = this.partition(set, n, guess, counts);
+
+            long cost = lowerBound;
+
+            for (int b = 0; b < parts.length && cost < bestCost; ++b) {
+                if (b == winning || counts[b] == 0) continue;
+
+                final long others = cost - minimumCost(counts[b]);
+                cost = others + this.search(parts[b], counts[b], bestCost - others, child);
+            }
+
+            if (cost < bestCost) {
+                bestCost  = cost;
+                bestGuess = guess;
+            }
+        }
+
+        if (bestGuess >= 0) {
+            table.put(key, n, bestGuess, bestCost);
+            guessOut[0] = bestGuess;
+        }
+
+        return bestCost;
+    }
+
+    /**
+     * Computes a lower bound for every useful guess against the candidate set, and sorts the guesses by it.
+     * A guess is useless if it puts every candidate in the same non-winning bucket.
+     *
+     * @param set the candidate code indices
+     * @param n the number of candidates
+     * @return the guesses packed as (lower bound << 32 | guess), in ascending order
+     */
+    private long[] orderGuesses(final int[] set, final int n) {
+        final long[] order  = new long[space.size];
+        final int[]  counts = new int[space.buckets()];
+
+        int used = 0;
+
+        for (int guess = 0; guess < space.size; ++guess) {
+            Arrays.fill(counts, 0);
+
+            for (int i = 0; i < n; ++i) {
+                ++counts[space.score(set[i], guess)];
+            }
+
+            long lowerBound = n;
+            boolean useful = false;
+
+            for (int b = 0; b < counts.length; ++b) {
+                if (b != winning) {
+                    lowerBound += minimumCost(counts[b]);
+                }
+                if (counts[b] > 0 && counts[b] < n) {
+                    useful = true;
+                }
+            }
+
+            if (useful) {
+                order[used++] = (lowerBound << 32) | guess;
+            }
+        }
+
+        final long[] trimmed = Arrays.copyOf(order, used);
+        Arrays.sort(trimmed);
+        return trimmed;
+    }
+
+    /**
+     * Splits the candidate set by the feedback each candidate would give to the guess.
+     *
+     * @param set the candidate code indices
+     * @param n the number of candidates
+     * @param guess the guess to partition by
+     * @param counts an array which receives the size of each bucket
+     * @return the candidates of each bucket
+     */
+    private int[][] partition(final int[] set, final int n, final int guess, final int[] counts) {
+        Arrays.fill(counts, 0);
+
+        for (int i = 0; i < n; ++i) {
+            ++counts[space.score(set[i], guess)];
+        }
+
+        final int[][] parts = new int[counts.length][];
+
+        for (int b = 0; b < counts.length; ++b) {
+            parts[b] = new int[counts[b]];
+        }
+
+        final int[] filled = new int[counts.length];
+
+        for (int i = 0; i < n; ++i) {
+            final int b = space.score(set[i], guess);
+            parts[b][filled[b]++] = set[i];
+        }
+
+        return parts;
+    }
+
+    /**
+     * Recursively attaches the optimal subtree for each non-winning bucket of the node's guess.
+     *
+     * @param node the node whose children should be built
+     * @param set the candidate code indices at the node
+     * @param n the number of candidates
+     */
+    private void buildChildren(final DecisionTree.Node node, final int[] set, final int n) {
+        final int[]   counts = new int[space.buckets()];
+        final int[][] parts  = this.partition(set, n, node.guess, counts);
+        final int[]   guess  = new int[1];
+
+        for (int b = 0; b < parts.length; ++b) {
+            if (b == winning || counts[b] == 0) continue;
+
+            this.search(parts[b], counts[b], Long.MAX_VALUE, guess);
+
+            final DecisionTree.Node child = new DecisionTree.Node(guess[0]);
+            node.children.put(b, child);
+            this.buildChildren(child, parts[b], counts[b]);
+        }
+    }
+
+    /**
+     * Computes the smallest possible cost of any set of n candidates: at most one secret is identified
+     * at depth 1, at most (branching) at depth 2, (branching^2) at depth 3, and so on.
+     *
+     * @param n the number of candidates
+     * @return the lower bound on the cost of the set
+     */
+    private long minimumCost(final int n) {
+        return n < costTable.length ? costTable[n] : computeMinimumCost(n);
+    }
+
+    /**
+     * @param n the number of candidates
+     * @return the lower bound described in {@link OptimalSolver#minimumCost(int)}
+     */
+    private long computeMinimumCost(final int n) {
+        long cost      = 0;
+        long capacity  = 1;
+        long remaining = n;
+
+        for (int depth = 1; remaining > 0; ++depth) {
+            final long placed = Math.min(capacity, remaining);
+
+            cost      += placed * depth;
+            remaining -= placed;
+            capacity   = Math.min(capacity * branching, Integer.MAX_VALUE);
+        }
+
+        return cost;
+    }
+
+    /**
+     * Reads the finished first guesses from the checkpoint file (if one is enabled and exists).
+     *
+     * @return a map from first guess to its cost (or a lower bound on it, if it was pruned)
+     * @throws IOException if the checkpoint file belongs to a different configuration or cannot be read
+     */
+    private Map<Integer, Long> readCheckpoint() throws IOException {
+        final Map<Integer, Long> finished = new HashMap<>();
+
+        if (checkpoint.isEmpty() || !Files.exists(checkpoint.get())) {
+            return finished;
+        }
+
+        final List<String> lines = Files.readAllLines(checkpoint.get());
+
+        if (lines.isEmpty() || !lines.get(0).equals(this.checkpointHeader())) {
+            throw new IOException("Checkpoint does not match configuration: " + checkpoint.get());
+        }
+
+        // Lines torn by a crash mid-write fail their checksum and are searched again
+        for (final String line : lines.subList(1, lines.size())) {
+            final int split = line.lastIndexOf(' ');
+
+            if (split < 0 || !line.substring(split + 1).equals(checksum(line.substring(0, split)))) {
+                continue;
+            }
+
+            final String[] fields = line.substring(0, split).split(" ");
+
+            if (fields.length == 2) {
+                finished.put(Integer.parseInt(fields[0]), Long.parseLong(fields[1]));
+            }
+        }
+
+        return finished;
+    }
+
+    /**
+     * Appends the result of a finished first guess to the checkpoint file (if one is enabled), followed by
+     * the checksum of the record so that a line torn by a crash is recognized when resuming.
+     *
+     * @param guess the first guess
+     * @param cost its cost (or a lower bound on it, if it was pruned)
+     */
+    private synchronized void writeCheckpoint(final int guess, final long cost) {
+        if (checkpoint.isEmpty()) {
+            return;
+        }
+
+        try {
+            final Path path = checkpoint.get();
+
+            if (!Files.exists(path)) {
+                final Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+
+                Files.writeString(temp, this.checkpointHeader() + "\n");
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+
+            final String record = guess + " " + cost;
+
+            try (BufferedWriter writer = Files.newBufferedWriter(path, StandardOpenOption.APPEND)) {
+                writer.write(record + " " + checksum(record) + "\n");
+            }
+        } catch (final IOException e) {
+            System.out.println("Failed to write checkpoint: " + e.toString());
+        }
+    }
+
+    /**
+     * @param record a checkpoint record without its checksum
+     * @return the CRC-32 of the record, in hexadecimal
+     */
+    private static String checksum(final String record) {
+        final CRC32 crc = new CRC32();
+
+        crc.update(record.getBytes(StandardCharsets.US_ASCII));
+        return Long.toHexString(crc.getValue());
+    }
+
+    /**
+     * @return the first line of a checkpoint file for this configuration
+     */
+    private String checkpointHeader() {
+        return "# mastermind checkpoint " + space.slots + " " + space.colors;
+    }
+
+    /**
+     * Task that searches a single first guess, handling the buckets of its partition as parallel subtasks.
+     */
+    private class RootTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final int guess;
+
+        /**
+         * @param guess the first guess to search
+         */
+        public RootTask(final int guess) {
+            this.guess = guess;
+        }
+
+        @Override
+        protected Long compute() {
+            final int[]   all    = space.allCodes();
+            final int[]   counts = new int[space.buckets()];
+            final int[][] parts  = partition(all, all.length, guess, counts);
+
+            long lowerBound = all.length;
+
+            for (int b = 0; b < counts.length; ++b) {
+                if (b != winning) lowerBound += minimumCost(counts[b]);
+            }
+
+            final List<BucketTask> subtasks = new ArrayList<>();
+
+            for (int b = 0; b < counts.length; ++b) {
+                if (b == winning || counts[b] == 0) continue;
+
+                final BucketTask task = new BucketTask(parts[b], lowerBound - minimumCost(counts[b]));
+                task.fork();
+                subtasks.add(task);
+            }
+
+            long cost = all.length;
+
+            for (final BucketTask task : subtasks) {
+                final long subtree = task.join();
+                cost = (subtree == PRUNED || cost == PRUNED) ? PRUNED : cost + subtree;
+            }
+
+            writeCheckpoint(guess, cost);
+            best.accumulateAndGet(cost, Math::min);
+
+            return cost;
+        }
+    }
+
+    /**
+     * Task that searches one bucket of a first guess's partition.
+     */
+    private class BucketTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] set;
+        private final long  others;
+
+        /**
+         * @param set the candidates in the bucket
+         * @param others a lower bound on the cost of the first guess excluding this bucket
+         */
+        public BucketTask(final int[] set, final long others) {
+            this.set    = set;
+            this.others = others;
+        }
+
+        @Override
+        protected Long compute() {
+            final long bound = best.get();
+            final long limit = bound == Long.MAX_VALUE ? Long.MAX_VALUE : bound - others;
+
+            if (limit <= minimumCost(set.length)) {
+                return PRUNED;
+            }
+
+            final long cost = search(set, set.length, limit, new int[1]);
+            return cost < limit ? cost : PRUNED;
+        }
+    }
+
+    /**
+     * Command line entry point. Solves the configuration and writes the optimal tree to the output file as a
+     * {@link StrategyTable}.
+     *
+     * @param args slots, colors, output file, and optionally a checkpoint file
+     * @throws IOException if the output or checkpoint file cannot be accessed
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length < 3) {
+            System.out.println("Usage: java OptimalSolver slots colors output-file [checkpoint-file]");
+            return;
+        }
+
+        final CodeSpace     space  = new CodeSpace(Integer.parseInt(args[0]), Integer.parseInt(args[1]));
+        final OptimalSolver solver = new OptimalSolver(space);
+
+        if (args.length > 3) {
+            solver.setCheckpoint(Paths.get(args[3]));
+        }
+
+        final long start = System.nanoTime();
+        final DecisionTree tree = solver.solve();
+        final long elapsed = (System.nanoTime() - start) / 1_000_000;
+
+        StrategyTable.fromTree(tree).write(Paths.get(args[2]));
+
+        System.out.println("Total guesses:    " + tree.cost + " over " + space.size + " secrets");
+        System.out.println("Expected guesses: " + ((double) tree.cost / space.size));
+        System.out.println("Elapsed:          " + elapsed + " ms");
+        System.out.println(solver.getTable());
+    }
+}
@@ -3,7 +3,7 @@ import java.util.Optional;
 import javafx.scene.paint.Color;
 
 /**
- * Class to represent an colored "peg" for the {@link Mastermind} game. There are eight possible colors,
+ * Class to represent an colored "peg" for the {@link Mastermind} game. There are thirty-two possible colors,
  * of which default play only uses the first six.
  */
 public class Peg {
@@ -59,7 +59,7 @@ public class Peg {
      * @return the {@link Optional}<{@link Peg}>
      */
     public static Optional<Peg> fromByte(final byte pegByte) {
-        if (pegByte >= 1 && pegByte < 9) {
+        if (pegByte >= 1 && pegByte <= PegColor.values().length) {
             return Optional.of(new Peg(PegColor.values()[pegByte - 1]));
         } else {
             return Optional.empty();
@@ -77,7 +77,31 @@ public class Peg {
         BROWN(Color.rgb(90, 21, 8), 'b'),
         YELLOW(Color.YELLOW, 'y'),
         PURPLE(Color.PURPLE, 'p'),
-        ORANGE(Color.rgb(240, 100, 0), 'o');
+        ORANGE(Color.rgb(240, 100, 0), 'o'),
+        PINK(Color.HOTPINK, 'k'),
+        BLUE(Color.rgb(30, 80, 255), 'u'),
+        LIME(Color.LIME, 'l'),
+        NAVY(Color.rgb(20, 30, 120), 'n'),
+        MAROON(Color.MAROON, 'm'),
+        TEAL(Color.TEAL, 't'),
+        SILVER(Color.SILVER, 's'),
+        GOLD(Color.GOLD, 'd'),
+        INDIGO(Color.INDIGO, 'i'),
+        CORAL(Color.CORAL, 'c'),
+        OLIVE(Color.OLIVE, 'v'),
+        MAGENTA(Color.MAGENTA, 'e'),
+        CHOCOLATE(Color.CHOCOLATE, 'h'),
+        FOREST(Color.FORESTGREEN, 'f'),
+        LAVENDER(Color.LAVENDER, '1'),
+        MINT(Color.rgb(150, 255, 200), '2'),
+        PEACH(Color.PEACHPUFF, '3'),
+        SLATE(Color.SLATEGRAY, '4'),
+        BEIGE(Color.BEIGE, '5'),
+        CRIMSON(Color.CRIMSON, '6'),
+        TURQUOISE(Color.TURQUOISE, '7'),
+        PLUM(Color.PLUM, '8'),
+        KHAKI(Color.KHAKI, '9'),
+        CHARTREUSE(Color.CHARTREUSE, '0');
 
         public final Color color;
         public final char key;
@@ -121,7 +145,7 @@ public class Peg {
          * @return a random {@link PegColor} object
          */
         public static PegColor randomPegColor(final int available) {
-            return PegColor.values()[(int) (Math.random() * Math.min(available, 8))];
+            return PegColor.values()[(int) (Math.random() * Math.min(available, PegColor.values().length))];
         }
     }
 }
@@ -0,0 +1,209 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Read-only collection of puzzles made by {@link PuzzleGenerator}, in the compact bank format:
+ *
+ *            4 bytes: "MMPZ" (the first byte is never a valid # of slots, so a bank cannot be mistaken
+ *                     for a saved {@link GameState}),
+ *            1 byte:  format version ({@link PuzzleBank#VERSION}),
+ *
+ * followed by one record per puzzle:
+ *
+ *            1 byte:  difficulty ({@link PuzzleGenerator.Difficulty} ordinal),
+ *            1 byte:  # of clue rows,
+ *  (slots*(clues+1)) pegs: the secret then every clue row, in the bit-packed form of a versioned save (see
+ *                          {@link GameState}), padded to a whole byte.
+ *
+ * The size of each record follows from its first two bytes, so loading a bank only steps from record to
+ * record to note where each one starts; a puzzle is decoded when it is asked for.
+ */
+public class PuzzleBank {
+    private static final byte[] MAGIC   = { 'M', 'M', 'P', 'Z' };
+    private static final int    VERSION = 1;
+    private static final int    HEADER  = MAGIC.length + 1;
+
+    private final byte[] data;
+    private final int[]  offsets;
+
+    /**
+     * Private constructor for a bank whose records have been located.
+     *
+     * @param data the bank file's contents
+     * @param offsets the position of each record in the data
+     */
+    private PuzzleBank(final byte[] data, final int[] offsets) {
+        this.data    = data;
+        this.offsets = offsets;
+    }
+
+    /**
+     * @param data the contents of a file
+     * @return whether the file is a puzzle bank (of any version)
+     */
+    public static boolean isBank(final byte[] data) {
+        if (data.length < HEADER) {
+            return false;
+        }
+
+        for (int i = 0; i < MAGIC.length; ++i) {
+            if (data[i] != MAGIC[i]) return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Locates every record of a bank file. The data is kept as is, not copied.
+     *
+     * @param data the bank file's contents
+     * @return the {@link PuzzleBank}
+     * @throws IllegalArgumentException if the data is not a bank of a supported version, or is truncated
+     */
+    public static PuzzleBank fromBytes(final byte[] data) {
+        if (!isBank(data)) {
+            throw new IllegalArgumentException("Not a puzzle bank");
+        } else if (data[MAGIC.length] != VERSION) {
+            throw new IllegalArgumentException("Unsupported puzzle bank version: " + data[MAGIC.length]);
+        }
+
+        final PuzzleGenerator.Difficulty[] difficulties = PuzzleGenerator.Difficulty.values();
+
+        final List<Integer> offsets = new ArrayList<>();
+        int                 offset  = HEADER;
+
+        while (offset < data.length) {
+            if (offset + 2 > data.length || (data[offset] & 0xFF) >= difficulties.length) {
+                throw new IllegalArgumentException("Corrupt puzzle bank record at byte " + offset);
+            }
+
+            offsets.add(offset);
+            offset += recordLength(difficulties[data[offset]], data[offset + 1] & 0xFF);
+        }
+
+        if (offset > data.length) {
+            throw new IllegalArgumentException("Truncated puzzle bank");
+        }
+
+        return new PuzzleBank(data, offsets.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * @param puzzles the {@link PuzzleGenerator.Puzzle}s to store
+     * @return the contents of a bank file holding the puzzles, in order
+     */
+    public static byte[] toBytes(final List<PuzzleGenerator.Puzzle> puzzles) {
+        final List<Byte> out = new ArrayList<>();
+
+        for (final byte b : MAGIC) {
+            out.add(b);
+        }
+
+        out.add((byte) VERSION);
+
+        for (final PuzzleGenerator.Puzzle puzzle : puzzles) {
+            final int    slots   = puzzle.difficulty.slots;
+            final byte[] pegData = new byte[slots * (puzzle.clueCount() + 1)];
+
+            System.arraycopy(puzzle.getSecret(), 0, pegData, 0, slots);
+
+            for (int i = 0; i < puzzle.clueCount(); ++i) {
+                System.arraycopy(puzzle.getClue(i), 0, pegData, (i + 1) * slots, slots);
+            }
+
+            out.add((byte) puzzle.difficulty.ordinal());
+            out.add((byte) puzzle.clueCount());
+            out.addAll(GameState.packBits(pegData, GameState.bitsPerPeg(puzzle.difficulty.colors)));
+        }
+
+        final byte[] data = new byte[out.size()];
+
+        for (int i = 0; i < data.length; ++i) {
+            data[i] = out.get(i);
+        }
+
+        return data;
+    }
+
+    /**
+     * @return the number of puzzles in the bank
+     */
+    public int size() {
+        return this.offsets.length;
+    }
+
+    /**
+     * @param i the index of a puzzle
+     * @return the {@link PuzzleGenerator.Difficulty} of the puzzle
+     */
+    public PuzzleGenerator.Difficulty difficulty(final int i) {
+        return PuzzleGenerator.Difficulty.values()[this.data[this.offsets[i]]];
+    }
+
+    /**
+     * Decodes one puzzle of the bank.
+     *
+     * @param i the index of a puzzle
+     * @return the {@link PuzzleGenerator.Puzzle}
+     */
+    public PuzzleGenerator.Puzzle get(final int i) {
+        final PuzzleGenerator.Difficulty difficulty = this.difficulty(i);
+
+        final int offset = this.offsets[i];
+        final int clues  = this.data[offset + 1] & 0xFF;
+        final int length = recordLength(difficulty, clues) - 2;
+
+        final List<Byte> packed = new ArrayList<>(length);
+
+        for (int k = 0; k < length; ++k) {
+            packed.add(this.data[offset + 2 + k]);
+        }
+
+        final List<Byte> pegs  = GameState.unpackBits(packed, GameState.bitsPerPeg(difficulty.colors));
+        final int        slots = difficulty.slots;
+
+        final byte[]   secret = new byte[slots];
+        final byte[][] rows   = new byte[clues][slots];
+
+        for (int j = 0; j < slots; ++j) {
+            secret[j] = pegs.get(j);
+        }
+
+        for (int r = 0; r < clues; ++r) {
+            for (int j = 0; j < slots; ++j) {
+                rows[r][j] = pegs.get((r + 1) * slots + j);
+            }
+        }
+
+        return new PuzzleGenerator.Puzzle(difficulty, secret, rows);
+    }
+
+    /**
+     * @param difficulty the {@link PuzzleGenerator.Difficulty} wanted, or empty for any
+     * @return a random puzzle of the bank with the given difficulty, if there is one
+     */
+    public Optional<PuzzleGenerator.Puzzle> random(final Optional<PuzzleGenerator.Difficulty> difficulty) {
+        final List<Integer> matching = new ArrayList<>();
+
+        for (int i = 0; i < this.size(); ++i) {
+            if (difficulty.isEmpty() || this.difficulty(i) == difficulty.get()) matching.add(i);
+        }
+
+        if (matching.isEmpty()) {
+            return Optional.empty();
+        }
+
+        return Optional.of(this.get(matching.get((int) (Math.random() * matching.size()))));
+    }
+
+    /**
+     * @param difficulty the {@link PuzzleGenerator.Difficulty} of a record
+     * @param clues the number of clue rows of the record
+     * @return the number of bytes the record takes
+     */
+    private static int recordLength(final PuzzleGenerator.Difficulty difficulty, final int clues) {
+        final int bits = difficulty.slots * (clues + 1) * GameState.bitsPerPeg(difficulty.colors);
+        return 2 + (bits + 7) / 8;
+    }
+}
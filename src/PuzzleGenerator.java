@@ -0,0 +1,221 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Generates deduction puzzles: a secret together with rows of clues (guesses and their feedback) that leave
+ * exactly one consistent code, the secret. The player is shown the clues and has a single row left in which
+ * to name the secret.
+ *
+ * A puzzle is built by playing random consistent guesses against a random secret until one candidate
+ * remains. Every clue is a candidate other than the secret, so it always removes at least itself, and the
+ * candidates are filtered incrementally with {@link CandidateAnalysis}, in parallel chunks. Puzzles are also
+ * generated in parallel with one another, which is what keeps the small boards fast.
+ *
+ * Run as a program to fill a {@link PuzzleBank} file:
+ *
+ *      java PuzzleGenerator [bank file] [puzzles per difficulty]
+ */
+public class PuzzleGenerator {
+    private static final String DEFAULT_BANK  = "../gamedata/puzzles.bank";
+    private static final int    DEFAULT_COUNT = 1000;
+
+    /**
+     * Enumeration of the difficulty tiers of a puzzle, each its own board size. Larger boards need longer
+     * chains of deductions to pin the secret down.
+     */
+    public static enum Difficulty {
+        EASY(4, 6),
+        MEDIUM(5, 7),
+        HARD(6, 8);
+
+        public final int slots;
+        public final int colors;
+
+        /**
+         * @param slots the number of slots of the puzzles
+         * @param colors the number of colors of the puzzles
+         */
+        private Difficulty(final int slots, final int colors) {
+            this.slots  = slots;
+            this.colors = colors;
+        }
+    }
+
+    /**
+     * Immutable class representing a generated puzzle.
+     */
+    public static class Puzzle {
+        public final Difficulty difficulty;
+
+        private final byte[]   secret;
+        private final byte[][] clues;
+
+        /**
+         * @param difficulty the {@link Difficulty} tier of the puzzle
+         * @param secret the {@link Peg} bytes of the secret
+         * @param clues the {@link Peg} bytes of each clue row, in the order they are shown
+         */
+        public Puzzle(final Difficulty difficulty, final byte[] secret, final byte[][] clues) {
+            this.difficulty = difficulty;
+            this.secret     = secret.clone();
+            this.clues      = clues.clone();
+        }
+
+        /**
+         * @return the {@link Peg} bytes of the secret
+         */
+        public byte[] getSecret() {
+            return this.secret.clone();
+        }
+
+        /**
+         * @return the number of clue rows
+         */
+        public int clueCount() {
+            return this.clues.length;
+        }
+
+        /**
+         * @param i the index of a clue row
+         * @return the {@link Peg} bytes of the clue row
+         */
+        public byte[] getClue(final int i) {
+            return this.clues[i].clone();
+        }
+
+        /**
+         * Builds the game to play: the clue rows already committed, followed by the one row in which the
+         * player names the secret.
+         *
+         * @return the {@link GameState} of the puzzle
+         */
+        public GameState toGameState() {
+            final GameState state = new GameState(difficulty.slots, difficulty.colors, clues.length + 1, secret);
+
+            for (int i = 0; i < clues.length; ++i) {
+                for (int j = 0; j < difficulty.slots; ++j) {
+                    final Optional<Peg> peg = Peg.fromByte(clues[i][j]);
+
+                    if (peg.isPresent()) {
+                        state.setPeg(i, j, peg.get());
+                    }
+                }
+
+                state.nextRowIfPossible();
+            }
+
+            return state;
+        }
+    }
+
+    /**
+     * Generates a single puzzle.
+     *
+     * @param difficulty the {@link Difficulty} tier of the puzzle
+     * @return the {@link Puzzle}
+     */
+    public static Puzzle generate(final Difficulty difficulty) {
+        final CodeSpace         space  = CodeSpace.of(difficulty.slots, difficulty.colors);
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int               secret = random.nextInt(space.size);
+
+        final List<byte[]>  clues     = new ArrayList<>();
+        final List<Integer> responses = new ArrayList<>();
+
+        Optional<CandidateAnalysis> analysis = Optional.empty();
+
+        while (analysis.map(a -> a.count).orElse((long) space.size) > 1) {
+            final int guess = pickGuess(space, analysis.flatMap(CandidateAnalysis::getCandidates), secret, random);
+
+            clues.add(space.pegsOf(guess));
+            responses.add(space.score(secret, guess));
+
+            final FeedbackConstraints constraints = new FeedbackConstraints(space, clues.toArray(new byte[0][]),
+                responses.stream().mapToInt(Integer::intValue).toArray());
+
+            analysis = CandidateAnalysis.compute(constraints, analysis, () -> false);
+        }
+
+        return new Puzzle(difficulty, space.pegsOf(secret), clues.toArray(new byte[0][]));
+    }
+
+    /**
+     * Generates puzzles in parallel.
+     *
+     * @param difficulty the {@link Difficulty} tier of the puzzles
+     * @param count the number of puzzles to generate
+     * @return the {@link Puzzle}s
+     */
+    public static List<Puzzle> generate(final Difficulty difficulty, final int count) {
+        return IntStream.range(0, count).parallel()
+            .mapToObj(i -> generate(difficulty))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Picks the next clue: a random candidate other than the secret, or a random code other than the secret
+     * while the candidates are not listed (before the first clue, or when there are too many to keep).
+     *
+     * @param space the {@link CodeSpace} of the puzzle
+     * @param candidates the codes consistent with the clues so far, if listed
+     * @param secret the code index of the secret
+     * @param random the source of randomness
+     * @return the code index of the clue
+     */
+    private static int pickGuess(final CodeSpace space, final Optional<int[]> candidates, final int secret,
+            final ThreadLocalRandom random) {
+        if (candidates.isPresent()) {
+            final int[] codes = candidates.get();
+            final int   pick  = random.nextInt(codes.length - 1);
+
+            // The secret is always a candidate; skip over it
+            return codes[pick] < secret ? codes[pick] : codes[pick + 1];
+        }
+
+        final int pick = random.nextInt(space.size - 1);
+        return pick < secret ? pick : pick + 1;
+    }
+
+    /**
+     * Generates puzzles of every {@link Difficulty}, reports the rate for each and writes them all to a
+     * {@link PuzzleBank} file.
+     *
+     * @param args the bank file and the number of puzzles per difficulty (both optional)
+     */
+    public static void main(final String[] args) {
+        final String file  = args.length > 0 ? args[0] : DEFAULT_BANK;
+        final int    count = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_COUNT;
+
+        final List<Puzzle> puzzles = new ArrayList<>();
+
+        for (final Difficulty difficulty : Difficulty.values()) {
+            final long         start     = System.nanoTime();
+            final List<Puzzle> generated = generate(difficulty, count);
+            final double       seconds   = (System.nanoTime() - start) / 1e9;
+
+            final double clues = generated.stream().mapToInt(Puzzle::clueCount).average().orElse(0);
+
+            System.out.printf("%s: %d puzzles in %.2f s (%.0f per minute), %.2f clues on average%n",
+                difficulty, count, seconds, count / seconds * 60, clues);
+
+            puzzles.addAll(generated);
+        }
+
+        try {
+            final byte[]           data    = PuzzleBank.toBytes(puzzles);
+            final FileOutputStream fStream = new FileOutputStream(new File(file));
+            fStream.write(data);
+            fStream.close();
+
+            System.out.println("Wrote " + puzzles.size() + " puzzles (" + data.length + " bytes) to " + file);
+        } catch (final Exception e) {
+            System.out.println("Failed to write puzzle bank: " + e.toString());
+        }
+    }
+}
@@ -0,0 +1,466 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Grades the play of saved games in bulk. Every save file ("mastermind_*") of a directory is replayed row by
+ * row, and each guess is compared with the best guess available at that point: how many of the remaining
+ * candidates it is expected to eliminate (over a secret drawn uniformly from the candidates, with a winning
+ * guess eliminating everything) against how many the best guess would. The mean of those ratios over a
+ * game is its efficiency, which sets its grade.
+ *
+ * The directory is read lazily through a {@link DirectoryStream} and only a few files per worker thread are
+ * in flight at once. Only the report lines (one short line per game) are held until the end, when they are
+ * written sorted by file name, so the report is the same whatever the number of threads. Games of the same configuration
+ * share one {@link Config}: the {@link CodeSpace} with its precomputed feedback, the canonical opening
+ * guesses, and the best-guess results already found for each sequence of played rows, which games with the
+ * same opening reuse.
+ *
+ * The report has one line per game:
+ *
+ *      file  slots"x"colors["d"]  outcome  efficiency  grade  row...
+ *
+ * where the outcome is "won@k", "lost" or "open@k" (k rows played), and each row reads
+ * "before>after:percent", the candidates before and after the guess and its efficiency, with a trailing
+ * "!" when the guess could not have been the secret. Lines starting with "#" are comments and the summary.
+ *
+ * Run as a program:
+ *
+ *      java SaveAnalyzer [save directory] [report file] [threads]
+ */
+public class SaveAnalyzer {
+    private static final String DEFAULT_DIRECTORY = "../gamedata";
+    private static final String DEFAULT_REPORT    = "../gamedata/analysis.report";
+    private static final String SAVE_PATTERN      = "mastermind_*";
+
+    /**
+     * Largest {@link CodeSpace} analyzed, as the candidates of a game are listed after its first row.
+     */
+    private static final int  MAX_SPACE     = 1 << 20;
+
+    /**
+     * Most candidates a guess is scored against. Larger sets are sampled evenly.
+     */
+    private static final int  SECRET_SAMPLE = 1024;
+
+    /**
+     * Most scores computed while looking for the best guess of a row. Spaces too large to try every code
+     * try the candidates (sampled evenly) and the canonical guesses instead.
+     */
+    private static final long MAX_WORK      = 1L << 22;
+
+    /**
+     * Most best-guess results remembered per configuration.
+     */
+    private static final int  MAX_MEMO      = 1 << 16;
+
+    /**
+     * Files read ahead of the workers, per worker thread.
+     */
+    private static final int  IN_FLIGHT     = 2;
+
+    /**
+     * Least efficiency for each grade but the last.
+     */
+    private static final double[] THRESHOLDS = { 0.95, 0.85, 0.70, 0.50 };
+    private static final String   GRADES     = "ABCDF";
+
+    private final Map<Integer, Config> configs = new ConcurrentHashMap<>();
+
+    private final LongAdder       analyzed   = new LongAdder();
+    private final LongAdder       skipped    = new LongAdder();
+    private final LongAdder       failed     = new LongAdder();
+    private final LongAdder       memoHits   = new LongAdder();
+    private final LongAdder       memoMisses = new LongAdder();
+    private final DoubleAdder     efficiency = new DoubleAdder();
+    private final AtomicLongArray grades     = new AtomicLongArray(GRADES.length());
+
+    /**
+     * The shared state of every game of one configuration.
+     */
+    private static class Config {
+        private final CodeSpace space;
+        private final int[]     openings;
+
+        // The expected number of candidates left by the best guess, keyed by the rows played before it
+        private final Map<String, Double> best = new ConcurrentHashMap<>();
+
+        /**
+         * @param space the {@link CodeSpace} of the configuration
+         */
+        private Config(final CodeSpace space) {
+            this.space    = space;
+            this.openings = space.canonicalGuesses();
+        }
+    }
+
+    /**
+     * Analyzes one game and adds it to the summary.
+     *
+     * @param name the name the game is reported under
+     * @param game the {@link GameState} of the game
+     * @return the report line of the game, or empty if its configuration is too large to analyze
+     */
+    public Optional<String> analyze(final String name, final GameState game) {
+        if (codes(game) > MAX_SPACE) {
+            this.skipped.increment();
+            return Optional.empty();
+        }
+
+        final Config config = this.configs.computeIfAbsent((game.distinct ? 1 << 16 : 0) + game.slots * 256 + game.colors,
+            key -> new Config(CodeSpace.of(game.slots, game.colors, game.distinct)));
+        final CodeSpace space = config.space;
+
+        final StringBuilder rows    = new StringBuilder();
+        final StringBuilder played  = new StringBuilder();
+        final byte[]        secret  = game.solutionPegs();
+
+        // The candidates, or null while every code is one
+        int[]  candidates = null;
+        int    count      = space.size;
+        int    rowCount   = 0;
+        double total      = 0;
+        String outcome    = "open@0";
+
+        for (int i = 0; i < game.maxRows && game.isRowFull(i); ++i) {
+            final byte[] pegs     = game.rowPegs(i);
+            final int    guess    = space.indexOf(pegs);
+            final int    response = space.score(secret, pegs);
+
+            final int[]  sample    = sample(candidates, count);
+            final double remaining = expectedRemaining(space, sample, count, guess, new int[space.buckets()]);
+            final double best      = Math.min(remaining, this.bestRemaining(config, played.toString(), candidates, sample, count));
+
+            final boolean consistent = candidates == null || Arrays.binarySearch(candidates, guess) >= 0;
+            final double  ratio      = count - best <= 0 ? 1 : Math.min(1, (count - remaining) / (count - best));
+
+            final int[] next = filter(space, candidates, guess, response);
+
+            rows.append(' ').append(count).append('>').append(next.length).append(':').append(Math.round(ratio * 100));
+            if (!consistent) rows.append('!');
+
+            played.append(guess).append('/').append(response).append(',');
+            candidates = next;
+            count      = next.length;
+            total     += ratio;
+            ++rowCount;
+
+            if (response == space.winningBucket()) {
+                outcome = "won@" + rowCount;
+                break;
+            }
+
+            outcome = rowCount == game.maxRows ? "lost" : "open@" + rowCount;
+        }
+
+        final double mean  = rowCount == 0 ? 0 : total / rowCount;
+        final int    grade = gradeOf(mean);
+
+        this.analyzed.increment();
+
+        if (rowCount > 0) {
+            this.efficiency.add(mean);
+            this.grades.incrementAndGet(grade);
+        }
+
+        return Optional.of(String.format("%s %dx%d%s %s %.3f %s%s", name, game.slots, game.colors, game.distinct ? "d" : "",
+            outcome, mean, rowCount == 0 ? "-" : GRADES.charAt(grade), rows));
+    }
+
+    /**
+     * Analyzes every save file of a directory in parallel and writes the report.
+     *
+     * @param directory the directory holding the save files
+     * @param report the report file to write
+     * @param threads the number of worker threads
+     * @throws IOException if the directory cannot be listed or the report cannot be written
+     * @throws InterruptedException if interrupted while waiting for the workers
+     */
+    public void analyzeDirectory(final Path directory, final Path report, final int threads) throws IOException, InterruptedException {
+        final long            start   = System.nanoTime();
+        final Semaphore       permits = new Semaphore(threads * IN_FLIGHT);
+        final ExecutorService workers = Executors.newFixedThreadPool(threads, runnable -> {
+            final Thread thread = new Thread(runnable, "mastermind-analyzer");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try (final BufferedWriter out = Files.newBufferedWriter(report);
+             final DirectoryStream<Path> saves = Files.newDirectoryStream(directory, SAVE_PATTERN)) {
+            out.write("# file config outcome efficiency grade before>after:percent...\n");
+
+            // Workers finish in any order, so lines are sorted by file name before they are written
+            final Map<String, String> lines = new ConcurrentSkipListMap<>();
+
+            for (final Path save : saves) {
+                permits.acquire();
+
+                workers.execute(() -> {
+                    try {
+                        final String line = this.analyzeFile(save).orElse("# " + save.getFileName() + " skipped: too many codes");
+
+                        lines.put(save.getFileName().toString(), line);
+                    } catch (final Exception e) {
+                        this.failed.increment();
+                        System.out.println("Failed to analyze " + save.getFileName() + ": " + e.toString());
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+
+            for (final String line : lines.values()) {
+                out.write(line);
+                out.write('\n');
+            }
+
+            out.write(this.summary((System.nanoTime() - start) / 1e9));
+        }
+    }
+
+    /**
+     * @param seconds how long the analysis took
+     * @return the summary of every game analyzed so far, as comment lines
+     */
+    public String summary(final double seconds) {
+        final long          games = this.analyzed.sum();
+        final long          rated = this.rated();
+        final StringBuilder text  = new StringBuilder();
+
+        text.append(String.format("# %d games analyzed, %d skipped, %d unreadable in %.2f s%n", games, this.skipped.sum(), this.failed.sum(), seconds));
+        text.append(String.format("# mean efficiency %.3f over %d games with rows played%n", rated == 0 ? 0 : this.efficiency.sum() / rated, rated));
+        text.append("# grades");
+
+        for (int k = 0; k < GRADES.length(); ++k) {
+            text.append(' ').append(GRADES.charAt(k)).append('=').append(this.grades.get(k));
+        }
+
+        text.append(String.format("%n# best-guess cache: %d hits, %d misses, %d configurations%n",
+            this.memoHits.sum(), this.memoMisses.sum(), this.configs.size()));
+
+        return text.toString();
+    }
+
+    /**
+     * @return the number of games graded
+     */
+    private long rated() {
+        long rated = 0;
+
+        for (int k = 0; k < GRADES.length(); ++k) {
+            rated += this.grades.get(k);
+        }
+
+        return rated;
+    }
+
+    /**
+     * Reads and analyzes one save file.
+     *
+     * @param save the save file
+     * @return the report line of the game, or empty if its configuration is too large to analyze
+     * @throws IOException if the file cannot be read
+     */
+    private Optional<String> analyzeFile(final Path save) throws IOException {
+        final byte[]     bytes = Files.readAllBytes(save);
+        final List<Byte> data  = new ArrayList<>(bytes.length);
+
+        for (final byte b : bytes) {
+            data.add(b);
+        }
+
+        return this.analyze(save.getFileName().toString(), GameState.fromByteList(data));
+    }
+
+    /**
+     * Finds the expected number of candidates left by the best guess, or reuses the result found by an
+     * earlier game that played the same rows.
+     *
+     * @param config the {@link Config} of the game
+     * @param played the rows played so far, as "guess/response," pairs
+     * @param candidates the candidates, or null while every code is one
+     * @param sample the candidates the guesses are scored against
+     * @param count the number of candidates
+     * @return the least expected number of candidates left
+     */
+    private double bestRemaining(final Config config, final String played, final int[] candidates, final int[] sample, final int count) {
+        final Double known = config.best.get(played);
+
+        if (known != null) {
+            this.memoHits.increment();
+            return known;
+        }
+
+        this.memoMisses.increment();
+
+        final CodeSpace space = config.space;
+        final int[]     sizes = new int[space.buckets()];
+        double          best  = Double.MAX_VALUE;
+
+        // Before the first row every code is equivalent to a canonical one
+        if (candidates == null) {
+            for (final int guess : config.openings) {
+                best = Math.min(best, expectedRemaining(space, sample, count, guess, sizes));
+            }
+        } else if ((long) space.size * sample.length <= MAX_WORK) {
+            for (int guess = 0; guess < space.size; ++guess) {
+                best = Math.min(best, expectedRemaining(space, sample, count, guess, sizes));
+            }
+        } else {
+            final int tried = (int) Math.min(candidates.length, MAX_WORK / sample.length);
+
+            for (int k = 0; k < tried; ++k) {
+                best = Math.min(best, expectedRemaining(space, sample, count, candidates[(int) ((long) k * candidates.length / tried)], sizes));
+            }
+
+            for (final int guess : config.openings) {
+                best = Math.min(best, expectedRemaining(space, sample, count, guess, sizes));
+            }
+        }
+
+        if (config.best.size() < MAX_MEMO) {
+            config.best.put(played, best);
+        }
+
+        return best;
+    }
+
+    /**
+     * Computes how many candidates a guess is expected to leave, over a secret drawn uniformly from the
+     * candidates. A secret the guess matches exactly leaves none.
+     *
+     * @param space the {@link CodeSpace} of the game
+     * @param sample the candidates the guess is scored against
+     * @param count the number of candidates the sample stands for
+     * @param guess the code index of the guess
+     * @param sizes an array of {@link CodeSpace#buckets()} counts to work in
+     * @return the expected number of candidates left
+     */
+    private static double expectedRemaining(final CodeSpace space, final int[] sample, final int count, final int guess,
+            final int[] sizes) {
+        Arrays.fill(sizes, 0);
+
+        for (final int secret : sample) {
+            ++sizes[space.score(secret, guess)];
+        }
+
+        sizes[space.winningBucket()] = 0;
+
+        long squares = 0;
+
+        for (final int size : sizes) {
+            squares += (long) size * size;
+        }
+
+        // Each sampled secret stands for (count / sample) candidates, as does each code of its bucket
+        return (double) count * squares / ((double) sample.length * sample.length);
+    }
+
+    /**
+     * @param candidates the candidates, or null while every code is one
+     * @param count the number of candidates
+     * @return at most {@link SaveAnalyzer#SECRET_SAMPLE} candidates, spread evenly
+     */
+    private static int[] sample(final int[] candidates, final int count) {
+        final int[] sample = new int[Math.min(count, SECRET_SAMPLE)];
+
+        for (int k = 0; k < sample.length; ++k) {
+            final int index = (int) ((long) k * count / sample.length);
+            sample[k] = candidates == null ? index : candidates[index];
+        }
+
+        return sample;
+    }
+
+    /**
+     * @param space the {@link CodeSpace} of the game
+     * @param candidates the candidates, or null while every code is one
+     * @param guess the code index of the guess played
+     * @param response the feedback bucket it received
+     * @return the candidates that would have given the same feedback, in ascending order
+     */
+    private static int[] filter(final CodeSpace space, final int[] candidates, final int guess, final int response) {
+        final int   total = candidates == null ? space.size : candidates.length;
+        final int[] kept  = new int[total];
+        int         found = 0;
+
+        for (int k = 0; k < total; ++k) {
+            final int code = candidates == null ? k : candidates[k];
+
+            if (space.score(code, guess) == response) {
+                kept[found++] = code;
+            }
+        }
+
+        return Arrays.copyOf(kept, found);
+    }
+
+    /**
+     * @param game a {@link GameState}
+     * @return the number of codes of its configuration, or any number above {@link SaveAnalyzer#MAX_SPACE}
+     *         if there are more
+     */
+    private static long codes(final GameState game) {
+        long total = 1;
+
+        for (int j = 0; j < game.slots && total <= MAX_SPACE; ++j) {
+            total *= game.distinct ? game.colors - j : game.colors;
+        }
+
+        return total;
+    }
+
+    /**
+     * @param efficiency the mean efficiency of a game
+     * @return the index of its grade in {@link SaveAnalyzer#GRADES}
+     */
+    private static int gradeOf(final double efficiency) {
+        int grade = 0;
+
+        while (grade < THRESHOLDS.length && efficiency < THRESHOLDS[grade]) {
+            ++grade;
+        }
+
+        return grade;
+    }
+
+    /**
+     * Analyzes a directory of save files and prints the summary.
+     *
+     * @param args the save directory, the report file and the number of worker threads (all optional)
+     * @throws Exception if the directory cannot be read or the report cannot be written
+     */
+    public static void main(final String[] args) throws Exception {
+        final Path directory = Paths.get(args.length > 0 ? args[0] : DEFAULT_DIRECTORY);
+        final Path report    = Paths.get(args.length > 1 ? args[1] : DEFAULT_REPORT);
+        final int  threads   = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        final SaveAnalyzer analyzer = new SaveAnalyzer();
+        final long         start    = System.nanoTime();
+
+        analyzer.analyzeDirectory(directory, report, threads);
+
+        System.out.print(analyzer.summary((System.nanoTime() - start) / 1e9));
+        System.out.println("Wrote " + report);
+    }
+}
@@ -0,0 +1,518 @@
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Store for many {@link GameState} sessions with a bounded amount of heap. Recently used sessions are kept
+ * as objects; once their estimated heap usage exceeds the cap, or a session has been idle longer than the
+ * time-to-live, the least recently used sessions are encoded with {@link GameState#toByteList()} and spilled
+ * to a local file. A spilled session is read back and decoded transparently the next time it is used.
+ *
+ * Sessions must be used through {@link SessionStore#apply(long, Function)}, which holds the session's lock
+ * while the action runs so that a session is never spilled in the middle of a move. Hits, misses, evictions
+ * and rehydrations are counted, along with the time spent rehydrating.
+ *
+ * Reading a spilled session back and decoding it happens outside the store's lock, so a cold read only
+ * delays the requests for that session; concurrent requests for it wait on a per-session guard and find it
+ * in memory once the first one is done. A spilled session stays in the spill file until it has been decoded,
+ * so a failed read leaves it spilled rather than losing it. With a time-to-live, idle sessions are swept out
+ * periodically as well as whenever the store is used.
+ */
+public class SessionStore implements Closeable {
+    /**
+     * Minimum number of dead bytes in the spill file before it is compacted.
+     */
+    private static final long MIN_COMPACTION_BYTES = 1 << 20;
+
+    private final long maxHotBytes;
+    private final long ttlNanos;
+    private final Path spillPath;
+
+    private final LinkedHashMap<Long, Entry> hot         = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Long, long[]>          cold        = new HashMap<>();
+    private final Map<Long, Object>          rehydrating = new HashMap<>();
+
+    // Reads of the spill file hold the read lock; compaction, which moves records and swaps the channel,
+    // holds the write lock
+    private final ReadWriteLock spillLock = new ReentrantReadWriteLock();
+
+    private final Optional<ScheduledExecutorService> sweeper;
+
+    private FileChannel spill;
+    private long        spillLive = 0;
+    private long        spillDead = 0;
+    private long        hotBytes  = 0;
+
+    private long hits              = 0;
+    private long misses            = 0;
+    private long evictions         = 0;
+    private long rehydrations      = 0;
+    private long rehydrateNanos    = 0;
+    private long maxRehydrateNanos = 0;
+
+    /**
+     * Constructs a store spilling to the given file (which is created, or truncated if it exists).
+     *
+     * @param maxHotBytes the cap on the estimated heap usage of in-memory sessions
+     * @param ttlNanos how long a session may stay in memory without being used (0 for no limit)
+     * @param spillPath the file to spill sessions to
+     * @throws IOException if the spill file cannot be opened
+     */
+    public SessionStore(final long maxHotBytes, final long ttlNanos, final Path spillPath) throws IOException {
+        this.maxHotBytes = maxHotBytes;
+        this.ttlNanos    = ttlNanos;
+        this.spillPath   = spillPath;
+        this.spill       = openSpill(spillPath);
+
+        if (ttlNanos > 0) {
+            final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "mastermind-session-sweeper");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+            final long period = Math.max(ttlNanos / 2, TimeUnit.MILLISECONDS.toNanos(10));
+            sweeper.scheduleWithFixedDelay(this::evictIfNeeded, period, period, TimeUnit.NANOSECONDS);
+
+            this.sweeper = Optional.of(sweeper);
+        } else {
+            this.sweeper = Optional.empty();
+        }
+    }
+
+    /**
+     * Adds a session, evicting older sessions if necessary.
+     *
+     * @param id the id of the session
+     * @param gameState the session's {@link GameState}
+     */
+    public void put(final long id, final GameState gameState) {
+        synchronized (this) {
+            this.discard(id);
+
+            final Entry entry = new Entry(id, gameState);
+            hot.put(id, entry);
+            hotBytes += entry.bytes;
+        }
+
+        this.evictIfNeeded();
+    }
+
+    /**
+     * Runs an action on a session while holding the session's lock, rehydrating the session first if it
+     * was spilled.
+     *
+     * @param <R> the type of the action's result
+     * @param id the id of the session
+     * @param action the action to run
+     * @return the action's result, or an empty {@link Optional} if there is no such session
+     */
+    public <R> Optional<R> apply(final long id, final Function<GameState, R> action) {
+        while (true) {
+            final Optional<Entry> entry = this.lookup(id);
+
+            if (entry.isEmpty()) {
+                return Optional.empty();
+            }
+
+            final R result;
+
+            synchronized (entry.get()) {
+                // The entry may have been spilled between the lookup and taking its lock
+                if (entry.get().spilled) continue;
+
+                entry.get().lastUsed = System.nanoTime();
+                result = action.apply(entry.get().gameState);
+            }
+
+            // Evicting takes other sessions' locks, so it must not happen while holding this one's
+            this.evictIfNeeded();
+            return Optional.ofNullable(result);
+        }
+    }
+
+    /**
+     * Removes a session whether it is in memory or spilled.
+     *
+     * @param id the id of the session
+     * @return whether the session existed
+     */
+    public synchronized boolean remove(final long id) {
+        return this.discard(id);
+    }
+
+    /**
+     * @return the number of sessions held, in memory or spilled
+     */
+    public synchronized int size() {
+        return hot.size() + cold.size();
+    }
+
+    /**
+     * @return a one-line summary of the store's counters
+     */
+    @Override
+    public synchronized String toString() {
+        return "SessionStore[hot=" + hot.size() + " (" + hotBytes + " bytes), spilled=" + cold.size()
+            + " (" + spillLive + " bytes), hits=" + hits + ", misses=" + misses + ", evictions=" + evictions
+            + ", rehydrations=" + rehydrations + ", meanRehydrateUs=" + (rehydrations == 0 ? 0 : rehydrateNanos / rehydrations / 1000)
+            + ", maxRehydrateUs=" + (maxRehydrateNanos / 1000) + "]";
+    }
+
+    /**
+     * Closes and deletes the spill file. Spilled sessions are lost.
+     *
+     * @throws IOException if the file cannot be closed or deleted
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        this.sweeper.ifPresent(ScheduledExecutorService::shutdownNow);
+
+        spillLock.writeLock().lock();
+
+        try {
+            spill.close();
+            Files.deleteIfExists(spillPath);
+        } finally {
+            spillLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the in-memory entry of a session, rehydrating it from the spill file if necessary. Only the
+     * bookkeeping holds the store's lock; the read and the decoding hold the session's guard.
+     *
+     * @param id the id of the session
+     * @return the {@link Optional}<{@link Entry}> of the session
+     */
+    private Optional<Entry> lookup(final long id) {
+        final Object guard;
+
+        synchronized (this) {
+            final Entry entry = hot.get(id);
+
+            if (entry != null) {
+                ++hits;
+                return Optional.of(entry);
+            } else if (!cold.containsKey(id)) {
+                ++misses;
+                return Optional.empty();
+            }
+
+            guard = rehydrating.computeIfAbsent(id, key -> new Object());
+        }
+
+        synchronized (guard) {
+            try {
+                return this.rehydrate(id);
+            } finally {
+                synchronized (this) {
+                    rehydrating.remove(id, guard);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a spilled session back into memory, unless another thread already has. Must hold the session's
+     * guard (see {@link SessionStore#lookup(long)}) but not the store's lock.
+     *
+     * @param id the id of the session
+     * @return the {@link Optional}<{@link Entry}> of the session, or empty if it no longer exists or could
+     *         not be read (it then stays spilled)
+     */
+    private Optional<Entry> rehydrate(final long id) {
+        final long[] location;
+
+        synchronized (this) {
+            final Entry entry = hot.get(id);
+
+            if (entry != null) {
+                ++hits;
+                return Optional.of(entry);
+            }
+
+            location = cold.get(id);
+
+            if (location == null) {
+                ++misses;
+                return Optional.empty();
+            }
+        }
+
+        final long start = System.nanoTime();
+        final Entry rehydrated;
+
+        try {
+            final ByteBuffer buffer;
+
+            spillLock.readLock().lock();
+
+            try {
+                buffer = ByteBuffer.allocate((int) location[1]);
+                readFully(spill, buffer, location[0]);
+            } finally {
+                spillLock.readLock().unlock();
+            }
+
+            final List<Byte> data = new ArrayList<>(buffer.capacity());
+            for (final byte b : buffer.array()) {
+                data.add(b);
+            }
+
+            rehydrated = new Entry(id, GameState.fromByteList(data));
+        } catch (final IOException | IllegalArgumentException e) {
+            System.out.println("Failed to rehydrate session " + id + ": " + e.toString());
+            return Optional.empty();
+        }
+
+        synchronized (this) {
+            // The session may have been removed or replaced while it was being read
+            if (cold.get(id) != location) {
+                return Optional.ofNullable(hot.get(id));
+            }
+
+            cold.remove(id);
+            hot.put(id, rehydrated);
+            hotBytes  += rehydrated.bytes;
+            spillLive -= location[1];
+            spillDead += location[1];
+
+            final long elapsed = System.nanoTime() - start;
+            ++rehydrations;
+            rehydrateNanos += elapsed;
+            maxRehydrateNanos = Math.max(maxRehydrateNanos, elapsed);
+        }
+
+        return Optional.of(rehydrated);
+    }
+
+    /**
+     * Spills least recently used sessions until the heap cap is respected and no session has outlived
+     * the time-to-live.
+     */
+    private void evictIfNeeded() {
+        while (true) {
+            final Entry victim;
+
+            synchronized (this) {
+                if (hot.isEmpty()) return;
+
+                final Entry eldest = hot.values().iterator().next();
+                final boolean overCap  = hotBytes > maxHotBytes;
+                final boolean tooIdle  = ttlNanos > 0 && System.nanoTime() - eldest.lastUsed > ttlNanos;
+
+                if (!overCap && !tooIdle) return;
+
+                victim = eldest;
+            }
+
+            if (!this.spill(victim)) return;
+        }
+    }
+
+    /**
+     * Encodes a session and writes it to the spill file, taking the session's lock first so that no move
+     * is in progress.
+     *
+     * @param entry the entry to spill
+     * @return false if the spill file could not be written
+     */
+    private boolean spill(final Entry entry) {
+        synchronized (entry) {
+            if (entry.spilled) return true;
+
+            final List<Byte> data  = entry.gameState.toByteList();
+            final byte[]     bytes = new byte[data.size()];
+
+            for (int i = 0; i < bytes.length; ++i) {
+                bytes[i] = data.get(i);
+            }
+
+            synchronized (this) {
+                // The session may have been removed while it was being encoded
+                if (hot.get(entry.id) != entry) return true;
+
+                try {
+                    final long offset = spill.size();
+                    writeFully(spill, ByteBuffer.wrap(bytes), offset);
+
+                    cold.put(entry.id, new long[] { offset, bytes.length });
+                    spillLive += bytes.length;
+                } catch (final IOException e) {
+                    System.out.println("Failed to spill session " + entry.id + ": " + e.toString());
+                    return false;
+                }
+
+                hot.remove(entry.id);
+                hotBytes -= entry.bytes;
+                entry.spilled = true;
+                ++evictions;
+
+                this.compactIfNeeded();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Removes a session from memory and from the spill file. Must hold the store's lock.
+     *
+     * @param id the id of the session
+     * @return whether the session existed
+     */
+    private boolean discard(final long id) {
+        final Entry entry = hot.remove(id);
+
+        if (entry != null) {
+            hotBytes -= entry.bytes;
+            return true;
+        }
+
+        final long[] location = cold.remove(id);
+
+        if (location != null) {
+            spillLive -= location[1];
+            spillDead += location[1];
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Rewrites the spill file without its dead records once they outweigh the live ones. Must hold the
+     * store's lock.
+     */
+    private void compactIfNeeded() {
+        if (spillDead < MIN_COMPACTION_BYTES || spillDead < spillLive) {
+            return;
+        }
+
+        final Path compacted = spillPath.resolveSibling(spillPath.getFileName() + ".compact");
+
+        spillLock.writeLock().lock();
+
+        try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long offset = 0;
+
+            for (final Iterator<long[]> it = cold.values().iterator(); it.hasNext(); ) {
+                final long[]     location = it.next();
+                final ByteBuffer buffer   = ByteBuffer.allocate((int) location[1]);
+
+                readFully(spill, buffer, location[0]);
+                buffer.flip();
+                writeFully(out, buffer, offset);
+
+                location[0] = offset;
+                offset += location[1];
+            }
+
+            spill.close();
+            Files.move(compacted, spillPath, StandardCopyOption.REPLACE_EXISTING);
+
+            this.spill     = FileChannel.open(spillPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.spillDead = 0;
+        } catch (final IOException e) {
+            System.out.println("Failed to compact spill file: " + e.toString());
+        } finally {
+            spillLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Reads until the buffer is full, as a single read may return fewer bytes.
+     *
+     * @param channel the file to read from
+     * @param buffer the buffer to fill
+     * @param position the position in the file of the buffer's first byte
+     * @throws IOException if reading fails or the file ends first
+     */
+    private static void readFully(final FileChannel channel, final ByteBuffer buffer, final long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Spill file ends at " + (position + buffer.position()));
+            }
+        }
+    }
+
+    /**
+     * Writes the whole buffer, as a single write may take fewer bytes.
+     *
+     * @param channel the file to write to
+     * @param buffer the bytes to write
+     * @param position the position in the file of the buffer's first byte
+     * @throws IOException if writing fails
+     */
+    private static void writeFully(final FileChannel channel, final ByteBuffer buffer, final long position) throws IOException {
+        final int first = buffer.position();
+
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position() - first);
+        }
+    }
+
+    /**
+     * @param path the spill file
+     * @return the opened, empty spill file
+     * @throws IOException if the file cannot be opened
+     */
+    private static FileChannel openSpill(final Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Roughly estimates the heap used by a {@link GameState}: every slot of every row (and the solution)
+     * holds an {@link Optional} and a {@link Peg}, every row an {@link ArrayList}, and the published
+     * {@link GameSnapshot} one long per row.
+     *
+     * @param gameState the {@link GameState} to measure
+     * @return the estimated number of bytes
+     */
+    public static long estimateBytes(final GameState gameState) {
+        return 128 + (gameState.maxRows + 1) * (72 + gameState.slots * 40L);
+    }
+
+    /**
+     * Private class for an in-memory session.
+     */
+    private static class Entry {
+        private final long      id;
+        private final GameState gameState;
+        private final long      bytes;
+
+        private long    lastUsed = System.nanoTime();
+        private boolean spilled  = false;
+
+        /**
+         * @param id the id of the session
+         * @param gameState the session's {@link GameState}
+         */
+        public Entry(final long id, final GameState gameState) {
+            this.id        = id;
+            this.gameState = gameState;
+            this.bytes     = estimateBytes(gameState);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free board for a game that many threads play at once (cooperative or spectator sessions). Each row
+ * is a single word of an {@link AtomicLongArray}, holding the row's pegs packed as in {@link GameSnapshot}
+ * plus two flags, and every edit is a compare-and-set on that word alone. Moves on different rows never
+ * contend, and moves on the same row only retry when another move on that row landed first.
+ *
+ * A row goes through three states, in order: closed, editable, and committed. Committing the full
+ * editable row ({@link SharedGameState#nextRowIfPossible()}) is a single compare-and-set that fails if a
+ * peg was changed concurrently, so a row is only ever committed with the pegs it was seen to be full with.
+ * The next row is opened right after, and any thread that finds a closed row following a committed one
+ * opens it on the committer's behalf, so the commit takes effect as a whole at its compare-and-set.
+ */
+public class SharedGameState {
+    private static final long EDITABLE  = 1L << 62;
+    private static final long COMMITTED = 1L << 61;
+    private static final long FLAGS     = EDITABLE | COMMITTED;
+
+    public final int     slots;
+    public final int     colors;
+    public final int     maxRows;
+    public final boolean distinct;
+
+    private final long            solution;
+    private final AtomicLongArray rows;
+
+    /**
+     * Constructs a shared board continuing the given game, which must be compact enough for a row and its
+     * flags to share a long (see {@link GameSnapshot#isCompact(int, int)}).
+     *
+     * @param initial the {@link GameSnapshot} to start from
+     */
+    public SharedGameState(final GameSnapshot initial) {
+        if (!GameSnapshot.isCompact(initial.slots, initial.colors)) {
+            throw new IllegalArgumentException("Too many slots or colors for a shared board: " + initial.slots + " slots, " + initial.colors + " colors");
+        }
+
+        this.slots    = initial.slots;
+        this.colors   = initial.colors;
+        this.maxRows  = initial.maxRows;
+        this.distinct = initial.distinct;
+        this.solution = GameSnapshot.pack(initial.solutionPegs());
+        this.rows     = new AtomicLongArray(initial.maxRows);
+
+        final int editable = initial.getEditableRow().orElse(initial.maxRows);
+
+        for (int i = 0; i < maxRows; ++i) {
+            final long flag = i < editable ? COMMITTED : i == editable ? EDITABLE : 0;
+            rows.set(i, GameSnapshot.pack(initial.rowPegs(i)) | flag);
+        }
+    }
+
+    /**
+     * Sets the {@link Peg} at the specified location, if the row is the editable one.
+     *
+     * @param i the ith row
+     * @param j the jth column
+     * @param peg the peg to put in this location
+     * @return whether the set was successful
+     */
+    public boolean setPeg(final int i, final int j, final Peg peg) {
+        return this.update(i, j, peg.toByte());
+    }
+
+    /**
+     * Removes any {@link Peg} at the given location, if the row is the editable one.
+     *
+     * @param i the ith row
+     * @param j the jth column
+     * @return whether the removal was successful
+     */
+    public boolean clearPeg(final int i, final int j) {
+        return this.update(i, j, (byte) 0);
+    }
+
+    /**
+     * Commits the editable row if it is full and opens the next one. Fails if a concurrent edit left the
+     * row no longer full.
+     *
+     * @return whether a row was committed
+     */
+    public boolean nextRowIfPossible() {
+        while (true) {
+            final Optional<Integer> editable = this.getEditableRow();
+
+            if (editable.isEmpty()) {
+                return false;
+            }
+
+            final int  i    = editable.get();
+            final long word = rows.get(i);
+
+            if ((word & EDITABLE) == 0) continue;
+            if (!this.isFull(word)) return false;
+
+            if (rows.compareAndSet(i, word, (word & ~FLAGS) | COMMITTED)) {
+                this.openIfPending(i + 1);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return the index of the row currently accepting edits (empty once every row is used up)
+     */
+    public Optional<Integer> getEditableRow() {
+        for (int i = 0; i < maxRows; ++i) {
+            final long word = rows.get(i);
+
+            if ((word & EDITABLE) != 0) {
+                return Optional.of(i);
+            } else if ((word & COMMITTED) == 0) {
+                // Closed: either the previous row was just committed and this one is about to open, or
+                // another thread already moved on past it
+                if (this.openIfPending(i)) return Optional.of(i);
+                if ((rows.get(i) & COMMITTED) == 0) return Optional.empty();
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Takes a consistent {@link GameSnapshot} of the board without locking. Rows are read from the last to
+     * the first: a row can only change after every row above it is committed (and therefore final), so the
+     * rows read later can never be newer than the ones read earlier.
+     *
+     * @return the {@link GameSnapshot}
+     */
+    public GameSnapshot snapshot() {
+        final long[] packed    = new long[maxRows];
+        int          editable  = -1;
+        long         nextFlags = COMMITTED;
+
+        for (int i = maxRows - 1; i >= 0; --i) {
+            final long word = rows.get(i);
+            packed[i] = word & ~FLAGS;
+
+            if ((word & EDITABLE) != 0) {
+                editable = i;
+            } else if ((word & COMMITTED) != 0 && editable < 0 && nextFlags == 0) {
+                // The row below was closed when read but is logically open once this one is committed
+                editable = i + 1;
+            }
+
+            nextFlags = word & FLAGS;
+        }
+
+        return GameSnapshot.fromPacked(slots, colors, distinct, solution, packed, editable);
+    }
+
+    /**
+     * Replaces one slot of the editable row with a compare-and-set, retrying while other edits to the same
+     * row land first. In the no-repeat variant the color must not be in another slot of the word that is
+     * replaced, so concurrent moves can never leave a repeat behind.
+     *
+     * @param i the ith row
+     * @param j the jth column
+     * @param pegByte the {@link Peg} byte to place (0 to clear the slot)
+     * @return whether the row was editable
+     */
+    private boolean update(final int i, final int j, final byte pegByte) {
+        if (i < 0 || i >= maxRows || j < 0 || j >= slots) {
+            return false;
+        }
+
+        while (true) {
+            final long word = rows.get(i);
+
+            if ((word & EDITABLE) == 0) {
+                if (this.openIfPending(i)) continue;
+                return false;
+            }
+
+            if (this.distinct && pegByte != 0 && this.repeats(word, j, pegByte)) {
+                return false;
+            }
+
+            if (rows.compareAndSet(i, word, GameSnapshot.withSlot(word, j, pegByte))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Opens a closed row whose previous row has been committed. Safe to call from any thread; only the
+     * first caller's compare-and-set takes effect.
+     *
+     * @param i the row to open
+     * @return whether the row is now editable
+     */
+    private boolean openIfPending(final int i) {
+        if (i <= 0 || i >= maxRows || (rows.get(i - 1) & COMMITTED) == 0) {
+            return i == 0 && (rows.get(0) & EDITABLE) != 0;
+        }
+
+        final long word = rows.get(i);
+
+        if ((word & FLAGS) == 0) {
+            rows.compareAndSet(i, word, word | EDITABLE);
+        }
+
+        return (rows.get(i) & EDITABLE) != 0;
+    }
+
+    /**
+     * @param word the word of a row
+     * @param j the jth column, which is ignored
+     * @param pegByte the {@link Peg} byte to look for
+     * @return whether another slot of the row holds the color
+     */
+    private boolean repeats(final long word, final int j, final byte pegByte) {
+        for (int k = 0; k < slots; ++k) {
+            if (k != j && GameSnapshot.slot(word, k) == pegByte) return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * @param word the word of a row
+     * @return whether every slot of the row holds a {@link Peg}
+     */
+    private boolean isFull(final long word) {
+        for (int j = 0; j < slots; ++j) {
+            if (GameSnapshot.slot(word, j) == 0) return false;
+        }
+
+        return true;
+    }
+}
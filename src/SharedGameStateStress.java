@@ -0,0 +1,242 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Stress check for {@link SharedGameState}. Many threads hammer one board with random sets, clears and
+ * commits while checker threads take snapshots and verify that the editable-row invariants always hold:
+ *
+ *      every row above the editable row is full,
+ *      every row below the editable row is empty,
+ *      between two snapshots of the same board the editable row never moves up,
+ *      and rows above it never change.
+ *
+ * Whenever a board runs out of rows it is replaced by a fresh one. The same workload is then run against a
+ * {@link GameState} guarded by a single lock for comparison. The run stops at the first violation, and the
+ * program then exits with status 1, so the check can gate a build; it exits with status 0 only if every
+ * snapshot held.
+ *
+ * Usage: java SharedGameStateStress [threads] [seconds]
+ */
+public class SharedGameStateStress {
+    private static final int SLOTS  = 4;
+    private static final int COLORS = 6;
+    private static final int ROWS   = 16;
+
+    private static final AtomicLong              VIOLATIONS = new AtomicLong();
+    private static final AtomicReference<String> FIRST      = new AtomicReference<>();
+
+    /**
+     * Command line entry point.
+     *
+     * @param args the number of writer threads and the duration of each run (both optional)
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    public static void main(final String[] args) throws InterruptedException {
+        final int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        final int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        final long shared = runShared(threads, seconds);
+
+        if (VIOLATIONS.get() > 0) {
+            System.out.println("Invariant violated " + VIOLATIONS.get() + " times, first: " + FIRST.get());
+            System.exit(1);
+        }
+
+        final long locked = runLocked(threads, seconds);
+
+        System.out.println("Threads:     " + threads);
+        System.out.println("Lock-free:   " + (shared / seconds) + " moves per second");
+        System.out.println("Locked:      " + (locked / seconds) + " moves per second");
+        System.out.println("No invariant violations");
+        System.exit(0);
+    }
+
+    /**
+     * @param threads the number of writer threads
+     * @param seconds how long to run
+     * @return the number of moves applied
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    private static long runShared(final int threads, final int seconds) throws InterruptedException {
+        final AtomicReference<SharedGameState> board    = new AtomicReference<>(newBoard());
+        final AtomicLong                       moves    = new AtomicLong();
+        final long                             deadline = System.nanoTime() + seconds * 1_000_000_000L;
+
+        final List<Thread> workers = new ArrayList<>();
+
+        for (int t = 0; t < threads; ++t) {
+            workers.add(new Thread(() -> {
+                final ThreadLocalRandom random = ThreadLocalRandom.current();
+                long count = 0;
+
+                while (System.nanoTime() < deadline && VIOLATIONS.get() == 0) {
+                    final SharedGameState   current  = board.get();
+                    final Optional<Integer> editable = current.getEditableRow();
+
+                    if (editable.isEmpty()) {
+                        check(current.snapshot(), Optional.empty());
+                        board.compareAndSet(current, newBoard());
+                        continue;
+                    }
+
+                    final int i = editable.get();
+                    final int j = random.nextInt(SLOTS);
+                    final int r = random.nextInt(10);
+
+                    if (r < 6) {
+                        current.setPeg(i, j, new Peg(Peg.PegColor.values()[random.nextInt(COLORS)]));
+                    } else if (r < 7) {
+                        current.clearPeg(i, j);
+                    } else {
+                        current.nextRowIfPossible();
+                    }
+
+                    ++count;
+                }
+
+                moves.addAndGet(count);
+            }, "stress-writer"));
+        }
+
+        for (int t = 0; t < Math.max(1, threads / 4); ++t) {
+            workers.add(new Thread(() -> {
+                SharedGameState        last         = board.get();
+                Optional<GameSnapshot> lastSnapshot = Optional.empty();
+
+                while (System.nanoTime() < deadline && VIOLATIONS.get() == 0) {
+                    final SharedGameState current = board.get();
+
+                    if (current != last) {
+                        last         = current;
+                        lastSnapshot = Optional.empty();
+                    }
+
+                    final GameSnapshot snapshot = current.snapshot();
+                    check(snapshot, lastSnapshot);
+                    lastSnapshot = Optional.of(snapshot);
+                }
+            }, "stress-checker"));
+        }
+
+        for (final Thread worker : workers) worker.start();
+        for (final Thread worker : workers) worker.join();
+
+        return moves.get();
+    }
+
+    /**
+     * @param threads the number of writer threads
+     * @param seconds how long to run
+     * @return the number of moves applied
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    private static long runLocked(final int threads, final int seconds) throws InterruptedException {
+        final Object                     lock     = new Object();
+        final AtomicReference<GameState> board    = new AtomicReference<>(newGame());
+        final AtomicLong                 moves    = new AtomicLong();
+        final long                       deadline = System.nanoTime() + seconds * 1_000_000_000L;
+
+        final List<Thread> workers = new ArrayList<>();
+
+        for (int t = 0; t < threads; ++t) {
+            workers.add(new Thread(() -> {
+                final ThreadLocalRandom random = ThreadLocalRandom.current();
+                long count = 0;
+
+                while (System.nanoTime() < deadline) {
+                    final int j = random.nextInt(SLOTS);
+                    final int r = random.nextInt(10);
+
+                    synchronized (lock) {
+                        final GameState         current  = board.get();
+                        final Optional<Integer> editable = current.getEditableRow();
+
+                        if (editable.isEmpty() || current.isRowFull(ROWS - 1)) {
+                            board.set(newGame());
+                            continue;
+                        }
+
+                        if (r < 6) {
+                            current.setPeg(editable.get(), j, new Peg(Peg.PegColor.values()[random.nextInt(COLORS)]));
+                        } else if (r < 7) {
+                            current.clearPeg(editable.get(), j);
+                        } else {
+                            current.nextRowIfPossible();
+                        }
+                    }
+
+                    ++count;
+                }
+
+                moves.addAndGet(count);
+            }, "stress-locked-writer"));
+        }
+
+        for (final Thread worker : workers) worker.start();
+        for (final Thread worker : workers) worker.join();
+
+        return moves.get();
+    }
+
+    /**
+     * Verifies the editable-row invariants of a snapshot, and its progress since an earlier snapshot of the
+     * same board. Records any violation, which stops the run.
+     *
+     * @param snapshot the {@link GameSnapshot} to check
+     * @param previous an earlier {@link GameSnapshot} of the same board, if any
+     */
+    private static void check(final GameSnapshot snapshot, final Optional<GameSnapshot> previous) {
+        final int editable = snapshot.getEditableRow().orElse(snapshot.maxRows);
+
+        for (int i = 0; i < snapshot.maxRows; ++i) {
+            final boolean full  = snapshot.isRowFull(i);
+            final boolean empty = snapshot.rowPegs(i).length > 0 && GameSnapshot.pack(snapshot.rowPegs(i)) == 0;
+
+            if (i < editable && !full) {
+                fail("row " + i + " above editable row " + editable + " is not full");
+            } else if (i > editable && !empty) {
+                fail("row " + i + " below editable row " + editable + " is not empty");
+            }
+        }
+
+        previous.ifPresent(before -> {
+            final int editableBefore = before.getEditableRow().orElse(before.maxRows);
+
+            if (editable < editableBefore) {
+                fail("editable row moved up from " + editableBefore + " to " + editable);
+            }
+
+            for (int i = 0; i < editableBefore; ++i) {
+                if (GameSnapshot.pack(before.rowPegs(i)) != GameSnapshot.pack(snapshot.rowPegs(i))) {
+                    fail("committed row " + i + " changed");
+                }
+            }
+        });
+    }
+
+    /**
+     * @param message the violation
+     */
+    private static void fail(final String message) {
+        VIOLATIONS.incrementAndGet();
+        FIRST.compareAndSet(null, message);
+    }
+
+    /**
+     * @return a fresh {@link GameState} with the stress dimensions
+     */
+    private static GameState newGame() {
+        return new GameState(SLOTS, COLORS, ROWS, GameState.randomSolution(SLOTS, COLORS));
+    }
+
+    /**
+     * @return a fresh {@link SharedGameState} with the stress dimensions
+     */
+    private static SharedGameState newBoard() {
+        return new SharedGameState(newGame().snapshot());
+    }
+}
@@ -0,0 +1,306 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Coordinator that scores a whole {@link CodeSpace} across several {@link SolverWorker} processes, for
+ * configurations (such as 10 slots and 8 colors) too large to analyze in one process. The space is split
+ * into shards of consecutive code indices which the workers pull from a shared queue, so faster workers
+ * take on more of them. Each worker returns the partition histograms of its shard and the coordinator adds
+ * them up. If a worker dies or returns garbage, its shard goes back on the queue for the others.
+ *
+ * By default every canonical first guess (see {@link CodeSpace#canonicalGuesses()}) is scored, which
+ * ranks every first guess there is. Played rows narrow the analysis to the codes still consistent with
+ * them, and as they break the symmetry between colors and slots that canonical guesses rely on, every
+ * code of the space is then scored as a guess.
+ *
+ * Usage: java SolverCluster slots colors workers [rows]
+ *
+ * where workers is either a number of local worker processes to start, or a comma-separated list of
+ * host:port addresses of running workers, and rows is in the format of
+ * {@link SolverWorker#parseRows(CodeSpace, String)}.
+ */
+public class SolverCluster {
+    private static final int  MIN_SHARD             = 1 << 12;
+    private static final int  MAX_SHARD             = 1 << 24;
+    private static final int  SHARDS_PER_WORKER     = 16;
+    private static final long PROGRESS_MILLIS       = 2000;
+    private static final int  WORKER_TIMEOUT_MILLIS = 10 * 60 * 1000;
+
+    private final CodeSpace space;
+    private final String    rows;
+    private final int[]     guesses;
+
+    private final AtomicLong scoredCodes = new AtomicLong();
+
+    /**
+     * @param space the {@link CodeSpace} to score
+     * @param rows the played rows, in the format of {@link SolverWorker#parseRows(CodeSpace, String)}
+     * @param guesses the guesses to score
+     */
+    public SolverCluster(final CodeSpace space, final String rows, final int[] guesses) {
+        this.space   = space;
+        this.rows    = rows;
+        this.guesses = guesses;
+    }
+
+    /**
+     * Scores the whole space on the given workers, printing progress as it goes.
+     *
+     * @param workers the addresses of the {@link SolverWorker}s
+     * @return the consistent count followed by the histograms, as in
+     *         {@link SolverWorker#score(FeedbackConstraints, int[], int, int)}
+     * @throws IOException if every worker failed before the work was done
+     * @throws InterruptedException if interrupted while waiting for the workers
+     */
+    public long[] run(final List<InetSocketAddress> workers) throws IOException, InterruptedException {
+        final int shardSize = (int) Math.max(MIN_SHARD, Math.min(MAX_SHARD, (long) space.size / (workers.size() * SHARDS_PER_WORKER)));
+
+        final BlockingQueue<int[]> pending = new LinkedBlockingQueue<>();
+        for (long from = 0; from < space.size; from += shardSize) {
+            pending.add(new int[] { (int) from, (int) Math.min(space.size, from + shardSize) });
+        }
+
+        final long[]         result = new long[1 + guesses.length * space.buckets()];
+        final CountDownLatch done   = new CountDownLatch(pending.size());
+        final AtomicInteger  alive  = new AtomicInteger(workers.size());
+        final int            shards = pending.size();
+
+        for (final InetSocketAddress address : workers) {
+            final Thread thread = new Thread(() -> this.drive(address, pending, done, result, alive), "solver-cluster-" + address);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        final long start = System.nanoTime();
+
+        while (!done.await(PROGRESS_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (alive.get() == 0) {
+                throw new IOException("Every worker failed with " + done.getCount() + " shards left");
+            }
+
+            final double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.println("Shards " + (shards - done.getCount()) + "/" + shards + ", " + alive.get() + " workers, "
+                + (long) (scoredCodes.get() / seconds) + " codes per second");
+        }
+
+        final double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println("Scored " + space.size + " codes against " + guesses.length + " guesses in "
+            + String.format("%.1f", seconds) + " s (" + (long) (space.size / seconds) + " codes per second)");
+
+        return result;
+    }
+
+    /**
+     * Feeds shards to one worker until the work is done or the worker fails. A failed shard is put back
+     * on the queue.
+     *
+     * @param address the address of the worker
+     * @param pending the shards not yet scored
+     * @param done counted down once per finished shard
+     * @param result the running totals
+     * @param alive the number of workers still running
+     */
+    private void drive(final InetSocketAddress address, final BlockingQueue<int[]> pending, final CountDownLatch done,
+            final long[] result, final AtomicInteger alive) {
+        final String guessList = Arrays.stream(guesses).mapToObj(Integer::toString).collect(Collectors.joining(","));
+
+        int[] shard = null;
+
+        try (Socket socket = new Socket()) {
+            socket.connect(address, WORKER_TIMEOUT_MILLIS);
+            socket.setSoTimeout(WORKER_TIMEOUT_MILLIS);
+            socket.setTcpNoDelay(true);
+
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            final BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII));
+
+            while (done.getCount() > 0) {
+                // Shards are only finished once their replies arrive, so keep polling while others are out
+                shard = pending.poll(100, TimeUnit.MILLISECONDS);
+                if (shard == null) continue;
+
+                writer.write("SCORE " + space.slots + " " + space.colors + " " + shard[0] + " " + shard[1] + " " + guessList + " " + rows);
+                writer.write('\n');
+                writer.flush();
+
+                final String reply = reader.readLine();
+
+                if (reply == null || !reply.startsWith("OK ")) {
+                    throw new IOException("Unexpected reply: " + reply);
+                }
+
+                final long[] partial = SolverWorker.parseResult(reply.substring(3), guesses.length, space.buckets());
+
+                synchronized (result) {
+                    for (int i = 0; i < result.length; ++i) {
+                        result[i] += partial[i];
+                    }
+                }
+
+                scoredCodes.addAndGet(shard[1] - shard[0]);
+                shard = null;
+                done.countDown();
+            }
+
+            writer.write("QUIT\n");
+            writer.flush();
+        } catch (final IOException | RuntimeException | InterruptedException e) {
+            System.out.println("Worker " + address + " failed: " + e.toString());
+
+            if (shard != null) {
+                pending.add(shard);
+            }
+
+            alive.decrementAndGet();
+        }
+    }
+
+    /**
+     * Starts worker processes on this machine with the same class path as this one.
+     *
+     * @param count the number of workers to start
+     * @param processes the list receiving the started {@link Process}es
+     * @return the addresses of the workers
+     * @throws IOException if a worker fails to start
+     */
+    public static List<InetSocketAddress> startLocalWorkers(final int count, final List<Process> processes) throws IOException {
+        final String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        final List<InetSocketAddress> addresses = new ArrayList<>();
+
+        for (int i = 0; i < count; ++i) {
+            final Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), "SolverWorker", "0")
+                .redirectErrorStream(true)
+                .start();
+
+            processes.add(process);
+
+            final BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.US_ASCII));
+            final String         line   = output.readLine();
+
+            if (line == null || !line.startsWith("SolverWorker listening on port ")) {
+                throw new IOException("Worker failed to start: " + line);
+            }
+
+            addresses.add(new InetSocketAddress("localhost", Integer.parseInt(line.substring(line.lastIndexOf(' ') + 1))));
+
+            // Keep draining the worker's output so that it never blocks on a full pipe
+            final Thread drain = new Thread(() -> output.lines().forEach(l -> System.out.println("[worker " + process.pid() + "] " + l)));
+            drain.setDaemon(true);
+            drain.start();
+        }
+
+        return addresses;
+    }
+
+    /**
+     * @param space the {@link CodeSpace} of the code
+     * @param code the code index
+     * @return the code written with {@link Peg.PegColor} keys
+     */
+    private static String format(final CodeSpace space, final int code) {
+        final StringBuilder builder = new StringBuilder();
+
+        for (final byte b : space.pegsOf(code)) {
+            builder.append(Peg.PegColor.values()[b - 1].key);
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Command line entry point.
+     *
+     * @param args slots, colors, workers, and optionally the played rows
+     * @throws Exception if the workers cannot be started or all of them fail
+     */
+    public static void main(final String[] args) throws Exception {
+        if (args.length < 3) {
+            System.out.println("Usage: java SolverCluster slots colors (worker-count | host:port,...) [rows]");
+            return;
+        }
+
+        final CodeSpace space   = CodeSpace.of(Integer.parseInt(args[0]), Integer.parseInt(args[1]));
+        final String    rows    = args.length > 3 ? args[3] : "-";
+
+        // Fail early on malformed rows rather than in every worker
+        SolverWorker.parseRows(space, rows);
+
+        if (!"-".equals(rows) && (long) space.size * space.buckets() >= Integer.MAX_VALUE) {
+            System.out.println("Too many guesses to rank after played rows: " + space.size + " codes");
+            return;
+        }
+
+        final int[] guesses = "-".equals(rows) ? space.canonicalGuesses() : IntStream.range(0, space.size).toArray();
+
+        final List<Process> processes = new ArrayList<>();
+
+        try {
+            final List<InetSocketAddress> workers;
+
+            if (args[2].contains(":")) {
+                workers = Arrays.stream(args[2].split(","))
+                    .map(address -> new InetSocketAddress(address.substring(0, address.lastIndexOf(':')),
+                        Integer.parseInt(address.substring(address.lastIndexOf(':') + 1))))
+                    .collect(Collectors.toList());
+            } else {
+                workers = startLocalWorkers(Integer.parseInt(args[2]), processes);
+            }
+
+            final long[] result  = new SolverCluster(space, rows, guesses).run(workers);
+            final int    buckets = space.buckets();
+            final long   count   = result[0];
+
+            System.out.println("Consistent codes: " + count);
+            System.out.println("Guess        Parts  Largest    Expected");
+
+            IntStream.range(0, guesses.length).boxed()
+                .sorted(Comparator.comparingDouble(g -> expectedSize(result, g, buckets, count)))
+                .forEach(g -> {
+                    final long[] histogram = Arrays.copyOfRange(result, 1 + g * buckets, 1 + (g + 1) * buckets);
+
+                    System.out.println(String.format("%-12s %5d %8d %11.2f", format(space, guesses[g]),
+                        Arrays.stream(histogram).filter(n -> n > 0).count(), Arrays.stream(histogram).max().orElse(0),
+                        expectedSize(result, g, buckets, count)));
+                });
+        } finally {
+            processes.forEach(Process::destroy);
+        }
+    }
+
+    /**
+     * @param result the merged result
+     * @param g the guess
+     * @param buckets the number of buckets per guess
+     * @param count the number of consistent codes
+     * @return the expected number of codes left after playing the guess
+     */
+    private static double expectedSize(final long[] result, final int g, final int buckets, final long count) {
+        double sum = 0;
+
+        for (int b = 0; b < buckets; ++b) {
+            final double n = result[1 + g * buckets + b];
+            sum += n * n;
+        }
+
+        return count == 0 ? 0 : sum / count;
+    }
+}
@@ -0,0 +1,288 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+/**
+ * Worker process of the {@link SolverCluster}. Scores slices of a {@link CodeSpace} on request: for a
+ * range of code indices and a list of guesses, it counts how the codes in the range that are consistent
+ * with the given played rows split into feedback buckets under each guess. The range is scored in parallel
+ * on every core. Requests are single lines, as with the {@link GameServer}:
+ *
+ *      SCORE slots colors from to guesses rows -> OK count histograms
+ *      QUIT                                    -> OK               (closes the connection)
+ *
+ * where guesses is a comma-separated list of code indices, rows is a comma-separated list of played rows
+ * (see {@link SolverWorker#parseRows(CodeSpace, String)}) or "-" for none, and histograms holds one
+ * comma-separated list of {@link CodeSpace#buckets()} counts per guess, separated by ";".
+ *
+ * Usage: java SolverWorker [port] [bind-address]
+ *
+ * The worker listens on the loopback interface unless a bind address is given.
+ */
+public class SolverWorker {
+    /**
+     * Number of consecutive codes handled by one parallel unit of work.
+     */
+    private static final int CHUNK = 1 << 16;
+
+    private final ExecutorService connections = Executors.newCachedThreadPool(runnable -> {
+        final Thread thread = new Thread(runnable, "solver-worker-connection");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Executes a single request line and returns the reply line (without a line terminator).
+     *
+     * @param line the request
+     * @return the reply
+     */
+    public String handle(final String line) {
+        final String[] words = line.trim().split("\\s+");
+
+        try {
+            switch (words[0]) {
+                case "SCORE": {
+                    final CodeSpace space   = CodeSpace.of(Integer.parseInt(words[1]), Integer.parseInt(words[2]));
+                    final int       from    = Integer.parseInt(words[3]);
+                    final int       to      = Integer.parseInt(words[4]);
+                    final int[]     guesses = Arrays.stream(words[5].split(",")).mapToInt(Integer::parseInt).toArray();
+
+                    final FeedbackConstraints constraints = parseRows(space, words[6]);
+
+                    if (from < 0 || to > space.size || from > to) {
+                        return "ERR bad range";
+                    }
+
+                    return "OK " + formatResult(score(constraints, guesses, from, to), guesses.length, space.buckets());
+                }
+                case "QUIT":
+                    return "OK";
+                default:
+                    return "ERR unknown command";
+            }
+        } catch (final RuntimeException e) {
+            return "ERR malformed request";
+        }
+    }
+
+    /**
+     * Counts the feedback buckets of every guess over the consistent codes of a range, in parallel.
+     *
+     * @param constraints the played rows
+     * @param guesses the guesses to score
+     * @param from the first code index (inclusive)
+     * @param to the last code index (exclusive)
+     * @return the consistent count followed by the histograms, flattened as 1 + guess * buckets + bucket
+     */
+    public static long[] score(final FeedbackConstraints constraints, final int[] guesses, final int from, final int to) {
+        final CodeSpace space   = constraints.getSpace();
+        final int       buckets = space.buckets();
+        final int       chunks  = (int) (((long) to - from + CHUNK - 1) / CHUNK);
+
+        final byte[][] guessPegs       = new byte[guesses.length][];
+        final long[]   guessHistograms = new long[guesses.length];
+
+        for (int g = 0; g < guesses.length; ++g) {
+            guessPegs[g]       = space.pegsOf(guesses[g]);
+            guessHistograms[g] = space.histogram(guessPegs[g]);
+        }
+
+        return IntStream.range(0, chunks).parallel()
+            .mapToObj(chunk -> {
+                final int    start  = from + chunk * CHUNK;
+                final int    end    = (int) Math.min(to, start + (long) CHUNK);
+                final long[] result = new long[1 + guesses.length * buckets];
+                final byte[] pegs   = space.pegsOf(start);
+
+                for (int code = start; code < end; ++code, space.increment(pegs)) {
+                    if (!constraints.isConsistent(pegs)) continue;
+
+                    final long histogram = space.histogram(pegs);
+                    ++result[0];
+
+                    for (int g = 0; g < guesses.length; ++g) {
+                        ++result[1 + g * buckets + space.score(pegs, histogram, guessPegs[g], guessHistograms[g])];
+                    }
+                }
+
+                return result;
+            })
+            .reduce((a, b) -> {
+                for (int i = 0; i < a.length; ++i) {
+                    a[i] += b[i];
+                }
+                return a;
+            })
+            .orElseGet(() -> new long[1 + guesses.length * buckets]);
+    }
+
+    /**
+     * Parses played rows written as the {@link Peg.PegColor} keys of the guess followed by the red and white
+     * feedback, for example "rraw:1:2", separated by commas. A lone "-" stands for no rows.
+     *
+     * @param space the {@link CodeSpace} of the game
+     * @param rows the rows to parse
+     * @return the {@link FeedbackConstraints} of the rows
+     */
+    public static FeedbackConstraints parseRows(final CodeSpace space, final String rows) {
+        final String[] parts = rows.equals("-") ? new String[0] : rows.split(",");
+
+        final byte[][] pegs      = new byte[parts.length][];
+        final int[]    responses = new int[parts.length];
+
+        for (int i = 0; i < parts.length; ++i) {
+            final String   part   = parts[i];
+            final String[] fields = part.split(":");
+
+            if (fields[0].length() != space.slots) {
+                throw new IllegalArgumentException("Row has the wrong number of slots: " + part);
+            }
+
+            pegs[i] = new byte[space.slots];
+
+            for (int j = 0; j < space.slots; ++j) {
+                final Optional<Peg.PegColor> color = Peg.PegColor.fromCharacter(fields[0].charAt(j), space.colors);
+                pegs[i][j] = color.orElseThrow(() -> new IllegalArgumentException("Unknown color in row: " + part)).toByte();
+            }
+
+            responses[i] = space.bucket(Integer.parseInt(fields[1]), Integer.parseInt(fields[2]));
+        }
+
+        return new FeedbackConstraints(space, pegs, responses);
+    }
+
+    /**
+     * @param result the result of {@link SolverWorker#score(FeedbackConstraints, int[], int, int)}
+     * @param guesses the number of guesses
+     * @param buckets the number of buckets per guess
+     * @return the result in the reply format
+     */
+    public static String formatResult(final long[] result, final int guesses, final int buckets) {
+        final StringBuilder builder = new StringBuilder().append(result[0]).append(' ');
+
+        for (int g = 0; g < guesses; ++g) {
+            if (g > 0) builder.append(';');
+
+            for (int b = 0; b < buckets; ++b) {
+                if (b > 0) builder.append(',');
+                builder.append(result[1 + g * buckets + b]);
+            }
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Inverse of {@link SolverWorker#formatResult(long[], int, int)}.
+     *
+     * @param reply the reply without its leading "OK "
+     * @param guesses the number of guesses
+     * @param buckets the number of buckets per guess
+     * @return the result as returned by {@link SolverWorker#score(FeedbackConstraints, int[], int, int)}
+     */
+    public static long[] parseResult(final String reply, final int guesses, final int buckets) {
+        final String[] words  = reply.split(" ");
+        final String[] lists  = words[1].split(";");
+        final long[]   result = new long[1 + guesses * buckets];
+
+        if (lists.length != guesses) {
+            throw new IllegalArgumentException("Expected " + guesses + " histograms but got " + lists.length);
+        }
+
+        result[0] = Long.parseLong(words[0]);
+
+        for (int g = 0; g < guesses; ++g) {
+            final String[] counts = lists[g].split(",");
+
+            for (int b = 0; b < buckets; ++b) {
+                result[1 + g * buckets + b] = Long.parseLong(counts[b]);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Starts accepting connections.
+     *
+     * @param address the address to bind to
+     * @param port the port to listen on (0 picks a free port)
+     * @return the port actually listened on
+     * @throws IOException if the socket cannot be bound
+     */
+    public int start(final InetAddress address, final int port) throws IOException {
+        final ServerSocket socket = new ServerSocket();
+        socket.bind(new InetSocketAddress(address, port));
+
+        final Thread acceptor = new Thread(() -> {
+            while (!socket.isClosed()) {
+                try {
+                    final Socket client = socket.accept();
+                    client.setTcpNoDelay(true);
+                    connections.execute(() -> this.serve(client));
+                } catch (final IOException e) {
+                    System.out.println("Failed to accept connection: " + e.toString());
+                }
+            }
+        }, "solver-worker-acceptor");
+
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        return socket.getLocalPort();
+    }
+
+    /**
+     * Serves a single connection until the coordinator quits or disconnects.
+     *
+     * @param client the connected {@link Socket}
+     */
+    private void serve(final Socket client) {
+        try (client;
+             BufferedReader reader = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.US_ASCII));
+             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(client.getOutputStream(), StandardCharsets.US_ASCII))) {
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                writer.write(this.handle(line));
+                writer.write('\n');
+                writer.flush();
+
+                if (line.trim().equals("QUIT")) {
+                    return;
+                }
+            }
+        } catch (final IOException e) {
+            // The coordinator went away; nothing to clean up beyond closing the socket
+        }
+    }
+
+    /**
+     * Command line entry point. Prints the port it listens on, which the {@link SolverCluster} reads when
+     * it starts local workers itself.
+     *
+     * @param args optionally the port to listen on and the address to bind to
+     * @throws IOException if the socket cannot be bound
+     * @throws InterruptedException if interrupted while serving
+     */
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        final InetAddress address = args.length > 1 ? InetAddress.getByName(args[1]) : InetAddress.getLoopbackAddress();
+        final int         port    = new SolverWorker().start(address, args.length > 0 ? Integer.parseInt(args[0]) : 0);
+
+        System.out.println("SolverWorker listening on port " + port);
+        Thread.currentThread().join();
+    }
+}
@@ -0,0 +1,229 @@
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.Clip;
+
+/**
+ * Singleton instance class for playing the sound effects of the {@link Mastermind} game. Every effect is
+ * decoded once, at startup, into a few pre-opened {@link Clip}s (voices), so playing one only rewinds and
+ * starts a clip that is already loaded. At most {@link SoundEffects#MAX_VOICES} effects sound at once: a new
+ * effect beyond that steals the voice that started first.
+ *
+ * All audio work happens on a dedicated thread, so {@link SoundEffects#play(Sound)} returns immediately and
+ * never blocks the FX thread. Each effect is read from "resources/audio/sfx/(file name).wav" if that exists, and
+ * synthesized otherwise.
+ */
+public class SoundEffects {
+    private static final int MAX_VOICES       = 6;
+    private static final int VOICES_PER_SOUND = 2;
+
+    private static final float       SAMPLE_RATE = 44100;
+    private static final AudioFormat FORMAT      = new AudioFormat(SAMPLE_RATE, 16, 1, true, false);
+
+    // Must come after the constants above, which the constructor's preloading uses
+    private static final SoundEffects INSTANCE = new SoundEffects();
+
+    private final ExecutorService audio = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "mastermind-sfx");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Map<Sound, List<Clip>> voices  = new EnumMap<>(Sound.class);
+    private final Deque<Clip>            playing = new ArrayDeque<>();
+
+    private volatile boolean enabled = true;
+
+    /**
+     * Enumeration of the sound effects, with the notes (in hertz) and note length (in milliseconds) used
+     * to synthesize each one.
+     */
+    public static enum Sound {
+        PEG("peg", 40, 1200),
+        COMMIT("commit", 70, 660, 880),
+        WIN("win", 100, 523.25, 659.25, 783.99, 1046.5),
+        LOSS("loss", 150, 440, 329.63, 261.63);
+
+        private final String   fileName;
+        private final int      noteMillis;
+        private final double[] notes;
+
+        /**
+         * @param fileName the file name (without extension) of the effect
+         * @param noteMillis the length of each synthesized note
+         * @param notes the frequencies of the synthesized notes
+         */
+        private Sound(final String fileName, final int noteMillis, final double... notes) {
+            this.fileName   = fileName;
+            this.noteMillis = noteMillis;
+            this.notes      = notes;
+        }
+    }
+
+    /**
+     * Private constructor for building the singleton instance. Only submits the decoding work.
+     */
+    private SoundEffects() {
+        this.audio.execute(this::preload);
+    }
+
+    /**
+     * @return the static singleton instance of the {@link SoundEffects} class
+     */
+    public static SoundEffects getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param enabled whether effects should be played
+     */
+    public void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return whether effects are played
+     */
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * Plays an effect. Returns immediately; does nothing if effects are disabled or no audio device is
+     * available.
+     *
+     * @param sound the {@link Sound} to play
+     */
+    public void play(final Sound sound) {
+        if (this.enabled) {
+            this.audio.execute(() -> this.playNow(sound));
+        }
+    }
+
+    /**
+     * Decodes every effect and opens its voices. Runs on the audio thread.
+     */
+    private void preload() {
+        try {
+            for (final Sound sound : Sound.values()) {
+                final AudioInputStream stream = this.decode(sound);
+                final AudioFormat      format = stream.getFormat();
+                final byte[]           data   = stream.readAllBytes();
+                final List<Clip>       clips  = new ArrayList<>();
+
+                for (int v = 0; v < VOICES_PER_SOUND; ++v) {
+                    final Clip clip = AudioSystem.getClip();
+                    clip.open(format, data, 0, data.length);
+                    clips.add(clip);
+                }
+
+                this.voices.put(sound, clips);
+            }
+        } catch (final Exception e) {
+            System.out.println("Sound effects unavailable: " + e.toString());
+        }
+    }
+
+    /**
+     * Starts a voice of the given effect, stealing voices if too many are playing. Runs on the audio thread.
+     *
+     * @param sound the {@link Sound} to play
+     */
+    private void playNow(final Sound sound) {
+        final List<Clip> clips = this.voices.get(sound);
+
+        if (clips == null) {
+            return;
+        }
+
+        this.playing.removeIf(clip -> !clip.isRunning());
+
+        while (this.playing.size() >= MAX_VOICES) {
+            this.playing.removeFirst().stop();
+        }
+
+        // Prefer an idle voice of this effect, otherwise steal the one of its voices that started first
+        Clip voice = null;
+
+        for (final Clip clip : clips) {
+            if (!clip.isRunning()) {
+                voice = clip;
+                break;
+            }
+        }
+
+        if (voice == null) {
+            for (final Clip clip : this.playing) {
+                if (clips.contains(clip)) {
+                    voice = clip;
+                    break;
+                }
+            }
+        }
+
+        if (voice == null) {
+            voice = clips.get(0);
+        }
+
+        voice.stop();
+        this.playing.remove(voice);
+
+        voice.setFramePosition(0);
+        voice.start();
+        this.playing.addLast(voice);
+    }
+
+    /**
+     * @param sound the {@link Sound} to decode
+     * @return the decoded audio of the effect, from its resource file if there is one
+     * @throws Exception if the resource exists but cannot be decoded
+     */
+    private AudioInputStream decode(final Sound sound) throws Exception {
+        final InputStream resource = getClass().getResourceAsStream("resources/audio/sfx/" + sound.fileName + ".wav");
+
+        if (resource != null) {
+            return AudioSystem.getAudioInputStream(new BufferedInputStream(resource));
+        }
+
+        final byte[] pcm = synthesize(sound);
+        return new AudioInputStream(new ByteArrayInputStream(pcm), FORMAT, pcm.length / FORMAT.getFrameSize());
+    }
+
+    /**
+     * Synthesizes an effect as a sequence of short sine notes, each with a quick attack and an exponential
+     * decay to avoid clicks.
+     *
+     * @param sound the {@link Sound} to synthesize
+     * @return 16-bit little-endian mono samples
+     */
+    private static byte[] synthesize(final Sound sound) {
+        final int    perNote = (int) (SAMPLE_RATE * sound.noteMillis / 1000);
+        final byte[] pcm     = new byte[perNote * sound.notes.length * 2];
+
+        for (int n = 0; n < sound.notes.length; ++n) {
+            for (int i = 0; i < perNote; ++i) {
+                final double t        = i / SAMPLE_RATE;
+                final double envelope = Math.min(1, i / (SAMPLE_RATE * 0.003)) * Math.exp(-4.0 * i / perNote);
+                final short  sample   = (short) (0.3 * Short.MAX_VALUE * envelope * Math.sin(2 * Math.PI * sound.notes[n] * t));
+
+                final int offset = (n * perNote + i) * 2;
+                pcm[offset]     = (byte) sample;
+                pcm[offset + 1] = (byte) (sample >> 8);
+            }
+        }
+
+        return pcm;
+    }
+}
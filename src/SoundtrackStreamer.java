@@ -0,0 +1,523 @@
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.SourceDataLine;
+
+/**
+ * Streams the soundtrack of the {@link Mastermind} game from disk instead of holding the whole track in
+ * memory. A decoder thread reads and decodes the track a few kilobytes at a time into a small
+ * {@link SoundtrackStreamer.Ring} buffer, and a player thread drains it into the sound card, so the audio
+ * memory is bounded by {@link SoundtrackStreamer#RING_BYTES} whatever the length of the track.
+ *
+ * Any encoding that Java Sound can convert to 16-bit PCM is accepted: plain PCM, the built-in u-law and
+ * A-law codecs (half the size of 16-bit PCM on disk), and formats such as Ogg Vorbis when their service
+ * provider is on the class path. When the length of the track is known, the end of each loop is
+ * crossfaded into the start of the next by decoding a second stream of the same file for the length of the
+ * fade; otherwise the track restarts without a gap.
+ *
+ * Usage: java SoundtrackStreamer [file] [seconds]
+ *
+ * measures the resident memory of decoding the file (a generated test track if none is given) whole, as
+ * a non-streaming player would, and of streaming it for the given number of seconds of audio.
+ */
+public class SoundtrackStreamer {
+    private static final int RING_BYTES  = 64 * 1024;
+    private static final int CHUNK_BYTES = 4 * 1024;
+    private static final int LINE_BYTES  = 16 * 1024;
+
+    private final URL         url;
+    private final AudioFormat format;
+    private final long        frames;
+    private final int         fadeFrames;
+    private final Ring        ring = new Ring(RING_BYTES);
+
+    private volatile double  volume  = 0.5;
+    private volatile boolean running = false;
+
+    /**
+     * Private constructor; see {@link SoundtrackStreamer#open(URL, int)}.
+     *
+     * @param url the location of the track
+     * @param format the decoded (16-bit PCM) format of the track
+     * @param frames the length of the track in frames, or {@link AudioSystem#NOT_SPECIFIED}
+     * @param fadeMillis the length of the crossfade between loops
+     */
+    private SoundtrackStreamer(final URL url, final AudioFormat format, final long frames, final int fadeMillis) {
+        this.url    = url;
+        this.format = format;
+        this.frames = frames;
+
+        // Only fade when the track is long enough to hold the fade twice over
+        final int fade = (int) (format.getFrameRate() * fadeMillis / 1000);
+        this.fadeFrames = frames != AudioSystem.NOT_SPECIFIED && frames > 2L * fade ? fade : 0;
+    }
+
+    /**
+     * Checks that the track can be decoded and reads its format, without decoding any audio.
+     *
+     * @param url the location of the track
+     * @param fadeMillis the length of the crossfade between loops
+     * @return the {@link Optional}<{@link SoundtrackStreamer}>, or {@link Optional#empty()} if the track
+     *         cannot be decoded
+     */
+    public static Optional<SoundtrackStreamer> open(final URL url, final int fadeMillis) {
+        try (AudioInputStream stream = decode(url)) {
+            return Optional.of(new SoundtrackStreamer(url, stream.getFormat(), stream.getFrameLength(), fadeMillis));
+        } catch (final Exception e) {
+            System.out.println("Exception while opening soundtrack (at " + url + "): " + e.toString());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * @param url the location of the track
+     * @return a new stream of the track, converted to 16-bit little-endian PCM if needed
+     * @throws Exception if the track cannot be read or converted
+     */
+    private static AudioInputStream decode(final URL url) throws Exception {
+        final AudioInputStream source = AudioSystem.getAudioInputStream(new BufferedInputStream(url.openStream()));
+        final AudioFormat      from   = source.getFormat();
+        final AudioFormat      to     = new AudioFormat(
+            AudioFormat.Encoding.PCM_SIGNED, from.getSampleRate(), 16, from.getChannels(), from.getChannels() * 2, from.getSampleRate(), false);
+
+        return from.matches(to) ? source : AudioSystem.getAudioInputStream(to, source);
+    }
+
+    /**
+     * Starts decoding and playing the track in a loop. Does nothing if it is already playing.
+     */
+    public synchronized void play() {
+        if (this.start()) {
+            final Thread player = new Thread(this::playLoop, "mastermind-soundtrack");
+            player.setDaemon(true);
+            player.start();
+        }
+    }
+
+    /**
+     * Starts only the decoder, for callers that drain the audio themselves with
+     * {@link SoundtrackStreamer#read(byte[])}.
+     *
+     * @return whether the decoder was started (false if it was already running)
+     */
+    public synchronized boolean start() {
+        if (this.running) {
+            return false;
+        }
+
+        this.running = true;
+
+        final Thread decoder = new Thread(this::decodeLoop, "mastermind-soundtrack-decoder");
+        decoder.setDaemon(true);
+        decoder.start();
+
+        return true;
+    }
+
+    /**
+     * Stops decoding and playing. The streamer cannot be restarted.
+     */
+    public void stop() {
+        this.running = false;
+        this.ring.close();
+    }
+
+    /**
+     * @param volume the playback volume, between 0 and 1
+     */
+    public void setVolume(final double volume) {
+        this.volume = Math.max(0, Math.min(1, volume));
+    }
+
+    /**
+     * @return the decoded (16-bit PCM) format of the track
+     */
+    public AudioFormat getFormat() {
+        return this.format;
+    }
+
+    /**
+     * @return the number of bytes of audio this streamer ever holds in memory
+     */
+    public static int getBufferBytes() {
+        return RING_BYTES + 2 * CHUNK_BYTES + 2 * LINE_BYTES;
+    }
+
+    /**
+     * Reads the next decoded audio at full volume, waiting until some is available.
+     *
+     * @param buffer the buffer to fill
+     * @return the number of bytes read, or -1 once stopped
+     */
+    public int read(final byte[] buffer) {
+        return this.ring.read(buffer, 0, buffer.length);
+    }
+
+    /**
+     * Drains the ring into the sound card, applying the volume. Runs on the player thread.
+     */
+    private void playLoop() {
+        try (SourceDataLine line = AudioSystem.getSourceDataLine(this.format)) {
+            line.open(this.format, LINE_BYTES);
+            line.start();
+
+            final byte[] buffer = new byte[LINE_BYTES];
+            int          n;
+
+            while ((n = this.ring.read(buffer, 0, buffer.length)) > 0) {
+                scale(buffer, n, this.volume);
+                line.write(buffer, 0, n);
+            }
+
+            line.drain();
+        } catch (final Exception e) {
+            System.out.println("Soundtrack unavailable: " + e.toString());
+            this.stop();
+        }
+    }
+
+    /**
+     * Decodes the track into the ring forever, crossfading each loop into the next. Runs on the decoder
+     * thread.
+     */
+    private void decodeLoop() {
+        final int    frameSize = this.format.getFrameSize();
+        final long   fadeStart = this.frames - this.fadeFrames;
+        final byte[] chunk     = new byte[CHUNK_BYTES];
+        final byte[] incoming  = new byte[CHUNK_BYTES];
+
+        AudioInputStream current  = null;
+        AudioInputStream next     = null;
+        long             position = 0;
+        long             nextPos  = 0;
+
+        try {
+            current = decode(this.url);
+
+            while (this.running) {
+                // Open the next loop when the fade begins
+                if (this.fadeFrames > 0 && next == null && position >= fadeStart) {
+                    next    = decode(this.url);
+                    nextPos = 0;
+                }
+
+                // Stop short of the fade so that every chunk is either wholly inside or outside of it
+                long wanted = CHUNK_BYTES / frameSize;
+                if (this.fadeFrames > 0 && position < fadeStart) {
+                    wanted = Math.min(wanted, fadeStart - position);
+                }
+
+                final int n = readFully(current, chunk, (int) wanted * frameSize);
+
+                if (n <= 0) {
+                    current.close();
+                    current  = next != null ? next : decode(this.url);
+                    position = next != null ? nextPos : 0;
+                    next     = null;
+                    continue;
+                }
+
+                if (next != null) {
+                    final int m = readFully(next, incoming, n);
+                    crossfade(chunk, incoming, m, position - fadeStart, this.fadeFrames, frameSize);
+                    nextPos += m / frameSize;
+                }
+
+                if (!this.ring.write(chunk, 0, n)) {
+                    break;
+                }
+
+                position += n / frameSize;
+            }
+        } catch (final Exception e) {
+            System.out.println("Exception while streaming soundtrack: " + e.toString());
+            this.stop();
+        } finally {
+            closeQuietly(current);
+            closeQuietly(next);
+        }
+    }
+
+    /**
+     * Mixes the start of the next loop into the end of the current one with an equal-power fade, so the
+     * loudness stays constant through the fade.
+     *
+     * @param out the end of the current loop, overwritten with the mix
+     * @param in the start of the next loop
+     * @param length the number of bytes of the next loop read (the rest of out fades to silence)
+     * @param offset the frame of the fade at which out begins
+     * @param fadeFrames the length of the fade in frames
+     * @param frameSize the size of a frame in bytes
+     */
+    private static void crossfade(final byte[] out, final byte[] in, final int length, final long offset,
+                                  final int fadeFrames, final int frameSize) {
+        final int channels = frameSize / 2;
+
+        for (int i = 0; i + 1 < out.length; i += 2) {
+            final double t        = Math.min(1, (offset + i / 2 / channels) / (double) fadeFrames);
+            final double outgoing = Math.cos(t * Math.PI / 2) * sample(out, i);
+            final double incoming = i + 1 < length ? Math.sin(t * Math.PI / 2) * sample(in, i) : 0;
+
+            put(out, i, outgoing + incoming);
+        }
+    }
+
+    /**
+     * @param buffer 16-bit little-endian samples
+     * @param length the number of bytes to scale
+     * @param gain the factor to scale by
+     */
+    private static void scale(final byte[] buffer, final int length, final double gain) {
+        for (int i = 0; i + 1 < length; i += 2) {
+            put(buffer, i, sample(buffer, i) * gain);
+        }
+    }
+
+    /**
+     * @param buffer 16-bit little-endian samples
+     * @param i the byte offset of the sample
+     * @return the sample
+     */
+    private static int sample(final byte[] buffer, final int i) {
+        return (buffer[i] & 0xff) | (buffer[i + 1] << 8);
+    }
+
+    /**
+     * @param buffer 16-bit little-endian samples
+     * @param i the byte offset of the sample
+     * @param value the sample, clipped to 16 bits
+     */
+    private static void put(final byte[] buffer, final int i, final double value) {
+        final int clipped = (int) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(value)));
+        buffer[i]     = (byte) clipped;
+        buffer[i + 1] = (byte) (clipped >> 8);
+    }
+
+    /**
+     * @param stream the stream to read
+     * @param buffer the buffer to fill
+     * @param length the number of bytes wanted
+     * @return the number of bytes read, less than length only at the end of the stream (-1 if nothing was)
+     * @throws IOException if the stream cannot be read
+     */
+    private static int readFully(final InputStream stream, final byte[] buffer, final int length) throws IOException {
+        int total = 0;
+
+        while (total < length) {
+            final int n = stream.read(buffer, total, length - total);
+            if (n < 0) break;
+            total += n;
+        }
+
+        return total == 0 && length > 0 ? -1 : total;
+    }
+
+    /**
+     * @param stream the stream to close, if any
+     */
+    private static void closeQuietly(final InputStream stream) {
+        try {
+            if (stream != null) stream.close();
+        } catch (final IOException e) {
+            // Nothing left to read from it anyway
+        }
+    }
+
+    /**
+     * Fixed-size single-producer, single-consumer ring of bytes. Writers wait while it is full and readers
+     * while it is empty, so the decoder never runs more than a ring ahead of the player.
+     */
+    private static class Ring {
+        private final byte[] buffer;
+
+        private long    written = 0;
+        private long    read    = 0;
+        private boolean closed  = false;
+
+        /**
+         * @param capacity the size of the ring in bytes
+         */
+        private Ring(final int capacity) {
+            this.buffer = new byte[capacity];
+        }
+
+        /**
+         * @param source the bytes to write
+         * @param offset the offset of the first byte
+         * @param length the number of bytes
+         * @return false if the ring was closed before everything was written
+         */
+        private synchronized boolean write(final byte[] source, final int offset, final int length) {
+            int done = 0;
+
+            while (done < length) {
+                while (!this.closed && this.written - this.read == this.buffer.length) {
+                    this.await();
+                }
+
+                if (this.closed) return false;
+
+                final int at = (int) (this.written % this.buffer.length);
+                final int n  = Math.min(length - done, Math.min(this.buffer.length - at, this.buffer.length - (int) (this.written - this.read)));
+
+                System.arraycopy(source, offset + done, this.buffer, at, n);
+                this.written += n;
+                done         += n;
+                this.notifyAll();
+            }
+
+            return true;
+        }
+
+        /**
+         * @param target the buffer to fill
+         * @param offset the offset of the first byte
+         * @param length the maximum number of bytes
+         * @return the number of bytes read, or -1 once closed
+         */
+        private synchronized int read(final byte[] target, final int offset, final int length) {
+            while (!this.closed && this.written == this.read) {
+                this.await();
+            }
+
+            if (this.closed) return -1;
+
+            final int at = (int) (this.read % this.buffer.length);
+            final int n  = Math.min(length, Math.min(this.buffer.length - at, (int) (this.written - this.read)));
+
+            System.arraycopy(this.buffer, at, target, offset, n);
+            this.read += n;
+            this.notifyAll();
+
+            return n;
+        }
+
+        /**
+         * Wakes every waiting reader and writer and makes them give up.
+         */
+        private synchronized void close() {
+            this.closed = true;
+            this.notifyAll();
+        }
+
+        /**
+         * Waits for the other side, treating an interrupt as a close.
+         */
+        private void await() {
+            try {
+                this.wait();
+            } catch (final InterruptedException e) {
+                this.closed = true;
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @return the resident set size of this process in kibibytes, or the used heap where that is unknown
+     */
+    private static long residentKiB() {
+        try {
+            for (final String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", ""));
+                }
+            }
+        } catch (final IOException e) {
+            // Not on Linux
+        }
+
+        final Runtime runtime = Runtime.getRuntime();
+        return (runtime.totalMemory() - runtime.freeMemory()) / 1024;
+    }
+
+    /**
+     * Command line entry point for the memory measurement. The decoded audio is read as fast as it decodes
+     * rather than played, so a long stretch of audio takes only a few seconds.
+     *
+     * @param args optionally the track to measure and the number of seconds of audio to stream
+     * @throws Exception if the track cannot be written or decoded
+     */
+    public static void main(final String[] args) throws Exception {
+        final Path track;
+
+        if (args.length > 0) {
+            track = Paths.get(args[0]);
+        } else {
+            // Three minutes of 44.1 kHz 16-bit stereo, the size of a typical soundtrack
+            track = Files.createTempFile("mastermind-soundtrack", ".wav");
+            track.toFile().deleteOnExit();
+
+            final AudioFormat format = new AudioFormat(44100, 16, 2, true, false);
+            final long        length = 180L * 44100;
+            final InputStream tone   = new InputStream() {
+                private long at = 0;
+
+                @Override
+                public int read() {
+                    if (at >= length * 4) return -1;
+                    final long frame  = at / 4;
+                    final int  sample = (int) (8000 * Math.sin(2 * Math.PI * 220 * frame / 44100.0));
+                    return (at++ % 2 == 0 ? sample : sample >> 8) & 0xff;
+                }
+            };
+
+            AudioSystem.write(new AudioInputStream(new BufferedInputStream(tone), format, length), AudioFileFormat.Type.WAVE, track.toFile());
+        }
+
+        final File   file    = track.toFile();
+        final double seconds = args.length > 1 ? Double.parseDouble(args[1]) : 600;
+
+        System.gc();
+        final long baseline = residentKiB();
+
+        // Before: the whole track decoded in memory
+        try (AudioInputStream stream = decode(file.toURI().toURL())) {
+            final byte[] whole = stream.readAllBytes();
+            System.out.printf("Whole track: %,d KiB of PCM, resident +%,d KiB%n", whole.length / 1024, residentKiB() - baseline);
+        }
+
+        System.gc();
+        final long before = residentKiB();
+
+        // After: stream the track in a loop
+        final SoundtrackStreamer streamer = open(file.toURI().toURL(), 2000).orElseThrow();
+        final long               wanted   = (long) (seconds * streamer.getFormat().getFrameRate()) * streamer.getFormat().getFrameSize();
+        final byte[]             buffer   = new byte[LINE_BYTES];
+        final long               start    = System.nanoTime();
+        long                     total    = 0;
+        long                     peak     = 0;
+
+        streamer.start();
+
+        while (total < wanted) {
+            final int n = streamer.read(buffer);
+
+            if (n < 0) {
+                System.out.printf("Stream stopped after %.0f s of audio: the track could not be decoded%n",
+                    total / (double) streamer.getFormat().getFrameSize() / streamer.getFormat().getFrameRate());
+                System.exit(1);
+            }
+
+            total += n;
+            peak   = Math.max(peak, residentKiB() - before);
+        }
+
+        streamer.stop();
+
+        System.out.printf("Streamed:    %.0f s of audio in %.1f s, %,d KiB of buffers, resident +%,d KiB at peak%n",
+            total / (double) streamer.getFormat().getFrameSize() / streamer.getFormat().getFrameRate(),
+            (System.nanoTime() - start) / 1e9, getBufferBytes() / 1024, peak);
+    }
+}
@@ -0,0 +1,26 @@
+import java.util.Optional;
+
+import javafx.util.Pair;
+
+/**
+ * Interface for a codebreaker that plays a game of {@link Mastermind} one guess at a time.
+ */
+public interface Strategy {
+    /**
+     * @return the {@link Peg} bytes of the next guess, or an empty {@link Optional} if the strategy has
+     *         no guess to offer (for example after inconsistent feedback)
+     */
+    Optional<byte[]> nextGuess();
+
+    /**
+     * Informs the strategy of the feedback its last guess received.
+     *
+     * @param response the (red, white) pair as returned by {@link GameState#testRow(int)}
+     */
+    void feedback(Pair<Integer, Integer> response);
+
+    /**
+     * Returns the strategy to its state before the first guess.
+     */
+    void reset();
+}
@@ -0,0 +1,276 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Flat, array-encoded form of a {@link DecisionTree} that can be played back without any scoring or
+ * candidate filtering. The file is a sequence of big-endian ints:
+ *
+ *      4 ints: magic "MMST", # of slots, # of colors, # of nodes,
+ *      per node (node i starts at int 4 + i * (1 + feedbacks)):
+ *          1 int:          guess code index (see {@link CodeSpace}),
+ *          feedbacks ints: index of the child node for each feedback, or -1.
+ *
+ * Only feedbacks with red + white <= slots exist, so they are numbered in the triangular order
+ * (0,0), (0,1), ..., (0,slots), (1,0), ..., (slots,0), giving feedbacks = (slots + 1)(slots + 2) / 2.
+ * Node 0 is the root. Files are loaded by memory mapping, so a lookup is two reads from the mapped buffer.
+ *
+ * A table is a single int array and a single mapping, so it holds at most {@link StrategyTable#MAX_INTS}
+ * ints (just under 2 GiB). That is ample for every configuration {@link OptimalSolver} can solve, but not
+ * for a complete tree of the largest boards; larger tables are rejected rather than truncated. Boards with
+ * more codes than an int can index (see {@link CodeSpace#isEnumerable(int, int, boolean)}) have no table.
+ */
+public class StrategyTable {
+    private static final int MAGIC  = 0x4D4D5354;
+    private static final int HEADER = 4;
+
+    /**
+     * Most ints a table may hold, header included: its size in bytes must fit in one mapping.
+     */
+    public static final int MAX_INTS = Integer.MAX_VALUE / Integer.BYTES;
+
+    public final int slots;
+    public final int colors;
+    public final int nodes;
+
+    private final int       stride;
+    private final IntBuffer data;
+
+    /**
+     * Private constructor wrapping an already encoded buffer.
+     *
+     * @param data the buffer containing the header and the nodes
+     */
+    private StrategyTable(final IntBuffer data) {
+        if (data.limit() < HEADER || data.get(0) != MAGIC) {
+            throw new IllegalArgumentException("Not a strategy table");
+        }
+
+        this.data   = data;
+        this.slots  = data.get(1);
+        this.colors = data.get(2);
+        this.nodes  = data.get(3);
+        this.stride = 1 + feedbacks(this.slots);
+
+        if (this.slots < 0 || this.nodes < 0 || size(this.slots, this.nodes) > data.limit()) {
+            throw new IllegalArgumentException("Truncated strategy table");
+        }
+
+        checkIndexable(this.slots, this.colors);
+    }
+
+    /**
+     * Guesses are stored as int code indices, so a table can only describe boards whose codes all have one.
+     *
+     * @param slots the number of slots
+     * @param colors the number of colors
+     * @throws IllegalArgumentException if the board has more codes than an int can index
+     */
+    private static void checkIndexable(final int slots, final int colors) {
+        if (slots < 2 || colors < 2 || !CodeSpace.isEnumerable(slots, colors, false)) {
+            throw new IllegalArgumentException("No strategy table for " + slots + " slots of " + colors
+                + " colors: too many codes to index");
+        }
+    }
+
+    /**
+     * @param node the index of a node
+     * @return the code index of the guess made at the node
+     */
+    public int guessAt(final int node) {
+        return data.get(HEADER + node * stride);
+    }
+
+    /**
+     * @param node the index of a node
+     * @param red the "red" part of the feedback
+     * @param white the "white" part of the feedback
+     * @return the index of the child node reached by the feedback, or -1 if there is none
+     */
+    public int child(final int node, final int red, final int white) {
+        if (red < 0 || white < 0 || red + white > slots) {
+            return -1;
+        }
+
+        return data.get(HEADER + node * stride + 1 + feedbackIndex(red, white));
+    }
+
+    /**
+     * Decodes a code index into {@link Peg} bytes, in the same way as {@link CodeSpace#pegsOf(int)}.
+     *
+     * @param code the code index
+     * @return the {@link Peg} bytes of the code
+     */
+    public byte[] pegsOf(final int code) {
+        final byte[] pegs = new byte[slots];
+
+        int rest = code;
+
+        for (int j = 0; j < slots; ++j) {
+            pegs[j] = (byte) (rest % colors + 1);
+            rest /= colors;
+        }
+
+        return pegs;
+    }
+
+    /**
+     * Writes this table to the given file using the format described in {@link StrategyTable}.
+     *
+     * @param path the file to write
+     * @throws IOException if writing fails
+     */
+    public void write(final Path path) throws IOException {
+        // The constructor checked the size, so it fits in an int
+        final ByteBuffer bytes = ByteBuffer.allocate((HEADER + nodes * stride) * Integer.BYTES);
+
+        for (int i = 0; i < HEADER + nodes * stride; ++i) {
+            bytes.putInt(data.get(i));
+        }
+
+        bytes.flip();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+    }
+
+    /**
+     * Loads a table written by {@link StrategyTable#write(Path)} by memory mapping the file.
+     *
+     * @param path the file to load
+     * @return the {@link StrategyTable}
+     * @throws IOException if the file cannot be mapped or is not a strategy table
+     */
+    public static StrategyTable load(final Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > (long) MAX_INTS * Integer.BYTES) {
+                throw new IOException("Strategy table larger than " + MAX_INTS + " ints: " + path);
+            }
+
+            // Check the header against the file before mapping any of it
+            final ByteBuffer header = ByteBuffer.allocate(HEADER * Integer.BYTES);
+
+            if (channel.size() < header.capacity()) {
+                throw new IOException("Not a strategy table: " + path);
+            }
+
+            while (header.hasRemaining()) {
+                channel.read(header, header.position());
+            }
+
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException("Not a strategy table: " + path);
+            }
+
+            final int slots = header.getInt(Integer.BYTES);
+            final int nodes = header.getInt(3 * Integer.BYTES);
+
+            checkIndexable(slots, header.getInt(2 * Integer.BYTES));
+
+            if (nodes < 0 || size(slots, nodes) * Integer.BYTES != channel.size()) {
+                throw new IOException("Strategy table of " + nodes + " nodes does not match its length of "
+                    + channel.size() + " bytes: " + path);
+            }
+
+            return new StrategyTable(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).asIntBuffer());
+        } catch (final IllegalArgumentException e) {
+            throw new IOException(e.getMessage() + ": " + path);
+        }
+    }
+
+    /**
+     * Flattens a {@link DecisionTree} into a {@link StrategyTable}. Nodes are numbered in breadth-first
+     * order, so the root is node 0.
+     *
+     * @param tree the tree to flatten
+     * @return the {@link StrategyTable}
+     * @throws IllegalArgumentException if the tree has more nodes than a table can hold (see
+     *         {@link StrategyTable#MAX_INTS}) or its board has too many codes to index
+     */
+    public static StrategyTable fromTree(final DecisionTree tree) {
+        checkIndexable(tree.slots, tree.colors);
+
+        final int stride = 1 + feedbacks(tree.slots);
+
+        final List<DecisionTree.Node> order = new ArrayList<>();
+        order.add(tree.getRoot());
+
+        for (int i = 0; i < order.size(); ++i) {
+            order.addAll(order.get(i).children.values());
+
+            if (size(tree.slots, order.size()) > MAX_INTS) {
+                throw new IllegalArgumentException("Strategy table too large: more than " + MAX_INTS + " ints");
+            }
+        }
+
+        final IntBuffer data = IntBuffer.allocate(HEADER + order.size() * stride);
+
+        data.put(MAGIC).put(tree.slots).put(tree.colors).put(order.size());
+
+        int next = 1;
+
+        for (final DecisionTree.Node node : order) {
+            final int[] children = new int[stride - 1];
+            Arrays.fill(children, -1);
+
+            // Children were appended in the same order while numbering, so their indices are consecutive
+            for (final Map.Entry<Integer, DecisionTree.Node> child : node.children.entrySet()) {
+                final int red   = child.getKey() / (tree.slots + 1);
+                final int white = child.getKey() % (tree.slots + 1);
+                children[feedbackIndex(tree.slots, red, white)] = next++;
+            }
+
+            data.put(node.guess).put(children);
+        }
+
+        data.flip();
+        return new StrategyTable(data);
+    }
+
+    /**
+     * @param slots the number of slots
+     * @param nodes the number of nodes
+     * @return the number of ints a table of that many nodes takes, header included
+     */
+    private static long size(final int slots, final long nodes) {
+        return HEADER + nodes * (1 + feedbacks(slots));
+    }
+
+    /**
+     * @param slots the number of slots
+     * @return the number of possible (red, white) feedbacks
+     */
+    private static int feedbacks(final int slots) {
+        return (slots + 1) * (slots + 2) / 2;
+    }
+
+    /**
+     * @param red the "red" part of the feedback
+     * @param white the "white" part of the feedback
+     * @return the triangular index of the feedback for this table's number of slots
+     */
+    private int feedbackIndex(final int red, final int white) {
+        return feedbackIndex(this.slots, red, white);
+    }
+
+    /**
+     * @param slots the number of slots
+     * @param red the "red" part of the feedback
+     * @param white the "white" part of the feedback
+     * @return the triangular index of the feedback
+     */
+    private static int feedbackIndex(final int slots, final int red, final int white) {
+        return red * (slots + 1) - red * (red - 1) / 2 + white;
+    }
+}
@@ -0,0 +1,51 @@
+import java.util.Optional;
+
+import javafx.util.Pair;
+
+/**
+ * {@link Strategy} that plays back a precomputed {@link StrategyTable}. Each move is a single child lookup
+ * followed by a single guess lookup; no codes are scored and no candidates are tracked.
+ */
+public class TableStrategy implements Strategy {
+    private final StrategyTable table;
+
+    private int node = 0;
+
+    /**
+     * Constructs a {@link TableStrategy} that starts at the root of the given table.
+     *
+     * @param table the {@link StrategyTable} to play back
+     */
+    public TableStrategy(final StrategyTable table) {
+        this.table = table;
+    }
+
+    /**
+     * @param gameState the {@link GameState} to check
+     * @return whether this strategy can play the given {@link GameState}
+     */
+    public boolean supports(final GameState gameState) {
+        return gameState.slots == table.slots && gameState.colors == table.colors;
+    }
+
+    @Override
+    public Optional<byte[]> nextGuess() {
+        if (node < 0) {
+            return Optional.empty();
+        } else {
+            return Optional.of(table.pegsOf(table.guessAt(node)));
+        }
+    }
+
+    @Override
+    public void feedback(final Pair<Integer, Integer> response) {
+        if (node >= 0) {
+            node = table.child(node, response.getKey(), response.getValue());
+        }
+    }
+
+    @Override
+    public void reset() {
+        this.node = 0;
+    }
+}
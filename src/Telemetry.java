@@ -0,0 +1,286 @@
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import javax.management.ObjectName;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Singleton instance class collecting lightweight performance counters for the hot paths of the
+ * {@link Mastermind} game: how long {@link GameCanvas} renders, input events wait for the render that shows
+ * them (as traced by {@link InputLatencyTracer}, which reports every event here), saves, loads, media
+ * loads, scene switches and startup take, and how often {@link GameState#testRow(int)} is called.
+ *
+ * Every sample updates a few striped counters ({@link LongAdder}) and, only if a flight recording has the
+ * event enabled, creates and commits a JDK Flight Recorder event; with no recording the cost is a clock
+ * read, the counter updates and a check of the event type, and nothing is allocated. The counters are
+ * exposed through JMX ({@link TelemetryMXBean}) and, when the "mastermind.telemetry.interval" system
+ * property gives a period in seconds, printed periodically.
+ *
+ * A recording with every event of the game plus allocation profiling can be started with the bundled
+ * settings:
+ *
+ *      java -XX:StartFlightRecording=settings=resources/jfr/mastermind.jfc,filename=mastermind.jfr Mastermind
+ */
+public class Telemetry implements TelemetryMXBean {
+    private static final String INTERVAL_PROPERTY = "mastermind.telemetry.interval";
+
+    private static final Telemetry INSTANCE = new Telemetry();
+
+    /**
+     * Enumeration of the timed operations, each with its own flight recorder event.
+     */
+    public static enum Metric {
+        RENDER("render", RenderEvent.class, RenderEvent::new),
+        INPUT_LATENCY("input-latency", InputLatencyEvent.class, InputLatencyEvent::new),
+        SAVE("save", SaveEvent.class, SaveEvent::new),
+        LOAD("load", LoadEvent.class, LoadEvent::new),
+        MEDIA_LOAD("media-load", MediaLoadEvent.class, MediaLoadEvent::new),
+        SCENE_SWITCH("scene-switch", SceneSwitchEvent.class, SceneSwitchEvent::new),
+        FIRST_FRAME("first-frame", FirstFrameEvent.class, FirstFrameEvent::new);
+
+        private final String               name;
+        private final EventType            type;
+        private final Supplier<TimedEvent> event;
+        private final LongAdder            count = new LongAdder();
+        private final LongAdder            nanos = new LongAdder();
+        private final LongAccumulator      max   = new LongAccumulator(Math::max, 0);
+
+        /**
+         * @param name the name the metric is reported under
+         * @param eventClass the class of the flight recorder event of the metric
+         * @param event creates the flight recorder event of the metric
+         */
+        private Metric(final String name, final Class<? extends TimedEvent> eventClass,
+            final Supplier<TimedEvent> event) {
+            this.name  = name;
+            this.type  = EventType.getEventType(eventClass);
+            this.event = event;
+        }
+    }
+
+    /**
+     * Private constructor for building the singleton instance. Registers the management bean, the periodic
+     * flight recorder event and, if requested, the periodic dump.
+     */
+    private Telemetry() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName("mastermind:type=Telemetry"));
+        } catch (final Exception e) {
+            System.out.println("Failed to register telemetry bean: " + e.toString());
+        }
+
+        FlightRecorder.addPeriodicEvent(CountersEvent.class, () -> {
+            final CountersEvent event = new CountersEvent();
+            event.testRowCalls = GameState.TEST_ROW_CALLS.sum();
+            event.commit();
+        });
+
+        final long interval = Long.getLong(INTERVAL_PROPERTY, 0);
+
+        if (interval > 0) {
+            final ScheduledExecutorService dumper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "mastermind-telemetry");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+            dumper.scheduleAtFixedRate(() -> System.out.print(this.dump()), interval, interval, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * @return the static singleton instance of the {@link Telemetry} class
+     */
+    public static Telemetry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Records a timed operation that started at the given time and has just finished.
+     *
+     * @param metric the {@link Metric} of the operation
+     * @param startNanos the {@link System#nanoTime()} at which the operation started
+     * @param detail what the operation worked on (such as a file name), or null
+     */
+    public static void record(final Metric metric, final long startNanos, final String detail) {
+        record(metric, startNanos, System.nanoTime(), detail);
+    }
+
+    /**
+     * Records a timed operation whose end the caller has already timestamped.
+     *
+     * @param metric the {@link Metric} of the operation
+     * @param startNanos the {@link System#nanoTime()} at which the operation started
+     * @param endNanos the {@link System#nanoTime()} at which the operation finished
+     * @param detail what the operation worked on (such as a file name), or null
+     */
+    public static void record(final Metric metric, final long startNanos, final long endNanos, final String detail) {
+        final long elapsed = endNanos - startNanos;
+
+        metric.count.increment();
+        metric.nanos.add(elapsed);
+        metric.max.accumulate(elapsed);
+
+        // Only allocate the event while a recording has it enabled
+        if (!metric.type.isEnabled()) {
+            return;
+        }
+
+        final TimedEvent event = metric.event.get();
+
+        if (event.shouldCommit()) {
+            event.elapsed = elapsed;
+            event.detail  = detail;
+            event.commit();
+        }
+    }
+
+    @Override
+    public long getTestRowCalls() {
+        return GameState.TEST_ROW_CALLS.sum();
+    }
+
+    @Override
+    public Map<String, Long> getCounts() {
+        final Map<String, Long> counts = new LinkedHashMap<>();
+
+        for (final Metric metric : Metric.values()) {
+            counts.put(metric.name, metric.count.sum());
+        }
+
+        return counts;
+    }
+
+    @Override
+    public Map<String, Double> getMeanMillis() {
+        final Map<String, Double> means = new LinkedHashMap<>();
+
+        for (final Metric metric : Metric.values()) {
+            final long count = metric.count.sum();
+            means.put(metric.name, count == 0 ? 0 : metric.nanos.sum() / 1e6 / count);
+        }
+
+        return means;
+    }
+
+    @Override
+    public Map<String, Double> getMaxMillis() {
+        final Map<String, Double> maxima = new LinkedHashMap<>();
+
+        for (final Metric metric : Metric.values()) {
+            maxima.put(metric.name, metric.max.get() / 1e6);
+        }
+
+        return maxima;
+    }
+
+    @Override
+    public String dump() {
+        final StringBuilder text = new StringBuilder("Telemetry: testRow calls " + GameState.TEST_ROW_CALLS.sum() + "\n");
+
+        for (final Metric metric : Metric.values()) {
+            final long count = metric.count.sum();
+
+            text.append(String.format("  %-14s %8d samples, mean %8.3f ms, max %8.3f ms%n", metric.name, count,
+                count == 0 ? 0 : metric.nanos.sum() / 1e6 / count, metric.max.get() / 1e6));
+        }
+
+        return text.toString();
+    }
+
+    @Override
+    public void reset() {
+        GameState.TEST_ROW_CALLS.reset();
+
+        for (final Metric metric : Metric.values()) {
+            metric.count.reset();
+            metric.nanos.reset();
+            metric.max.reset();
+        }
+    }
+
+    /**
+     * Base of the flight recorder events of the timed operations. The measured time is kept in a field, as
+     * the operation has already finished when the event is created.
+     */
+    @Category("Mastermind")
+    @StackTrace(false)
+    private static abstract class TimedEvent extends Event {
+        @Label("Elapsed")
+        @Timespan(Timespan.NANOSECONDS)
+        long elapsed;
+
+        @Label("Detail")
+        String detail;
+    }
+
+    @Name("mastermind.Render")
+    @Label("Render")
+    @Description("A redraw of the game board")
+    private static class RenderEvent extends TimedEvent {
+    }
+
+    @Name("mastermind.InputLatency")
+    @Label("Input Latency")
+    @Description("Time from an input event to the end of the render showing it")
+    private static class InputLatencyEvent extends TimedEvent {
+    }
+
+    @Name("mastermind.Save")
+    @Label("Save")
+    @Description("A game written to a save file")
+    private static class SaveEvent extends TimedEvent {
+    }
+
+    @Name("mastermind.Load")
+    @Label("Load")
+    @Description("A save file or puzzle bank read and turned into a game")
+    private static class LoadEvent extends TimedEvent {
+    }
+
+    @Name("mastermind.MediaLoad")
+    @Label("Media Load")
+    @Description("An image or the soundtrack loaded from the class path")
+    private static class MediaLoadEvent extends TimedEvent {
+    }
+
+    @Name("mastermind.SceneSwitch")
+    @Label("Scene Switch")
+    @Description("Time from a scene switch request to the first frame of the new scene")
+    private static class SceneSwitchEvent extends TimedEvent {
+    }
+
+    @Name("mastermind.FirstFrame")
+    @Label("First Frame")
+    @Description("Time from the start of media loading to the first frame shown")
+    private static class FirstFrameEvent extends TimedEvent {
+    }
+
+    @Name("mastermind.Counters")
+    @Label("Counters")
+    @Category("Mastermind")
+    @Description("Running totals of the game's call counters")
+    @Period("1 s")
+    @StackTrace(false)
+    private static class CountersEvent extends Event {
+        @Label("GameState.testRow Calls")
+        long testRowCalls;
+    }
+}
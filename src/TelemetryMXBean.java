@@ -0,0 +1,37 @@
+import java.util.Map;
+
+/**
+ * Management interface of {@link Telemetry}, registered as "mastermind:type=Telemetry" so the counters can
+ * be read with any JMX client (such as JConsole or JDK Mission Control).
+ */
+public interface TelemetryMXBean {
+    /**
+     * @return the number of calls to {@link GameState#testRow(int)}
+     */
+    long getTestRowCalls();
+
+    /**
+     * @return the number of samples of each {@link Telemetry.Metric}, by name
+     */
+    Map<String, Long> getCounts();
+
+    /**
+     * @return the mean duration of each {@link Telemetry.Metric} in milliseconds, by name
+     */
+    Map<String, Double> getMeanMillis();
+
+    /**
+     * @return the longest duration of each {@link Telemetry.Metric} in milliseconds, by name
+     */
+    Map<String, Double> getMaxMillis();
+
+    /**
+     * @return every counter as text, one metric per line
+     */
+    String dump();
+
+    /**
+     * Clears every counter.
+     */
+    void reset();
+}
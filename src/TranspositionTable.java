@@ -0,0 +1,269 @@
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, thread-safe cache of solved subtrees for the {@link Mastermind} solvers. Two different
+ * guess/feedback histories frequently leave exactly the same set of candidate secrets, so the best
+ * next guess and the cost of the subtree below it only need to be computed once.
+ *
+ * Candidate sets are keyed by a 64-bit Zobrist hash: every code index is mapped to a fixed random-looking
+ * 64-bit value and the key of a set is the XOR of the values of its members. The size of the set is
+ * stored alongside each entry to make accidental collisions even less likely.
+ *
+ * The table is split into independently locked segments so that it can be shared by fork/join workers.
+ * Each segment has a fixed number of slots and evicts with the clock (second chance) policy once full.
+ */
+public class TranspositionTable {
+    private static final int  DEFAULT_SEGMENTS    = 64;
+    private static final long DEFAULT_MAX_BYTES   = 64L * 1024 * 1024;
+
+    /**
+     * Approximate heap cost of one slot: the key, cost, size, guess and reference bit arrays plus one
+     * boxed entry in the segment's index map.
+     */
+    private static final int  BYTES_PER_ENTRY     = 8 + 8 + 4 + 4 + 1 + 64;
+
+    private final Segment[] segments;
+
+    private final AtomicLong hits      = new AtomicLong();
+    private final AtomicLong misses    = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Creates a table capped by the "mastermind.tt.maxBytes" system property (64 MiB if unset).
+     */
+    public TranspositionTable() {
+        this(Long.getLong("mastermind.tt.maxBytes", DEFAULT_MAX_BYTES));
+    }
+
+    /**
+     * Creates a table whose slots occupy at most (approximately) the given number of bytes.
+     *
+     * @param maxBytes the memory cap in bytes
+     */
+    public TranspositionTable(final long maxBytes) {
+        final long entries     = Math.max(maxBytes / BYTES_PER_ENTRY, DEFAULT_SEGMENTS);
+        final int  perSegment  = (int) Math.min(entries / DEFAULT_SEGMENTS, Integer.MAX_VALUE / 2);
+
+        this.segments = new Segment[DEFAULT_SEGMENTS];
+
+        for (int i = 0; i < DEFAULT_SEGMENTS; ++i) {
+            this.segments[i] = new Segment(perSegment);
+        }
+    }
+
+    /**
+     * Looks up the solved subtree for the candidate set with the given key.
+     *
+     * @param key the Zobrist key of the candidate set (see {@link TranspositionTable#hash(int[], int)})
+     * @param size the number of candidates in the set
+     * @return the {@link Optional}<{@link Entry}> if the set has been solved and not evicted
+     */
+    public Optional<Entry> get(final long key, final int size) {
+        final Optional<Entry> entry = segmentFor(key).get(key, size);
+
+        if (entry.isPresent()) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+
+        return entry;
+    }
+
+    /**
+     * Records the best guess and subtree cost for the candidate set with the given key, evicting an
+     * older entry if the segment is full.
+     *
+     * @param key the Zobrist key of the candidate set
+     * @param size the number of candidates in the set
+     * @param bestGuess the code index of the best next guess
+     * @param cost the total cost of the subtree rooted at that guess
+     */
+    public void put(final long key, final int size, final int bestGuess, final long cost) {
+        if (segmentFor(key).put(key, size, bestGuess, cost)) {
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return the number of successful lookups
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of failed lookups
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of entries that have been evicted to make space
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * @return the total number of slots available across all segments
+     */
+    public long capacity() {
+        return (long) segments.length * segments[0].keys.length;
+    }
+
+    /**
+     * @return a short human-readable summary of the table's counters
+     */
+    @Override
+    public String toString() {
+        return "TranspositionTable[capacity=" + capacity() + ", hits=" + getHits() + ", misses=" + getMisses()
+            + ", evictions=" + getEvictions() + "]";
+    }
+
+    /**
+     * Computes the Zobrist key of the first (size) code indices in the given array. The order of the
+     * indices does not matter.
+     *
+     * @param candidates the code indices of the candidate set
+     * @param size how many entries of the array belong to the set
+     * @return the 64-bit key
+     */
+    public static long hash(final int[] candidates, final int size) {
+        long key = 0;
+
+        for (int i = 0; i < size; ++i) {
+            key ^= zobrist(candidates[i]);
+        }
+
+        return key;
+    }
+
+    /**
+     * Maps a code index to its Zobrist value. Uses the SplitMix64 finalizer so that no table of random
+     * values has to be stored or shared between threads.
+     *
+     * @param index the code index
+     * @return the 64-bit Zobrist value for the index
+     */
+    public static long zobrist(final int index) {
+        long z = (index + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * @param key the key to locate
+     * @return the {@link Segment} responsible for the key
+     */
+    private Segment segmentFor(final long key) {
+        return segments[(int) ((key >>> 32) ^ key) & (segments.length - 1)];
+    }
+
+    /**
+     * Immutable result of a solved subtree.
+     */
+    public static class Entry {
+        public final int  bestGuess;
+        public final long cost;
+
+        /**
+         * @param bestGuess the code index of the best next guess
+         * @param cost the total cost of the subtree
+         */
+        public Entry(final int bestGuess, final long cost) {
+            this.bestGuess = bestGuess;
+            this.cost      = cost;
+        }
+    }
+
+    /**
+     * Private class for a single locked portion of the table. The slots are stored in parallel primitive
+     * arrays and located through a small index map.
+     */
+    private static class Segment {
+        private final long[]    keys;
+        private final long[]    costs;
+        private final int[]     sizes;
+        private final int[]     guesses;
+        private final boolean[] referenced;
+
+        private final Map<Long, Integer> index;
+
+        private int used = 0;
+        private int hand = 0;
+
+        /**
+         * @param capacity the number of slots in this segment
+         */
+        public Segment(final int capacity) {
+            this.keys       = new long[capacity];
+            this.costs      = new long[capacity];
+            this.sizes      = new int[capacity];
+            this.guesses    = new int[capacity];
+            this.referenced = new boolean[capacity];
+            this.index      = new HashMap<>(capacity * 2);
+        }
+
+        /**
+         * @param key the key to look up
+         * @param size the expected candidate set size
+         * @return the {@link Optional}<{@link Entry}> stored for the key
+         */
+        public synchronized Optional<Entry> get(final long key, final int size) {
+            final Integer slot = index.get(key);
+
+            if (slot == null || sizes[slot] != size) {
+                return Optional.empty();
+            }
+
+            referenced[slot] = true;
+            return Optional.of(new Entry(guesses[slot], costs[slot]));
+        }
+
+        /**
+         * @param key the key to store
+         * @param size the candidate set size
+         * @param bestGuess the best guess
+         * @param cost the subtree cost
+         * @return whether an existing entry had to be evicted
+         */
+        public synchronized boolean put(final long key, final int size, final int bestGuess, final long cost) {
+            Integer slot = index.get(key);
+            boolean evicted = false;
+
+            if (slot == null) {
+                if (used < keys.length) {
+                    slot = used++;
+                } else {
+                    // Clock sweep: give recently referenced slots a second chance
+                    while (referenced[hand]) {
+                        referenced[hand] = false;
+                        hand = (hand + 1) % keys.length;
+                    }
+
+                    slot = hand;
+                    hand = (hand + 1) % keys.length;
+
+                    index.remove(keys[slot]);
+                    evicted = true;
+                }
+
+                index.put(key, slot);
+            }
+
+            keys[slot]       = key;
+            sizes[slot]      = size;
+            guesses[slot]    = bestGuess;
+            costs[slot]      = cost;
+            referenced[slot] = true;
+
+            return evicted;
+        }
+    }
+}